@@ -0,0 +1,194 @@
+package com.fengjie.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.fengjie.io.In;
+
+/**
+ *  读取基准共用的输入：整数、浮点数和单词三个文件，每行TOKENS_PER_LINE个标记
+ *  同一份内容可以从不同的来源读取，见Source
+ *
+ *  @author fengjie2018@qq.com
+ */
+@State(Scope.Benchmark)
+public class Fixture {
+
+    // 每行的标记数
+    static final int TOKENS_PER_LINE = 10;
+
+    // 固定的种子，每次运行的输入都一样
+    private static final long SEED = 20180216L;
+
+    /**
+     * 输入的来源
+     */
+    public enum Source {
+        /** In(File) */
+        FILE,
+        /** In(String)，按文件名打开 */
+        NAME,
+        /** In(URL)，file:协议 */
+        URL,
+        /** In(Socket)，本机回环地址 */
+        SOCKET,
+        /** In(Engine)，从System.in读取内存中的内容 */
+        STDIN
+    }
+
+    /**
+     * 输入的内容
+     */
+    public enum Kind {
+        INTS, DOUBLES, WORDS
+    }
+
+    /** 每个文件的标记数 */
+    @Param({"10000", "1000000"})
+    public int tokens;
+
+    /** 来源 */
+    @Param({"FILE", "NAME", "URL", "SOCKET", "STDIN"})
+    public Source source;
+
+    // 按Kind的顺序存放的文件和内容
+    private final File[]   files    = new File[Kind.values().length];
+    private final byte[][] contents = new byte[Kind.values().length][];
+
+    // SOCKET来源的服务端：客户端先发一个字节选择内容，服务端写完就关闭连接
+    private ServerSocket server;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Random random = new Random(SEED);
+        for (Kind kind : Kind.values()) {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 1; i <= tokens; i++) {
+                switch (kind) {
+                    case INTS:    sb.append(random.nextInt()); break;
+                    case DOUBLES: sb.append(random.nextDouble() * 1000); break;
+                    default:      appendWord(sb, random); break;
+                }
+                sb.append(i % TOKENS_PER_LINE == 0 ? '\n' : ' ');
+            }
+            byte[] content = sb.toString().getBytes(StandardCharsets.UTF_8);
+            File file = File.createTempFile("myiolibs-" + kind.name().toLowerCase(), ".txt");
+            file.deleteOnExit();
+            Files.write(file.toPath(), content);
+            files[kind.ordinal()]    = file;
+            contents[kind.ordinal()] = content;
+        }
+        if (source == Source.SOCKET) startServer();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (server != null) server.close();
+        for (File file : files)
+            if (file != null) file.delete();
+    }
+
+    /**
+     * 从当前来源打开一个In
+     * @param kind 内容
+     * @param engine 读取引擎
+     * @return In
+     */
+    public In in(Kind kind, In.Engine engine) throws IOException {
+        File file = files[kind.ordinal()];
+        switch (source) {
+            case FILE:   return new In(file, engine);
+            case NAME:   return new In(file.getPath(), engine);
+            case URL:    return new In(file.toURI().toURL(), engine);
+            case SOCKET: return new In(connect(kind), engine);
+            default:
+                System.setIn(new ByteArrayInputStream(contents[kind.ordinal()]));
+                return new In(engine);
+        }
+    }
+
+    /**
+     * 从当前来源打开一个InputStream，给JDK的读取方式使用
+     * @param kind 内容
+     * @return InputStream，不带缓冲
+     */
+    public InputStream stream(Kind kind) throws IOException {
+        File file = files[kind.ordinal()];
+        switch (source) {
+            case FILE:
+            case NAME:   return new FileInputStream(file);
+            case URL:    return file.toURI().toURL().openStream();
+            case SOCKET: return connect(kind).getInputStream();
+            default:     return new ByteArrayInputStream(contents[kind.ordinal()]);
+        }
+    }
+
+    /**
+     * 内容的字节数组
+     * @param kind 内容
+     * @return byte[]
+     */
+    public byte[] content(Kind kind) {
+        return contents[kind.ordinal()];
+    }
+
+    /**
+     * 文件的行数
+     * @return int
+     */
+    public int lines() {
+        return (tokens + TOKENS_PER_LINE - 1) / TOKENS_PER_LINE;
+    }
+
+    // 1 ~ 10个小写字母
+    private static void appendWord(StringBuilder sb, Random random) {
+        int n = 1 + random.nextInt(10);
+        for (int i = 0; i < n; i++)
+            sb.append((char) ('a' + random.nextInt(26)));
+    }
+
+    private void startServer() throws IOException {
+        server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(() -> {
+            while (!server.isClosed()) {
+                try (Socket socket = server.accept()) {
+                    int kind = socket.getInputStream().read();
+                    OutputStream os = socket.getOutputStream();
+                    os.write(contents[kind]);
+                    os.flush();
+                    socket.shutdownOutput();
+                    // 等客户端读完关闭连接
+                    while (socket.getInputStream().read() >= 0) { }
+                }
+                catch (IOException e) {
+                    // 服务端关闭或客户端提前断开
+                }
+            }
+        }, "fixture-server");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    private Socket connect(Kind kind) throws IOException {
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getLocalPort());
+        socket.getOutputStream().write(kind.ordinal());
+        return socket;
+    }
+}
@@ -0,0 +1,124 @@
+package com.fengjie.bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.fengjie.bench.Fixture.Kind;
+import com.fengjie.io.In;
+
+/**
+ *  In的读取速度：每次调用打开一个In，读完整个输入
+ *  和JdkReadBenchmark读的是同样的内容、同样的来源
+ *
+ *  @author fengjie2018@qq.com
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InReadBenchmark {
+
+    /** 读取引擎 */
+    @Param({"SCANNER", "BYTES", "MAPPED"})
+    public In.Engine engine;
+
+    @Benchmark
+    public long readInt(Fixture fixture) throws IOException {
+        In in = fixture.in(Kind.INTS, engine);
+        long sum = 0;
+        for (int i = 0; i < fixture.tokens; i++)
+            sum += in.readInt();
+        in.close();
+        return sum;
+    }
+
+    @Benchmark
+    public double readDouble(Fixture fixture) throws IOException {
+        In in = fixture.in(Kind.DOUBLES, engine);
+        double sum = 0;
+        for (int i = 0; i < fixture.tokens; i++)
+            sum += in.readDouble();
+        in.close();
+        return sum;
+    }
+
+    @Benchmark
+    public void readString(Fixture fixture, Blackhole bh) throws IOException {
+        In in = fixture.in(Kind.WORDS, engine);
+        for (int i = 0; i < fixture.tokens; i++)
+            bh.consume(in.readString());
+        in.close();
+    }
+
+    @Benchmark
+    public void readLine(Fixture fixture, Blackhole bh) throws IOException {
+        In in = fixture.in(Kind.WORDS, engine);
+        while (in.hasNextLine())
+            bh.consume(in.readLine());
+        in.close();
+    }
+
+    @Benchmark
+    public long readChar(Fixture fixture) throws IOException {
+        In in = fixture.in(Kind.WORDS, engine);
+        long sum = 0;
+        while (in.hasNextChar())
+            sum += in.readChar();
+        in.close();
+        return sum;
+    }
+
+    @Benchmark
+    public int[] readAllInts(Fixture fixture) throws IOException {
+        In in = fixture.in(Kind.INTS, engine);
+        int[] a = in.readAllInts();
+        in.close();
+        return a;
+    }
+
+    @Benchmark
+    public long[] readAllLongs(Fixture fixture) throws IOException {
+        In in = fixture.in(Kind.INTS, engine);
+        long[] a = in.readAllLongs();
+        in.close();
+        return a;
+    }
+
+    @Benchmark
+    public double[] readAllDoubles(Fixture fixture) throws IOException {
+        In in = fixture.in(Kind.DOUBLES, engine);
+        double[] a = in.readAllDoubles();
+        in.close();
+        return a;
+    }
+
+    @Benchmark
+    public String[] readAllStrings(Fixture fixture) throws IOException {
+        In in = fixture.in(Kind.WORDS, engine);
+        String[] a = in.readAllStrings();
+        in.close();
+        return a;
+    }
+
+    @Benchmark
+    public String[] readAllLines(Fixture fixture) throws IOException {
+        In in = fixture.in(Kind.WORDS, engine);
+        String[] a = in.readAllLines();
+        in.close();
+        return a;
+    }
+}
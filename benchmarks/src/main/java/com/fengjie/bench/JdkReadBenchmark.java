@@ -0,0 +1,226 @@
+package com.fengjie.bench;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StreamTokenizer;
+import java.nio.charset.StandardCharsets;
+import java.util.StringTokenizer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.fengjie.bench.Fixture.Kind;
+
+/**
+ *  作为对照的JDK读取方式，和InReadBenchmark读同样的内容、同样的来源
+ *  BufferedReader：readLine再用StringTokenizer分割；
+ *  StreamTokenizer：nextToken，数字取nval；
+ *  DataInputStream：常见的手写快速读取，按块读入字节再自己解析
+ *
+ *  @author fengjie2018@qq.com
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JdkReadBenchmark {
+
+    // DataInputStream读取时的缓冲区大小，和ByteScanner相同
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private static BufferedReader reader(InputStream is) {
+        return new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8));
+    }
+
+    private static StreamTokenizer tokenizer(InputStream is) {
+        return new StreamTokenizer(reader(is));
+    }
+
+    // BufferedReader + StringTokenizer
+
+    @Benchmark
+    public long readerInts(Fixture fixture) throws IOException {
+        try (BufferedReader br = reader(fixture.stream(Kind.INTS))) {
+            long sum = 0;
+            String line;
+            while ((line = br.readLine()) != null) {
+                StringTokenizer st = new StringTokenizer(line);
+                while (st.hasMoreTokens()) sum += Integer.parseInt(st.nextToken());
+            }
+            return sum;
+        }
+    }
+
+    @Benchmark
+    public double readerDoubles(Fixture fixture) throws IOException {
+        try (BufferedReader br = reader(fixture.stream(Kind.DOUBLES))) {
+            double sum = 0;
+            String line;
+            while ((line = br.readLine()) != null) {
+                StringTokenizer st = new StringTokenizer(line);
+                while (st.hasMoreTokens()) sum += Double.parseDouble(st.nextToken());
+            }
+            return sum;
+        }
+    }
+
+    @Benchmark
+    public void readerStrings(Fixture fixture, Blackhole bh) throws IOException {
+        try (BufferedReader br = reader(fixture.stream(Kind.WORDS))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                StringTokenizer st = new StringTokenizer(line);
+                while (st.hasMoreTokens()) bh.consume(st.nextToken());
+            }
+        }
+    }
+
+    @Benchmark
+    public void readerLines(Fixture fixture, Blackhole bh) throws IOException {
+        try (BufferedReader br = reader(fixture.stream(Kind.WORDS))) {
+            String line;
+            while ((line = br.readLine()) != null) bh.consume(line);
+        }
+    }
+
+    @Benchmark
+    public long readerChars(Fixture fixture) throws IOException {
+        try (BufferedReader br = reader(fixture.stream(Kind.WORDS))) {
+            long sum = 0;
+            int c;
+            while ((c = br.read()) >= 0) sum += c;
+            return sum;
+        }
+    }
+
+    // StreamTokenizer：nval是double，大于2^53的整数会失真，这里的整数都在int范围内
+
+    @Benchmark
+    public long tokenizerInts(Fixture fixture) throws IOException {
+        try (InputStream is = fixture.stream(Kind.INTS)) {
+            StreamTokenizer st = tokenizer(is);
+            long sum = 0;
+            while (st.nextToken() != StreamTokenizer.TT_EOF) sum += (int) st.nval;
+            return sum;
+        }
+    }
+
+    @Benchmark
+    public double tokenizerDoubles(Fixture fixture) throws IOException {
+        try (InputStream is = fixture.stream(Kind.DOUBLES)) {
+            StreamTokenizer st = tokenizer(is);
+            double sum = 0;
+            while (st.nextToken() != StreamTokenizer.TT_EOF) sum += st.nval;
+            return sum;
+        }
+    }
+
+    @Benchmark
+    public void tokenizerStrings(Fixture fixture, Blackhole bh) throws IOException {
+        try (InputStream is = fixture.stream(Kind.WORDS)) {
+            StreamTokenizer st = tokenizer(is);
+            while (st.nextToken() != StreamTokenizer.TT_EOF) bh.consume(st.sval);
+        }
+    }
+
+    // DataInputStream
+
+    @Benchmark
+    public long dataInts(Fixture fixture) throws IOException {
+        try (FastReader fr = new FastReader(fixture.stream(Kind.INTS))) {
+            long sum = 0;
+            for (int i = 0; i < fixture.tokens; i++) sum += fr.nextInt();
+            return sum;
+        }
+    }
+
+    @Benchmark
+    public double dataDoubles(Fixture fixture) throws IOException {
+        try (FastReader fr = new FastReader(fixture.stream(Kind.DOUBLES))) {
+            double sum = 0;
+            for (int i = 0; i < fixture.tokens; i++) sum += Double.parseDouble(fr.next());
+            return sum;
+        }
+    }
+
+    @Benchmark
+    public void dataStrings(Fixture fixture, Blackhole bh) throws IOException {
+        try (FastReader fr = new FastReader(fixture.stream(Kind.WORDS))) {
+            for (int i = 0; i < fixture.tokens; i++) bh.consume(fr.next());
+        }
+    }
+
+    /**
+     * 常见的基于DataInputStream的快速读取，只处理ASCII
+     */
+    private static final class FastReader implements AutoCloseable {
+
+        private final DataInputStream in;
+        private final byte[] buf = new byte[BUFFER_SIZE];
+        private int pos, limit;
+
+        FastReader(InputStream is) {
+            in = new DataInputStream(new BufferedInputStream(is, BUFFER_SIZE));
+        }
+
+        private int read() throws IOException {
+            if (pos == limit) {
+                limit = in.read(buf, 0, buf.length);
+                pos = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return -1;
+                }
+            }
+            return buf[pos++];
+        }
+
+        private int skipSpace() throws IOException {
+            int c;
+            while ((c = read()) >= 0 && c <= ' ') { }
+            return c;
+        }
+
+        int nextInt() throws IOException {
+            int c = skipSpace();
+            boolean neg = c == '-';
+            if (neg) c = read();
+            int r = 0;
+            while (c >= '0' && c <= '9') {
+                r = r * 10 + (c - '0');
+                c = read();
+            }
+            return neg ? -r : r;
+        }
+
+        String next() throws IOException {
+            StringBuilder sb = new StringBuilder();
+            int c = skipSpace();
+            while (c > ' ') {
+                sb.append((char) c);
+                c = read();
+            }
+            return sb.toString();
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
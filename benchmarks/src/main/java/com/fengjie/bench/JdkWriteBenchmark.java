@@ -0,0 +1,120 @@
+package com.fengjie.bench;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ *  作为对照的JDK写法：PrintWriter包装BufferedWriter，或PrintStream包装BufferedOutputStream
+ *  和OutWriteBenchmark写同样的数据到同样的目的地
+ *
+ *  @author fengjie2018@qq.com
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JdkWriteBenchmark {
+
+    private static final Locale LOCALE = Locale.SIMPLIFIED_CHINESE;
+
+    /** PrintWriter或PrintStream；autoflush为true时和Out的line策略相当 */
+    @Param({"writer", "stream"})
+    public String kind;
+
+    /** 是否每次println都刷新 */
+    @Param({"false", "true"})
+    public boolean autoFlush;
+
+    private PrintWriter writer(Sink sink) throws IOException {
+        return new PrintWriter(new BufferedWriter(
+            new OutputStreamWriter(sink.stream(), StandardCharsets.UTF_8)), autoFlush);
+    }
+
+    private PrintStream stream(Sink sink) throws IOException {
+        return new PrintStream(new BufferedOutputStream(sink.stream()), autoFlush, "UTF-8");
+    }
+
+    @Benchmark
+    public void printInt(Sink sink) throws IOException {
+        if ("writer".equals(kind)) {
+            PrintWriter out = writer(sink);
+            for (int x : sink.ints) {
+                out.print(x);
+                out.print(' ');
+            }
+            out.close();
+        }
+        else {
+            PrintStream out = stream(sink);
+            for (int x : sink.ints) {
+                out.print(x);
+                out.print(' ');
+            }
+            out.close();
+        }
+    }
+
+    @Benchmark
+    public void printlnDouble(Sink sink) throws IOException {
+        if ("writer".equals(kind)) {
+            PrintWriter out = writer(sink);
+            for (double x : sink.doubles) out.println(x);
+            out.close();
+        }
+        else {
+            PrintStream out = stream(sink);
+            for (double x : sink.doubles) out.println(x);
+            out.close();
+        }
+    }
+
+    @Benchmark
+    public void printlnString(Sink sink) throws IOException {
+        if ("writer".equals(kind)) {
+            PrintWriter out = writer(sink);
+            for (String x : sink.strings) out.println(x);
+            out.close();
+        }
+        else {
+            PrintStream out = stream(sink);
+            for (String x : sink.strings) out.println(x);
+            out.close();
+        }
+    }
+
+    @Benchmark
+    public void printf(Sink sink) throws IOException {
+        if ("writer".equals(kind)) {
+            PrintWriter out = writer(sink);
+            for (int i = 0; i < sink.count; i++)
+                out.printf(LOCALE, "%-12s %11d %10.3f%n", sink.strings[i], sink.ints[i], sink.doubles[i]);
+            out.close();
+        }
+        else {
+            PrintStream out = stream(sink);
+            for (int i = 0; i < sink.count; i++)
+                out.printf(LOCALE, "%-12s %11d %10.3f%n", sink.strings[i], sink.ints[i], sink.doubles[i]);
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.fengjie.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fengjie.io.Out;
+
+/**
+ *  Out的写出速度，和JdkWriteBenchmark写同样的数据到同样的目的地
+ *
+ *  @author fengjie2018@qq.com
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OutWriteBenchmark {
+
+    /** 刷新策略：explicit只在缓冲区满时写出，line每次打印都刷新 */
+    @Param({"explicit", "line"})
+    public String policy;
+
+    private Out open(Sink sink) {
+        return sink.out("line".equals(policy) ? Out.FlushPolicy.line() : Out.FlushPolicy.explicit());
+    }
+
+    @Benchmark
+    public void printInt(Sink sink) {
+        Out out = open(sink);
+        for (int x : sink.ints) {
+            out.print(x);
+            out.print(' ');
+        }
+        out.close();
+    }
+
+    @Benchmark
+    public void printlnDouble(Sink sink) {
+        Out out = open(sink);
+        for (double x : sink.doubles) out.println(x);
+        out.close();
+    }
+
+    @Benchmark
+    public void printlnString(Sink sink) {
+        Out out = open(sink);
+        for (String x : sink.strings) out.println(x);
+        out.close();
+    }
+
+    @Benchmark
+    public void printf(Sink sink) {
+        Out out = open(sink);
+        for (int i = 0; i < sink.count; i++)
+            out.printf("%-12s %11d %10.3f%n", sink.strings[i], sink.ints[i], sink.doubles[i]);
+        out.close();
+    }
+}
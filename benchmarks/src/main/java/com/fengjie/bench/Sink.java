@@ -0,0 +1,108 @@
+package com.fengjie.bench;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.fengjie.io.Out;
+
+/**
+ *  输出基准共用的目的地和数据
+ *  每次调用把count个值写到一个新打开的目的地，写完关闭
+ *
+ *  @author fengjie2018@qq.com
+ */
+@State(Scope.Benchmark)
+public class Sink {
+
+    /**
+     * 输出的目的地
+     */
+    public enum Target {
+        /** 丢弃所有字节的OutputStream，只测格式化和编码 */
+        NULL,
+        /** FileOutputStream，Out使用STREAM引擎 */
+        FILE,
+        /** Out使用CHANNEL引擎；JDK的写法和FILE相同 */
+        CHANNEL
+    }
+
+    /** 每次调用写出的值的个数 */
+    @Param({"10000", "1000000"})
+    public int count;
+
+    /** 目的地 */
+    @Param({"NULL", "FILE", "CHANNEL"})
+    public Target target;
+
+    /** 要写出的整数、浮点数和字符串 */
+    public int[]    ints;
+    public double[] doubles;
+    public String[] strings;
+
+    private File file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Random random = new Random(20180216L);
+        ints    = new int[count];
+        doubles = new double[count];
+        strings = new String[count];
+        for (int i = 0; i < count; i++) {
+            ints[i]    = random.nextInt();
+            doubles[i] = random.nextDouble() * 1000;
+            strings[i] = "item-" + random.nextInt(100000);
+        }
+        file = File.createTempFile("myiolibs-out", ".txt");
+        file.deleteOnExit();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        file.delete();
+    }
+
+    /**
+     * 打开一个Out
+     * @param policy 刷新策略
+     * @return Out
+     */
+    public Out out(Out.FlushPolicy policy) {
+        switch (target) {
+            case NULL: return new Out(NullOutputStream.INSTANCE, policy);
+            case FILE: return new Out(file.getPath(), policy, Out.Engine.STREAM);
+            default:   return new Out(file.getPath(), policy, Out.Engine.CHANNEL);
+        }
+    }
+
+    /**
+     * 打开一个不带缓冲的OutputStream，给JDK的写法使用
+     * @return OutputStream
+     */
+    public OutputStream stream() throws IOException {
+        return target == Target.NULL ? NullOutputStream.INSTANCE : new FileOutputStream(file);
+    }
+
+    /**
+     * 丢弃所有字节
+     */
+    static final class NullOutputStream extends OutputStream {
+
+        static final NullOutputStream INSTANCE = new NullOutputStream();
+
+        @Override
+        public void write(int b) { }
+
+        @Override
+        public void write(byte[] b, int off, int len) { }
+    }
+}
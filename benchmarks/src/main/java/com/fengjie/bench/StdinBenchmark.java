@@ -0,0 +1,112 @@
+package com.fengjie.bench;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fengjie.stdio.Stdin;
+
+/**
+ *  Stdin的读取速度
+ *  Stdin在类初始化时绑定System.in，所以每组参数单独fork一个JVM，
+ *  在第一次使用Stdin之前把System.in换成循环输出同一段内容的无穷流
+ *
+ *  @author fengjie2018@qq.com
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StdinBenchmark {
+
+    // 循环的内容：整数和单词交替，每行十个
+    private static final int TOKENS = 1 << 16;
+
+    /** 是否使用快速模式，见Stdin */
+    @Param({"true", "false"})
+    public boolean fast;
+
+    private InputStream stdin;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(20180215L);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 1; i <= TOKENS; i++) {
+            if (i % 2 == 1) sb.append(random.nextInt(1000000));
+            else            sb.append("w").append(random.nextInt(1000));
+            sb.append(i % 10 == 0 ? '\n' : ' ');
+        }
+        stdin = System.in;
+        System.setIn(new CyclicInputStream(sb.toString().getBytes(StandardCharsets.UTF_8)));
+        System.setProperty("com.fengjie.stdio.Stdin.fast", String.valueOf(fast));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.setIn(stdin);
+    }
+
+    // 一次读一对：整数和单词
+    @Benchmark
+    public int readIntAndString() {
+        return Stdin.readInt() + Stdin.readString().length();
+    }
+
+    @Benchmark
+    public String readLine() {
+        return Stdin.readLine();
+    }
+
+    @Benchmark
+    public char readChar() {
+        return Stdin.readChar();
+    }
+
+    /**
+     * 不断重复同一段内容，永远不会结束
+     */
+    private static final class CyclicInputStream extends InputStream {
+
+        private final byte[] content;
+        private int pos;
+
+        CyclicInputStream(byte[] content) {
+            this.content = content;
+        }
+
+        @Override
+        public int read() {
+            int b = content[pos++] & 0xFF;
+            if (pos == content.length) pos = 0;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = Math.min(len, content.length - pos);
+            System.arraycopy(content, pos, b, off, n);
+            pos += n;
+            if (pos == content.length) pos = 0;
+            return n;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.fengjie.bench;
+
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fengjie.stdio.Stdout;
+
+/**
+ *  Stdout的写出速度，对照System.out
+ *  Stdout在类初始化时绑定System.out，所以每组参数单独fork一个JVM，
+ *  在第一次使用Stdout之前把System.out换成丢弃所有字节的流
+ *
+ *  @author fengjie2018@qq.com
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StdoutBenchmark {
+
+    /** 是否使用异步模式，见Stdout */
+    @Param({"false", "true"})
+    public boolean async;
+
+    private PrintStream stdout;
+    private PrintStream sink;
+
+    private int i;
+    private double d;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        stdout = System.out;
+        sink   = new PrintStream(Sink.NullOutputStream.INSTANCE, true, "UTF-8");
+        System.setOut(sink);
+        System.setProperty("com.fengjie.stdio.Stdout.async", String.valueOf(async));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        Stdout.print();
+        System.setOut(stdout);
+    }
+
+    @Benchmark
+    public void stdoutPrintInt() {
+        Stdout.print(i++);
+    }
+
+    @Benchmark
+    public void stdoutPrintlnDouble() {
+        Stdout.println(d += 0.125);
+    }
+
+    @Benchmark
+    public void stdoutPrintlnString() {
+        Stdout.println("item-12345");
+    }
+
+    @Benchmark
+    public void stdoutPrintf() {
+        Stdout.printf("%-12s %11d %10.3f%n", "item-12345", i++, d += 0.125);
+    }
+
+    @Benchmark
+    public void systemOutPrintInt() {
+        sink.print(i++);
+    }
+
+    @Benchmark
+    public void systemOutPrintlnDouble() {
+        sink.println(d += 0.125);
+    }
+
+    @Benchmark
+    public void systemOutPrintlnString() {
+        sink.println("item-12345");
+    }
+
+    @Benchmark
+    public void systemOutPrintf() {
+        sink.printf("%-12s %11d %10.3f%n", "item-12345", i++, d += 0.125);
+    }
+}
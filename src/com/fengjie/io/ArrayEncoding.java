@@ -0,0 +1,19 @@
+package com.fengjie.io;
+
+/**
+ *  Out.writeEncoded()写出整数数组时使用的压缩方式，In.readEncodedInts()/readEncodedLongs()自动识别
+ *
+ *  每个值都写成变长整数（varint）：每个字节的低7位存数据，最高位为1表示后面还有字节，
+ *  所以小的值只占一两个字节。三种方式的区别在于写成varint之前怎样把值变小。
+ *
+ *  @author fengjie2018@qq.com
+ *  @version 1.0 2018年2月16日
+ */
+public enum ArrayEncoding {
+    /** 直接写出每个值，用zigzag把绝对值小的负数也映射成小的无符号数 */
+    ZIGZAG,
+    /** 写出和前一个值的差（zigzag），适合有序的id等相邻值接近的数据 */
+    DELTA,
+    /** 先写出最小值，再写出每个值和最小值的差，适合集中在一个区间里的数据 */
+    FRAME_OF_REFERENCE
+}
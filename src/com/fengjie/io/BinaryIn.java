@@ -0,0 +1,591 @@
+package com.fengjie.io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.NoSuchElementException;
+
+/**
+ *  这个类提供了从标准输入，文件，网页和套接字读取二进制数据的方法
+ *
+ *  可以按位读取：readBoolean()读一位，readInt(r)读r位；
+ *  也可以读取打包的基本类型和基本类型数组，多字节的值按order()指定的字节序解释，默认为大端，
+ *  和DataInputStream以及BinaryOut的默认设置相同。按位读取总是从字节的最高位开始。
+ *  位于字节边界时，基本类型和数组直接从缓冲区成批取出；不在字节边界时逐字节拼接。
+ *
+ *  读取时遇到的IOException当作流尾处理，流尾之后再读取会抛出NoSuchElementException
+ *  这个类不是线程安全的
+ *
+ *  @author fengjie2018@qq.com
+ *  @version 1.0 2018年2月16日
+ */
+public final class BinaryIn {
+
+    // 缓冲区大小：64KB
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private InputStream is;
+
+    // 缓冲区，未读的字节为[position, limit)
+    private ByteBuffer buf;
+
+    // 读到流尾
+    private boolean eof;
+
+    // 当前字节中还没读的位，在低bitsLeft位中
+    private int bitBuffer;
+    private int bitsLeft;
+
+   /**
+     * 从System.in初始化一个输入流
+     */
+    public BinaryIn() {
+        init(System.in);
+    }
+
+   /**
+     * 从给定的输入流初始化
+     * @param  is InputStream
+     * @throws IllegalArgumentException 如果is为null
+     */
+    public BinaryIn(InputStream is) {
+        if (is == null) throw new IllegalArgumentException("输入流为null");
+        init(is);
+    }
+
+   /**
+     * 从socket初始化一个输入流
+     * @param  socket 套接字
+     * @throws IllegalArgumentException 如果不能读取套接字，或套接字为null则抛出异常
+     */
+    public BinaryIn(Socket socket) {
+        if (socket == null) throw new IllegalArgumentException("套接字为 null");
+        try {
+            init(socket.getInputStream());
+        }
+        catch (IOException ioe) {
+            throw new IllegalArgumentException("无法打开" + socket, ioe);
+        }
+    }
+
+   /**
+     * 用一个URL初始化输入流
+     * @param  url URL
+     * @throws IllegalArgumentException 如果无法打开URL或URL为null，则抛出异常
+     */
+    public BinaryIn(URL url) {
+        if (url == null) throw new IllegalArgumentException("url为null");
+        try {
+            URLConnection site = url.openConnection();
+            init(site.getInputStream());
+        }
+        catch (IOException ioe) {
+            throw new IllegalArgumentException("无法打开" + url, ioe);
+        }
+    }
+
+   /**
+     * 用一个文件初始化输入流
+     * @param  file 传入文件
+     * @throws IllegalArgumentException 如果未能打开文件或文件为null
+     */
+    public BinaryIn(File file) {
+        if (file == null) throw new IllegalArgumentException("文件为null");
+        try {
+            init(new FileInputStream(file));
+        }
+        catch (IOException ioe) {
+            throw new IllegalArgumentException("无法打开" + file, ioe);
+        }
+    }
+
+   /**
+     * 从一个字符串初始化输入流，依次尝试本地文件、类路径上的资源和URL
+     * @param name String
+     * @throws IllegalArgumentException 如果无法打开或为null则抛出异常
+     */
+    public BinaryIn(String name) {
+        if (name == null) throw new IllegalArgumentException("参数为 null");
+        try {
+            File file = new File(name);
+            if (file.exists()) {
+                init(new FileInputStream(file));
+                return;
+            }
+            URL url = getClass().getResource(name);
+            if (url == null) {
+                url = getClass().getClassLoader().getResource(name);
+            }
+            if (url == null) {
+                url = new URL(name);
+            }
+            URLConnection site = url.openConnection();
+            init(site.getInputStream());
+        }
+        catch (IOException ioe) {
+            throw new IllegalArgumentException("未能打开" + name, ioe);
+        }
+    }
+
+    private void init(InputStream is) {
+        this.is  = is;
+        this.buf = ByteBuffer.allocate(BUFFER_SIZE);
+        buf.limit(0);
+    }
+
+    /**
+     * 字节序
+     * @return ByteOrder
+     */
+    public ByteOrder order() {
+        return buf.order();
+    }
+
+    /**
+     * 设置之后读取多字节值时使用的字节序
+     * @param order 字节序
+     * @return this
+     * @throws IllegalArgumentException 如果order为null
+     */
+    public BinaryIn order(ByteOrder order) {
+        if (order == null) throw new IllegalArgumentException("order为null");
+        buf.order(order);
+        return this;
+    }
+
+    /**
+     * 如果输入流可以使用就返回true
+     * @return boolean
+     */
+    public boolean exists() {
+        return is != null;
+    }
+
+    /**
+     * 如果没有可以读取的位就返回true
+     * @return boolean
+     */
+    public boolean isEmpty() {
+        return bitsLeft == 0 && !ensure(1);
+    }
+
+    /**
+     * 关闭输入流
+     */
+    public void close() {
+        try {
+            is.close();
+        }
+        catch (IOException ioe) {
+            // 和In一样忽略
+        }
+    }
+
+    /**
+     * 保证缓冲区中至少有n个未读的字节，n不超过缓冲区大小
+     * @return 流尾之前凑不够n个字节时返回false
+     */
+    private boolean ensure(int n) {
+        if (buf.remaining() >= n) return true;
+        if (eof) return false;
+        buf.compact();
+        try {
+            while (buf.position() < n) {
+                int r = is.read(buf.array(), buf.position(), buf.remaining());
+                if (r < 0) {
+                    eof = true;
+                    break;
+                }
+                buf.position(buf.position() + r);
+            }
+        }
+        catch (IOException ioe) {
+            eof = true;
+        }
+        buf.flip();
+        return buf.remaining() >= n;
+    }
+
+    private void require(int n) {
+        if (!ensure(n)) throw new NoSuchElementException("输入流为空！");
+    }
+
+    // 读取r位，1 <= r <= 64，高位在前
+    private long readBits(int r) {
+        long x = 0;
+        while (r > 0) {
+            if (bitsLeft == 0) {
+                require(1);
+                bitBuffer = buf.get() & 0xFF;
+                bitsLeft  = 8;
+            }
+            int take = Math.min(r, bitsLeft);
+            bitsLeft -= take;
+            x = x << take | (bitBuffer >>> bitsLeft) & ((1 << take) - 1);
+            r -= take;
+        }
+        return x;
+    }
+
+    // 不在字节边界时读取n个字节，按字节序拼成一个值
+    private long readUnaligned(int n) {
+        long x = readBits(8 * n);
+        if (buf.order() == ByteOrder.LITTLE_ENDIAN) x = Long.reverseBytes(x) >>> (64 - 8 * n);
+        return x;
+    }
+
+    /**
+     * 读取一位
+     * @return 这一位为1时返回true
+     * @throws NoSuchElementException 如果输入流为空
+     */
+    public boolean readBoolean() {
+        return readBits(1) != 0;
+    }
+
+    /**
+     * 读取一个字节
+     * @return byte
+     * @throws NoSuchElementException 如果输入流为空
+     */
+    public byte readByte() {
+        if (bitsLeft != 0) return (byte) readBits(8);
+        require(1);
+        return buf.get();
+    }
+
+    /**
+     * 读取一个16位的char
+     * @return char
+     * @throws NoSuchElementException 如果输入流为空
+     */
+    public char readChar() {
+        if (bitsLeft != 0) return (char) readUnaligned(2);
+        require(2);
+        return buf.getChar();
+    }
+
+    /**
+     * 读取r位并解释为char
+     * @param r 位数，1 ~ 16
+     * @return char
+     * @throws IllegalArgumentException 如果r不在范围内
+     * @throws NoSuchElementException 如果输入流为空
+     */
+    public char readChar(int r) {
+        if (r < 1 || r > 16) throw new IllegalArgumentException("r必须在1 ~ 16之间：" + r);
+        return (char) readBits(r);
+    }
+
+    /**
+     * 读取一个short
+     * @return short
+     * @throws NoSuchElementException 如果输入流为空
+     */
+    public short readShort() {
+        if (bitsLeft != 0) return (short) readUnaligned(2);
+        require(2);
+        return buf.getShort();
+    }
+
+    /**
+     * 读取一个int
+     * @return int
+     * @throws NoSuchElementException 如果输入流为空
+     */
+    public int readInt() {
+        if (bitsLeft != 0) return (int) readUnaligned(4);
+        require(4);
+        return buf.getInt();
+    }
+
+    /**
+     * 读取r位并解释为无符号int，r为32时就是readInt()
+     * @param r 位数，1 ~ 32
+     * @return int
+     * @throws IllegalArgumentException 如果r不在范围内
+     * @throws NoSuchElementException 如果输入流为空
+     */
+    public int readInt(int r) {
+        if (r < 1 || r > 32) throw new IllegalArgumentException("r必须在1 ~ 32之间：" + r);
+        return (int) readBits(r);
+    }
+
+    /**
+     * 读取一个long
+     * @return long
+     * @throws NoSuchElementException 如果输入流为空
+     */
+    public long readLong() {
+        if (bitsLeft != 0) return readUnaligned(8);
+        require(8);
+        return buf.getLong();
+    }
+
+    /**
+     * 读取r位并解释为无符号long，r为64时就是readLong()
+     * @param r 位数，1 ~ 64
+     * @return long
+     * @throws IllegalArgumentException 如果r不在范围内
+     * @throws NoSuchElementException 如果输入流为空
+     */
+    public long readLong(int r) {
+        if (r < 1 || r > 64) throw new IllegalArgumentException("r必须在1 ~ 64之间：" + r);
+        return readBits(r);
+    }
+
+    /**
+     * 读取一个float
+     * @return float
+     * @throws NoSuchElementException 如果输入流为空
+     */
+    public float readFloat() {
+        return Float.intBitsToFloat(readInt());
+    }
+
+    /**
+     * 读取一个double
+     * @return double
+     * @throws NoSuchElementException 如果输入流为空
+     */
+    public double readDouble() {
+        return Double.longBitsToDouble(readLong());
+    }
+
+    // 数组：在字节边界时每次从缓冲区的视图中成批取出能取的部分
+
+    /**
+     * 读取n位，每位一个boolean
+     * @param n 个数
+     * @return boolean[]
+     * @throws NoSuchElementException 如果输入流中不够n位
+     */
+    public boolean[] readBooleans(int n) {
+        boolean[] a = new boolean[n];
+        for (int i = 0; i < n; i++)
+            a[i] = readBits(1) != 0;
+        return a;
+    }
+
+    /**
+     * 读取len个字节存入a[off, off + len)
+     * @throws NoSuchElementException 如果输入流中不够len个字节
+     */
+    public void readBytes(byte[] a, int off, int len) {
+        if (bitsLeft != 0) {
+            for (int i = 0; i < len; i++) a[off + i] = (byte) readBits(8);
+            return;
+        }
+        while (len > 0) {
+            require(1);
+            int n = Math.min(len, buf.remaining());
+            buf.get(a, off, n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * 读取n个字节
+     * @param n 个数
+     * @return byte[]
+     * @throws NoSuchElementException 如果输入流中不够n个字节
+     */
+    public byte[] readBytes(int n) {
+        byte[] a = new byte[n];
+        readBytes(a, 0, n);
+        return a;
+    }
+
+    /**
+     * 读取len个char存入a[off, off + len)
+     * @throws NoSuchElementException 如果输入流中不够len个char
+     */
+    public void readChars(char[] a, int off, int len) {
+        if (bitsLeft != 0) {
+            for (int i = 0; i < len; i++) a[off + i] = (char) readUnaligned(2);
+            return;
+        }
+        while (len > 0) {
+            require(2);
+            int n = Math.min(len, buf.remaining() >> 1);
+            buf.asCharBuffer().get(a, off, n);
+            buf.position(buf.position() + 2 * n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * 读取n个char
+     * @param n 个数
+     * @return char[]
+     * @throws NoSuchElementException 如果输入流中不够n个char
+     */
+    public char[] readChars(int n) {
+        char[] a = new char[n];
+        readChars(a, 0, n);
+        return a;
+    }
+
+    /**
+     * 读取len个short存入a[off, off + len)
+     * @throws NoSuchElementException 如果输入流中不够len个short
+     */
+    public void readShorts(short[] a, int off, int len) {
+        if (bitsLeft != 0) {
+            for (int i = 0; i < len; i++) a[off + i] = (short) readUnaligned(2);
+            return;
+        }
+        while (len > 0) {
+            require(2);
+            int n = Math.min(len, buf.remaining() >> 1);
+            buf.asShortBuffer().get(a, off, n);
+            buf.position(buf.position() + 2 * n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * 读取n个short
+     * @param n 个数
+     * @return short[]
+     * @throws NoSuchElementException 如果输入流中不够n个short
+     */
+    public short[] readShorts(int n) {
+        short[] a = new short[n];
+        readShorts(a, 0, n);
+        return a;
+    }
+
+    /**
+     * 读取len个int存入a[off, off + len)
+     * @throws NoSuchElementException 如果输入流中不够len个int
+     */
+    public void readInts(int[] a, int off, int len) {
+        if (bitsLeft != 0) {
+            for (int i = 0; i < len; i++) a[off + i] = (int) readUnaligned(4);
+            return;
+        }
+        while (len > 0) {
+            require(4);
+            int n = Math.min(len, buf.remaining() >> 2);
+            buf.asIntBuffer().get(a, off, n);
+            buf.position(buf.position() + 4 * n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * 读取n个int
+     * @param n 个数
+     * @return int[]
+     * @throws NoSuchElementException 如果输入流中不够n个int
+     */
+    public int[] readInts(int n) {
+        int[] a = new int[n];
+        readInts(a, 0, n);
+        return a;
+    }
+
+    /**
+     * 读取len个long存入a[off, off + len)
+     * @throws NoSuchElementException 如果输入流中不够len个long
+     */
+    public void readLongs(long[] a, int off, int len) {
+        if (bitsLeft != 0) {
+            for (int i = 0; i < len; i++) a[off + i] = readUnaligned(8);
+            return;
+        }
+        while (len > 0) {
+            require(8);
+            int n = Math.min(len, buf.remaining() >> 3);
+            buf.asLongBuffer().get(a, off, n);
+            buf.position(buf.position() + 8 * n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * 读取n个long
+     * @param n 个数
+     * @return long[]
+     * @throws NoSuchElementException 如果输入流中不够n个long
+     */
+    public long[] readLongs(int n) {
+        long[] a = new long[n];
+        readLongs(a, 0, n);
+        return a;
+    }
+
+    /**
+     * 读取len个float存入a[off, off + len)
+     * @throws NoSuchElementException 如果输入流中不够len个float
+     */
+    public void readFloats(float[] a, int off, int len) {
+        if (bitsLeft != 0) {
+            for (int i = 0; i < len; i++) a[off + i] = Float.intBitsToFloat((int) readUnaligned(4));
+            return;
+        }
+        while (len > 0) {
+            require(4);
+            int n = Math.min(len, buf.remaining() >> 2);
+            buf.asFloatBuffer().get(a, off, n);
+            buf.position(buf.position() + 4 * n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * 读取n个float
+     * @param n 个数
+     * @return float[]
+     * @throws NoSuchElementException 如果输入流中不够n个float
+     */
+    public float[] readFloats(int n) {
+        float[] a = new float[n];
+        readFloats(a, 0, n);
+        return a;
+    }
+
+    /**
+     * 读取len个double存入a[off, off + len)
+     * @throws NoSuchElementException 如果输入流中不够len个double
+     */
+    public void readDoubles(double[] a, int off, int len) {
+        if (bitsLeft != 0) {
+            for (int i = 0; i < len; i++) a[off + i] = Double.longBitsToDouble(readUnaligned(8));
+            return;
+        }
+        while (len > 0) {
+            require(8);
+            int n = Math.min(len, buf.remaining() >> 3);
+            buf.asDoubleBuffer().get(a, off, n);
+            buf.position(buf.position() + 8 * n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * 读取n个double
+     * @param n 个数
+     * @return double[]
+     * @throws NoSuchElementException 如果输入流中不够n个double
+     */
+    public double[] readDoubles(int n) {
+        double[] a = new double[n];
+        readDoubles(a, 0, n);
+        return a;
+    }
+}
@@ -0,0 +1,533 @@
+package com.fengjie.io;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ *  这个类提供了把二进制数据写入标准输出，文件和套接字的方法
+ *
+ *  可以按位写出：write(boolean)写一位，write(x, r)写x的低r位；
+ *  也可以写出打包的基本类型和基本类型数组，多字节的值按order()指定的字节序写出，默认为大端。
+ *  按位写出总是从字节的最高位开始，flush()和close()会用0把最后一个字节补齐。
+ *  位于字节边界时，基本类型和数组直接成批放入缓冲区；不在字节边界时逐字节拆开。
+ *
+ *  和Out一样，写出时发生的IOException不会抛出，用checkError()检查
+ *  这个类不是线程安全的
+ *
+ *  @author fengjie2018@qq.com
+ *  @version 1.0 2018年2月16日
+ */
+public final class BinaryOut {
+
+    // 缓冲区大小：64KB
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private OutputStream os;
+
+    // 缓冲区，已写入的字节为[0, position)
+    private ByteBuffer buf;
+
+    // 还没凑满一个字节的位，在低bitCount位中
+    private int bitBuffer;
+    private int bitCount;
+
+    // 写入时是否发生过IOException
+    private boolean error;
+
+    /**
+     * 从标准输出流初始化
+     */
+    public BinaryOut() {
+        init(System.out);
+    }
+
+    /**
+     * 用给定的输出流初始化
+     * @param os OutputStream
+     * @throws IllegalArgumentException 如果os为null
+     */
+    public BinaryOut(OutputStream os) {
+        if (os == null) throw new IllegalArgumentException("输出流为null");
+        init(os);
+    }
+
+    /**
+     * 用套接字初始化输出流
+     * @param  socket socket
+     * @throws IllegalArgumentException 如果socket为null或无法写入
+     */
+    public BinaryOut(Socket socket) {
+        if (socket == null) throw new IllegalArgumentException("套接字为 null");
+        try {
+            init(socket.getOutputStream());
+        }
+        catch (IOException e) {
+            throw new IllegalArgumentException("无法打开" + socket, e);
+        }
+    }
+
+    /**
+     * 用文件初始化输出流
+     * @param file 文件
+     * @throws IllegalArgumentException 如果file为null或无法打开
+     */
+    public BinaryOut(File file) {
+        if (file == null) throw new IllegalArgumentException("文件为null");
+        try {
+            init(new FileOutputStream(file));
+        }
+        catch (IOException e) {
+            throw new IllegalArgumentException("无法打开" + file, e);
+        }
+    }
+
+    /**
+     * 用文件名初始化输出流
+     * @param filename 文件名
+     * @throws IllegalArgumentException 如果filename为null或无法打开
+     */
+    public BinaryOut(String filename) {
+        if (filename == null) throw new IllegalArgumentException("文件名为null");
+        try {
+            init(new FileOutputStream(filename));
+        }
+        catch (IOException e) {
+            throw new IllegalArgumentException("无法打开" + filename, e);
+        }
+    }
+
+    private void init(OutputStream os) {
+        this.os  = os;
+        this.buf = ByteBuffer.allocate(BUFFER_SIZE);
+    }
+
+    /**
+     * 字节序
+     * @return ByteOrder
+     */
+    public ByteOrder order() {
+        return buf.order();
+    }
+
+    /**
+     * 设置之后写出多字节值时使用的字节序
+     * @param order 字节序
+     * @return this
+     * @throws IllegalArgumentException 如果order为null
+     */
+    public BinaryOut order(ByteOrder order) {
+        if (order == null) throw new IllegalArgumentException("order为null");
+        buf.order(order);
+        return this;
+    }
+
+    /**
+     * 用0补齐最后一个字节，把缓冲区的内容写到目的地并刷新
+     */
+    public void flush() {
+        clearBits();
+        flushBuffer();
+        try {
+            os.flush();
+        }
+        catch (IOException e) {
+            error = true;
+        }
+    }
+
+    /**
+     * 刷新并关闭输出流
+     */
+    public void close() {
+        flush();
+        try {
+            os.close();
+        }
+        catch (IOException e) {
+            error = true;
+        }
+    }
+
+    /**
+     * 刷新输出流，并检查是否发生过错误
+     * @return 如果写入时发生过IOException就返回true
+     */
+    public boolean checkError() {
+        flush();
+        return error;
+    }
+
+    // 把缓冲区写到目的地，不刷新目的地
+    private void flushBuffer() {
+        if (buf.position() == 0) return;
+        try {
+            os.write(buf.array(), 0, buf.position());
+        }
+        catch (IOException e) {
+            error = true;
+        }
+        buf.clear();
+    }
+
+    // 保证缓冲区中至少还能放下n个字节，n不超过缓冲区大小
+    private void ensure(int n) {
+        if (buf.remaining() < n) flushBuffer();
+    }
+
+    // 不足一个字节的位用0补齐
+    private void clearBits() {
+        if (bitCount == 0) return;
+        writeBits(0, 8 - bitCount);
+    }
+
+    // 写出x的低r位，1 <= r <= 64，高位在前
+    private void writeBits(long x, int r) {
+        while (r > 0) {
+            int take = Math.min(r, 8 - bitCount);
+            r -= take;
+            bitBuffer = bitBuffer << take | (int) (x >>> r) & ((1 << take) - 1);
+            bitCount += take;
+            if (bitCount == 8) {
+                ensure(1);
+                buf.put((byte) bitBuffer);
+                bitBuffer = 0;
+                bitCount  = 0;
+            }
+        }
+    }
+
+    // 不在字节边界时按字节序把x的低n个字节拆开写出
+    private void writeUnaligned(long x, int n) {
+        if (buf.order() == ByteOrder.LITTLE_ENDIAN) x = Long.reverseBytes(x) >>> (64 - 8 * n);
+        writeBits(x, 8 * n);
+    }
+
+    /**
+     * 写出一位
+     * @param x 为true时写1
+     */
+    public void write(boolean x) {
+        writeBits(x ? 1 : 0, 1);
+    }
+
+    /**
+     * 写出一个字节
+     * @param x byte
+     */
+    public void write(byte x) {
+        if (bitCount != 0) {
+            writeBits(x, 8);
+            return;
+        }
+        ensure(1);
+        buf.put(x);
+    }
+
+    /**
+     * 写出一个16位的char
+     * @param x char
+     */
+    public void write(char x) {
+        if (bitCount != 0) {
+            writeUnaligned(x, 2);
+            return;
+        }
+        ensure(2);
+        buf.putChar(x);
+    }
+
+    /**
+     * 写出x的低r位
+     * @param x char
+     * @param r 位数，1 ~ 16
+     * @throws IllegalArgumentException 如果r不在范围内，或x不能用r位表示
+     */
+    public void write(char x, int r) {
+        if (r < 1 || r > 16) throw new IllegalArgumentException("r必须在1 ~ 16之间：" + r);
+        if (r < 16 && x >= 1 << r) throw new IllegalArgumentException(r + "位放不下" + (int) x);
+        writeBits(x, r);
+    }
+
+    /**
+     * 写出一个short
+     * @param x short
+     */
+    public void write(short x) {
+        if (bitCount != 0) {
+            writeUnaligned(x, 2);
+            return;
+        }
+        ensure(2);
+        buf.putShort(x);
+    }
+
+    /**
+     * 写出一个int
+     * @param x int
+     */
+    public void write(int x) {
+        if (bitCount != 0) {
+            writeUnaligned(x, 4);
+            return;
+        }
+        ensure(4);
+        buf.putInt(x);
+    }
+
+    /**
+     * 写出x的低r位，r为32时就是write(x)
+     * @param x int
+     * @param r 位数，1 ~ 32
+     * @throws IllegalArgumentException 如果r不在范围内，或x不能用r位无符号数表示
+     */
+    public void write(int x, int r) {
+        if (r < 1 || r > 32) throw new IllegalArgumentException("r必须在1 ~ 32之间：" + r);
+        if (r < 32 && (x < 0 || x >= 1 << r)) throw new IllegalArgumentException(r + "位放不下" + x);
+        writeBits(x, r);
+    }
+
+    /**
+     * 写出一个long
+     * @param x long
+     */
+    public void write(long x) {
+        if (bitCount != 0) {
+            writeUnaligned(x, 8);
+            return;
+        }
+        ensure(8);
+        buf.putLong(x);
+    }
+
+    /**
+     * 写出x的低r位，r为64时就是write(x)
+     * @param x long
+     * @param r 位数，1 ~ 64
+     * @throws IllegalArgumentException 如果r不在范围内，或x不能用r位无符号数表示
+     */
+    public void write(long x, int r) {
+        if (r < 1 || r > 64) throw new IllegalArgumentException("r必须在1 ~ 64之间：" + r);
+        if (r < 64 && (x < 0 || x >= 1L << r)) throw new IllegalArgumentException(r + "位放不下" + x);
+        writeBits(x, r);
+    }
+
+    /**
+     * 写出一个float
+     * @param x float
+     */
+    public void write(float x) {
+        write(Float.floatToRawIntBits(x));
+    }
+
+    /**
+     * 写出一个double
+     * @param x double
+     */
+    public void write(double x) {
+        write(Double.doubleToRawLongBits(x));
+    }
+
+    // 数组：在字节边界时每次向缓冲区的视图中成批放入能放的部分
+
+    /**
+     * 写出a[off, off + len)，每个boolean一位
+     */
+    public void write(boolean[] a, int off, int len) {
+        for (int i = 0; i < len; i++)
+            writeBits(a[off + i] ? 1 : 0, 1);
+    }
+
+    /**
+     * 写出a[off, off + len)
+     */
+    public void write(byte[] a, int off, int len) {
+        if (bitCount != 0) {
+            for (int i = 0; i < len; i++) writeBits(a[off + i], 8);
+            return;
+        }
+        while (len > 0) {
+            ensure(1);
+            int n = Math.min(len, buf.remaining());
+            buf.put(a, off, n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * 写出a[off, off + len)
+     */
+    public void write(char[] a, int off, int len) {
+        if (bitCount != 0) {
+            for (int i = 0; i < len; i++) writeUnaligned(a[off + i], 2);
+            return;
+        }
+        while (len > 0) {
+            ensure(2);
+            int n = Math.min(len, buf.remaining() >> 1);
+            buf.asCharBuffer().put(a, off, n);
+            buf.position(buf.position() + 2 * n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * 写出a[off, off + len)
+     */
+    public void write(short[] a, int off, int len) {
+        if (bitCount != 0) {
+            for (int i = 0; i < len; i++) writeUnaligned(a[off + i], 2);
+            return;
+        }
+        while (len > 0) {
+            ensure(2);
+            int n = Math.min(len, buf.remaining() >> 1);
+            buf.asShortBuffer().put(a, off, n);
+            buf.position(buf.position() + 2 * n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * 写出a[off, off + len)
+     */
+    public void write(int[] a, int off, int len) {
+        if (bitCount != 0) {
+            for (int i = 0; i < len; i++) writeUnaligned(a[off + i], 4);
+            return;
+        }
+        while (len > 0) {
+            ensure(4);
+            int n = Math.min(len, buf.remaining() >> 2);
+            buf.asIntBuffer().put(a, off, n);
+            buf.position(buf.position() + 4 * n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * 写出a[off, off + len)
+     */
+    public void write(long[] a, int off, int len) {
+        if (bitCount != 0) {
+            for (int i = 0; i < len; i++) writeUnaligned(a[off + i], 8);
+            return;
+        }
+        while (len > 0) {
+            ensure(8);
+            int n = Math.min(len, buf.remaining() >> 3);
+            buf.asLongBuffer().put(a, off, n);
+            buf.position(buf.position() + 8 * n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * 写出a[off, off + len)
+     */
+    public void write(float[] a, int off, int len) {
+        if (bitCount != 0) {
+            for (int i = 0; i < len; i++) writeUnaligned(Float.floatToRawIntBits(a[off + i]), 4);
+            return;
+        }
+        while (len > 0) {
+            ensure(4);
+            int n = Math.min(len, buf.remaining() >> 2);
+            buf.asFloatBuffer().put(a, off, n);
+            buf.position(buf.position() + 4 * n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * 写出a[off, off + len)
+     */
+    public void write(double[] a, int off, int len) {
+        if (bitCount != 0) {
+            for (int i = 0; i < len; i++) writeUnaligned(Double.doubleToRawLongBits(a[off + i]), 8);
+            return;
+        }
+        while (len > 0) {
+            ensure(8);
+            int n = Math.min(len, buf.remaining() >> 3);
+            buf.asDoubleBuffer().put(a, off, n);
+            buf.position(buf.position() + 8 * n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * 写出整个数组，每个boolean一位
+     * @param a boolean[]
+     */
+    public void write(boolean[] a) {
+        write(a, 0, a.length);
+    }
+
+    /**
+     * 写出整个数组
+     * @param a byte[]
+     */
+    public void write(byte[] a) {
+        write(a, 0, a.length);
+    }
+
+    /**
+     * 写出整个数组
+     * @param a char[]
+     */
+    public void write(char[] a) {
+        write(a, 0, a.length);
+    }
+
+    /**
+     * 写出整个数组
+     * @param a short[]
+     */
+    public void write(short[] a) {
+        write(a, 0, a.length);
+    }
+
+    /**
+     * 写出整个数组
+     * @param a int[]
+     */
+    public void write(int[] a) {
+        write(a, 0, a.length);
+    }
+
+    /**
+     * 写出整个数组
+     * @param a long[]
+     */
+    public void write(long[] a) {
+        write(a, 0, a.length);
+    }
+
+    /**
+     * 写出整个数组
+     * @param a float[]
+     */
+    public void write(float[] a) {
+        write(a, 0, a.length);
+    }
+
+    /**
+     * 写出整个数组
+     * @param a double[]
+     */
+    public void write(double[] a) {
+        write(a, 0, a.length);
+    }
+}
@@ -0,0 +1,106 @@
+package com.fengjie.io;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ *  按字节内容去重的字典，给每个不同的标记一个从0开始的编号
+ *
+ *  直接对缓冲区中的字节求哈希、比较，只有第一次见到的标记才创建String，
+ *  重复的标记不产生任何对象。开放寻址，线性探测，装载因子不超过1/2。
+ *
+ *  @author fengjie2018@qq.com
+ *  @version 1.0 2018年2月16日
+ */
+final class ByteDictionary {
+
+    // 槽中存放编号 + 1，0表示空槽
+    private int[] slots = new int[64];
+
+    // 各个标记的哈希值、在arena中的起止位置和String
+    private int[]    hashes  = new int[16];
+    private int[]    starts  = new int[17];
+    private String[] strings = new String[16];
+    private int size;
+
+    // 所有标记的字节依次存放在这里
+    private byte[] arena = new byte[256];
+
+    /**
+     * 不同标记的个数
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * 编号为id的标记
+     */
+    String get(int id) {
+        return strings[id];
+    }
+
+    /**
+     * 按编号排列的所有标记
+     */
+    String[] strings() {
+        return Arrays.copyOf(strings, size);
+    }
+
+    /**
+     * 查找b[from, to)的编号，第一次见到时加入字典
+     * @return 编号
+     */
+    int add(byte[] b, int from, int to) {
+        int h = hash(b, from, to);
+        int mask = slots.length - 1;
+        int i = h & mask;
+        for (int s; (s = slots[i]) != 0; i = (i + 1) & mask) {
+            int id = s - 1;
+            if (hashes[id] == h && equals(id, b, from, to)) return id;
+        }
+        int id = append(h, b, from, to);
+        slots[i] = id + 1;
+        if (2 * size > slots.length) rehash();
+        return id;
+    }
+
+    private boolean equals(int id, byte[] b, int from, int to) {
+        int start = starts[id];
+        return Arrays.equals(arena, start, starts[id + 1], b, from, to);
+    }
+
+    private int append(int h, byte[] b, int from, int to) {
+        int len = to - from;
+        int start = starts[size];
+        if (start + len > arena.length) arena = Arrays.copyOf(arena, Math.max(2 * arena.length, start + len));
+        System.arraycopy(b, from, arena, start, len);
+        if (size == hashes.length) {
+            hashes  = Arrays.copyOf(hashes, 2 * size);
+            starts  = Arrays.copyOf(starts, 2 * size + 1);
+            strings = Arrays.copyOf(strings, 2 * size);
+        }
+        hashes[size]     = h;
+        strings[size]    = new String(b, from, len, StandardCharsets.UTF_8);
+        starts[size + 1] = start + len;
+        return size++;
+    }
+
+    private void rehash() {
+        int[] larger = new int[2 * slots.length];
+        int mask = larger.length - 1;
+        for (int id = 0; id < size; id++) {
+            int i = hashes[id] & mask;
+            while (larger[i] != 0) i = (i + 1) & mask;
+            larger[i] = id + 1;
+        }
+        slots = larger;
+    }
+
+    // 和String.hashCode相同的多项式哈希，再把高位混合到低位
+    static int hash(byte[] b, int from, int to) {
+        int h = 0;
+        for (int i = from; i < to; i++) h = 31 * h + b[i];
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,801 @@
+package com.fengjie.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.InputMismatchException;
+import java.util.NoSuchElementException;
+
+/**
+ *  直接扫描字节缓冲区的读取引擎，供In使用
+ *
+ *  和Scanner不同，它不使用正则表达式，也不先把字节解码成字符：
+ *  标记以ASCII空白符分割，数字由NumberParser直接从字节解析。
+ *  文本按UTF-8解码。
+ *
+ *  与Scanner的区别：
+ *  只把ASCII空白符（包括0x1C~0x1F）视为分隔符，不识别全角空格等Unicode空白；
+ *  数字只接受ASCII数字和可选的正负号，不接受千位分隔符。
+ *
+ *  @author fengjie2018@qq.com
+ *  @version 1.0 2018年2月16日
+ */
+final class ByteScanner {
+
+    // 默认缓冲区大小：64KB
+    static final int BUFFER_SIZE = 1 << 16;
+
+    // 压缩数组一开始最多分配的元素个数，之后随读到的元素加倍，
+    // 这样损坏的帧头声明很大的长度时，不会在核对数据之前就分配巨大的数组
+    private static final int INITIAL_COUNT = 1 << 12;
+
+    private final InputStream is;
+
+    // 缓冲区，有效数据为buf[pos, lim)
+    private byte[] buf;
+    private int pos;
+    private int lim;
+
+    // 读到流尾
+    private boolean eof;
+
+    // 从流中读取的总字节数
+    private long filled;
+
+    // 读取时遇到的最后一个IOException，和Scanner一样把它当作流尾
+    private IOException lastException;
+
+    // readChar()遇到增补字符时，暂存的低位代理
+    private char pendingLow;
+
+    // decode()解码的字符占用的字节数
+    private int decodedLength;
+
+    // 浮点数解析器
+    private final NumberParser numbers = new NumberParser();
+
+    // 读取的统计，只有In的ByteScanner才有，并行解析的块和FileSpliterator为null
+    StreamMetrics metrics;
+
+    ByteScanner(InputStream is) {
+        this(is, BUFFER_SIZE);
+    }
+
+    ByteScanner(InputStream is, int bufferSize) {
+        this.is  = is;
+        this.buf = new byte[bufferSize];
+    }
+
+    /**
+     * 判断是否为分隔符，与\p{javaWhitespace}在ASCII范围内一致
+     */
+    static boolean isWhitespace(int b) {
+        return b == ' ' || (b >= '\t' && b <= '\r') || (b >= 0x1C && b <= 0x1F);
+    }
+
+    // 以下三个方法是分割标记和行的规则，SocketMultiplexer也使用它们
+
+    /**
+     * b[from, to)中第一个非空白字节的位置，没有时返回to
+     */
+    static int skipWhitespace(byte[] b, int from, int to) {
+        while (from < to && isWhitespace(b[from])) from++;
+        return from;
+    }
+
+    /**
+     * b[from, to)中第一个空白字节的位置，也就是标记结束的位置，没有时返回to
+     */
+    static int tokenEnd(byte[] b, int from, int to) {
+        while (from < to && !isWhitespace(b[from])) from++;
+        return from;
+    }
+
+    /**
+     * b[from, to)中第一个\n或\r的位置，也就是行结束的位置，没有时返回to
+     * 行以\n、\r\n或\r结束
+     */
+    static int lineEnd(byte[] b, int from, int to) {
+        while (from < to && b[from] != '\n' && b[from] != '\r') from++;
+        return from;
+    }
+
+    /**
+     * 把buf[keep, lim)移到缓冲区开头，再从流中读取更多字节
+     * 缓冲区已满时会扩容，调用者需要把自己持有的下标减去keep
+     * @return 读取的字节数，流尾返回-1
+     */
+    private int fill(int keep) {
+        // 流尾也要先移动，调用者总是把自己的下标减去keep
+        if (keep > 0) {
+            System.arraycopy(buf, keep, buf, 0, lim - keep);
+            pos -= keep;
+            lim -= keep;
+        }
+        if (eof) return -1;
+        if (lim == buf.length) {
+            byte[] larger = new byte[buf.length << 1];
+            System.arraycopy(buf, 0, larger, 0, lim);
+            buf = larger;
+        }
+        int n;
+        try {
+            n = metrics != null ? metrics.read(is, buf, lim, buf.length - lim) : is.read(buf, lim, buf.length - lim);
+        }
+        catch (IOException ioe) {
+            lastException = ioe;
+            n = -1;
+        }
+        if (n < 0) {
+            eof = true;
+            return -1;
+        }
+        lim += n;
+        filled += n;
+        return n;
+    }
+
+    /**
+     * 从流中读取的总字节数
+     */
+    long filled() {
+        return filled;
+    }
+
+    /**
+     * 已经消耗的字节数，也就是下一个字节在流中的位置
+     */
+    long position() {
+        return filled - (lim - pos);
+    }
+
+    // 以下几个方法供RecordReader直接扫描缓冲区，有效数据为buffer()[offset(), limit())
+
+    byte[] buffer() {
+        return buf;
+    }
+
+    int offset() {
+        return pos;
+    }
+
+    int limit() {
+        return lim;
+    }
+
+    void offset(int offset) {
+        pos = offset;
+        pendingLow = 0;
+    }
+
+    /**
+     * 把buf[offset(), limit())移到缓冲区开头再读入更多字节，缓冲区满了会换成更大的数组
+     * @return 读取的字节数，流尾返回-1
+     */
+    int refill() {
+        return fill(pos);
+    }
+
+    /**
+     * 跳过当前位置开始的非空白字节，用于跳过属于上一个分块的半个标记
+     */
+    void skipPartialToken() {
+        for (;;) {
+            pos = tokenEnd(buf, pos, lim);
+            if (pos < lim) return;
+            if (fill(pos) < 0) return;
+        }
+    }
+
+    /**
+     * 如果当前位置不是一行的开头，就跳过这一行的剩余部分
+     * 当前位置是上一个分块的最后一个字节，调用后位于下一行的开头
+     */
+    void skipPartialLine() {
+        if (!hasNextLine()) return;
+        byte b = buf[pos];
+        if (b == '\n') {
+            pos++;
+        }
+        else if (b == '\r') {
+            pos++;
+            if ((pos < lim || fill(pos) > 0) && buf[pos] == '\n') pos++;
+        }
+        else {
+            nextLine();
+        }
+    }
+
+    /**
+     * 跳过空白，判断下一个标记是否在limit之前开始
+     * @param limit 见position()
+     */
+    boolean hasNext(long limit) {
+        return skipWhitespace() && position() < limit;
+    }
+
+    /**
+     * 判断下一行是否在limit之前开始
+     * @param limit 见position()
+     */
+    boolean hasNextLine(long limit) {
+        return hasNextLine() && position() < limit;
+    }
+
+    /**
+     * 丢弃剩余的所有输入，之后就像读到了流尾
+     */
+    void skipToEnd() {
+        pos = lim = 0;
+        eof = true;
+        pendingLow = 0;
+    }
+
+    /**
+     * 跳过空白符，并消耗它们
+     * @return 如果还有标记就返回true
+     */
+    private boolean skipWhitespace() {
+        pendingLow = 0;
+        for (;;) {
+            pos = skipWhitespace(buf, pos, lim);
+            if (pos < lim) return true;
+            if (fill(pos) < 0) return false;
+        }
+    }
+
+    /**
+     * 确保当前标记完整地位于缓冲区中，pos必须指向标记的第一个字节
+     * @return 标记结束的位置
+     */
+    private int tokenEnd() {
+        int i = pos;
+        for (;;) {
+            i = tokenEnd(buf, i, lim);
+            if (i < lim) return i;
+            int keep = pos;
+            if (fill(keep) < 0) return i - keep;
+            i -= keep;
+        }
+    }
+
+    /**
+     * 是否还有标记，不消耗任何输入
+     */
+    boolean hasNext() {
+        int i = pos;
+        for (;;) {
+            i = skipWhitespace(buf, i, lim);
+            if (i < lim) return true;
+            int keep = pos;
+            if (fill(keep) < 0) return false;
+            i -= keep;
+        }
+    }
+
+    /**
+     * 是否还有下一行（包括空行）
+     */
+    boolean hasNextLine() {
+        return pos < lim || fill(pos) > 0;
+    }
+
+    /**
+     * 是否还有下一个字符
+     */
+    boolean hasNextChar() {
+        return pendingLow != 0 || hasNextLine();
+    }
+
+    String next() {
+        return next(null);
+    }
+
+    /**
+     * 读取下一个标记，pool不为null时重复的标记返回池中的String
+     */
+    String next(TokenPool pool) {
+        if (!skipWhitespace())
+            throw new NoSuchElementException("标准输入流为空！");
+        int end = tokenEnd();
+        String s = pool != null ? pool.intern(buf, pos, end) : new String(buf, pos, end - pos, StandardCharsets.UTF_8);
+        pos = end;
+        return s;
+    }
+
+    String nextLine() {
+        if (!hasNextChar())
+            throw new NoSuchElementException("没有下一行！");
+        pendingLow = 0;
+        int i = pos;
+        for (;;) {
+            i = lineEnd(buf, i, lim);
+            if (i < lim) break;
+            int keep = pos;
+            if (fill(keep) < 0) {
+                i -= keep;
+                break;
+            }
+            i -= keep;
+        }
+        String line = new String(buf, pos, i - pos, StandardCharsets.UTF_8);
+        pos = i;
+        if (pos < lim) {
+            if (buf[pos++] == '\r' && (pos < lim || fill(pos) > 0) && buf[pos] == '\n')
+                pos++;
+        }
+        return line;
+    }
+
+    /**
+     * 解码当前位置的字符，不移动pos，调用前应确认hasNextLine()
+     * 占用的字节数记录在decodedLength中，格式错误的字节解码为U+FFFD
+     * @return 码点
+     */
+    private int decode() {
+        int b = buf[pos];
+        decodedLength = 1;
+        if (b >= 0) return b;
+        int n = b >= (byte) 0xF0 ? 4 : b >= (byte) 0xE0 ? 3 : b >= (byte) 0xC0 ? 2 : 1;
+        while (lim - pos < n && fill(pos) > 0) {}
+        if (n == 1 || lim - pos < n) return 0xFFFD;
+        int cp = b & (0xFF >> (n + 1));
+        for (int k = 1; k < n; k++) {
+            int c = buf[pos + k];
+            if ((c & 0xC0) != 0x80) return 0xFFFD;
+            cp = (cp << 6) | (c & 0x3F);
+        }
+        decodedLength = n;
+        if (!Character.isValidCodePoint(cp) || (cp >= Character.MIN_SURROGATE && cp <= Character.MAX_SURROGATE))
+            return 0xFFFD;
+        return cp;
+    }
+
+    /**
+     * 读取下一个字符，增补字符分两次返回高位代理和低位代理
+     */
+    char nextChar() {
+        if (pendingLow != 0) {
+            char low = pendingLow;
+            pendingLow = 0;
+            return low;
+        }
+        if (!hasNextLine())
+            throw new NoSuchElementException("标准输入流为空！");
+        int cp = decode();
+        pos += decodedLength;
+        if (Character.isBmpCodePoint(cp)) return (char) cp;
+        pendingLow = Character.lowSurrogate(cp);
+        return Character.highSurrogate(cp);
+    }
+
+    /**
+     * 返回下一个字符但不消耗它
+     */
+    char peekChar() {
+        if (pendingLow != 0) return pendingLow;
+        if (!hasNextLine())
+            throw new NoSuchElementException("标准输入流为空！");
+        int cp = decode();
+        return Character.isBmpCodePoint(cp) ? (char) cp : Character.highSurrogate(cp);
+    }
+
+    /**
+     * 读取下一个码点，如果上一次nextChar()返回了高位代理，就返回剩下的低位代理
+     */
+    int nextCodePoint() {
+        if (pendingLow != 0) {
+            char low = pendingLow;
+            pendingLow = 0;
+            return low;
+        }
+        if (!hasNextLine())
+            throw new NoSuchElementException("标准输入流为空！");
+        int cp = decode();
+        pos += decodedLength;
+        return cp;
+    }
+
+    /**
+     * 把字符读入数组，已经读到字符后不再为了填满数组而阻塞
+     * @return 读取的字符数，流尾返回-1
+     */
+    int read(char[] cbuf, int off, int len) {
+        if (len == 0) return 0;
+        int n = 0;
+        if (pendingLow != 0) {
+            cbuf[off + n++] = pendingLow;
+            pendingLow = 0;
+        }
+        while (n < len) {
+            if (pos == lim && (n > 0 || fill(pos) < 0)) break;
+            if (buf[pos] >= 0) {
+                // ASCII不需要解码，直接复制
+                int stop = pos + Math.min(len - n, lim - pos);
+                while (pos < stop && buf[pos] >= 0)
+                    cbuf[off + n++] = (char) buf[pos++];
+                continue;
+            }
+            int cp = decode();
+            pos += decodedLength;
+            if (Character.isBmpCodePoint(cp)) {
+                cbuf[off + n++] = (char) cp;
+            }
+            else {
+                cbuf[off + n++] = Character.highSurrogate(cp);
+                if (n < len) cbuf[off + n++] = Character.lowSurrogate(cp);
+                else         pendingLow = Character.lowSurrogate(cp);
+            }
+        }
+        return n == 0 ? -1 : n;
+    }
+
+    /**
+     * 读取剩余的所有输入
+     */
+    String readAll() {
+        if (!hasNext())
+            throw new NoSuchElementException("标准输入流为空！");
+        while (fill(pos) > 0) {}
+        String s = new String(buf, pos, lim - pos, StandardCharsets.UTF_8);
+        pos = lim = 0;
+        if (buf.length > BUFFER_SIZE) buf = new byte[BUFFER_SIZE];
+        return s;
+    }
+
+    String[] readAllStrings() {
+        return readAllStrings(null);
+    }
+
+    String[] readAllStrings(TokenPool pool) {
+        ArrayList<String> tokens = new ArrayList<>();
+        while (skipWhitespace()) {
+            int end = tokenEnd();
+            tokens.add(pool != null ? pool.intern(buf, pos, end) : new String(buf, pos, end - pos, StandardCharsets.UTF_8));
+            pos = end;
+        }
+        return tokens.toArray(new String[tokens.size()]);
+    }
+
+    int nextInt() {
+        if (skipWhitespace()) {
+            int end = tokenEnd();
+            try {
+                int v = NumberParser.parseInt(buf, pos, end);
+                pos = end;
+                return v;
+            }
+            catch (NumberFormatException e) {
+                if (metrics != null) metrics.failures++;
+            }
+        }
+        throw new NoSuchElementException("标准输入为空或读取的内容无法解析为int！");
+    }
+
+    long nextLong() {
+        if (skipWhitespace()) {
+            int end = tokenEnd();
+            try {
+                long v = NumberParser.parseLong(buf, pos, end);
+                pos = end;
+                return v;
+            }
+            catch (NumberFormatException e) {
+                if (metrics != null) metrics.failures++;
+            }
+        }
+        throw new NoSuchElementException("标准输入为空或读取的内容无法解析为long！");
+    }
+
+    short nextShort() {
+        if (skipWhitespace()) {
+            int end = tokenEnd();
+            try {
+                short v = (short) NumberParser.parseLong(buf, pos, end, Short.MIN_VALUE, Short.MAX_VALUE);
+                pos = end;
+                return v;
+            }
+            catch (NumberFormatException e) {
+                if (metrics != null) metrics.failures++;
+            }
+        }
+        throw new NoSuchElementException("标准输入为空或读取的内容无法解析为short！");
+    }
+
+    byte nextByte() {
+        if (skipWhitespace()) {
+            int end = tokenEnd();
+            try {
+                byte v = (byte) NumberParser.parseLong(buf, pos, end, Byte.MIN_VALUE, Byte.MAX_VALUE);
+                pos = end;
+                return v;
+            }
+            catch (NumberFormatException e) {
+                if (metrics != null) metrics.failures++;
+            }
+        }
+        throw new NoSuchElementException("标准输入为空或读取的内容无法解析为byte！");
+    }
+
+    double nextDouble() {
+        if (skipWhitespace()) {
+            int end = tokenEnd();
+            try {
+                double v = numbers.parseDouble(buf, pos, end);
+                pos = end;
+                return v;
+            }
+            catch (NumberFormatException e) {
+                if (metrics != null) metrics.failures++;
+            }
+        }
+        throw new NoSuchElementException("标准输入为空或读取的内容无法解析为double！");
+    }
+
+    float nextFloat() {
+        if (skipWhitespace()) {
+            int end = tokenEnd();
+            try {
+                float v = numbers.parseFloat(buf, pos, end);
+                pos = end;
+                return v;
+            }
+            catch (NumberFormatException e) {
+                if (metrics != null) metrics.failures++;
+            }
+        }
+        throw new NoSuchElementException("标准输入为空或读取的内容无法解析为float！");
+    }
+
+    /**
+     * 解析下一个标记，调用前应先用hasNext()确认还有标记
+     * @throws NumberFormatException 如果标记不能解析为int
+     */
+    int nextIntToken() {
+        skipWhitespace();
+        int end = tokenEnd();
+        int v = NumberParser.parseInt(buf, pos, end);
+        pos = end;
+        return v;
+    }
+
+    /**
+     * 解析下一个标记，调用前应先用hasNext()确认还有标记
+     * @throws NumberFormatException 如果标记不能解析为long
+     */
+    long nextLongToken() {
+        skipWhitespace();
+        int end = tokenEnd();
+        long v = NumberParser.parseLong(buf, pos, end);
+        pos = end;
+        return v;
+    }
+
+    /**
+     * 解析下一个标记，调用前应先用hasNext()确认还有标记
+     * @throws NumberFormatException 如果标记不能解析为double
+     */
+    double nextDoubleToken() {
+        skipWhitespace();
+        int end = tokenEnd();
+        double v = numbers.parseDouble(buf, pos, end);
+        pos = end;
+        return v;
+    }
+
+    /**
+     * 读取下一个标记，返回它在字典中的编号，重复的标记不创建String
+     * @throws NoSuchElementException 如果没有标记
+     */
+    int nextTokenId(ByteDictionary dictionary) {
+        if (!skipWhitespace())
+            throw new NoSuchElementException("标准输入流为空！");
+        int end = tokenEnd();
+        int id = dictionary.add(buf, pos, end);
+        pos = end;
+        return id;
+    }
+
+    /**
+     * 读取剩余的所有标记在字典中的编号
+     */
+    int[] readAllTokenIds(ByteDictionary dictionary) {
+        int[] ids = new int[16];
+        int n = 0;
+        while (skipWhitespace()) {
+            int end = tokenEnd();
+            if (n == ids.length) ids = Arrays.copyOf(ids, 2 * n);
+            ids[n++] = dictionary.add(buf, pos, end);
+            pos = end;
+        }
+        return Arrays.copyOf(ids, n);
+    }
+
+    /**
+     * 逐个解析剩余的标记，不经过String
+     * @throws NumberFormatException 如果有标记不能解析为int
+     */
+    int[] readAllInts() {
+        return readAllInts(Long.MAX_VALUE);
+    }
+
+    /**
+     * 逐个解析起始位置在limit之前的标记
+     * @param limit 见position()
+     * @throws NumberFormatException 如果有标记不能解析为int
+     */
+    int[] readAllInts(long limit) {
+        int[] vals = new int[16];
+        int n = 0;
+        while (skipWhitespace() && position() < limit) {
+            int end = tokenEnd();
+            if (n == vals.length) vals = Arrays.copyOf(vals, n << 1);
+            vals[n++] = NumberParser.parseInt(buf, pos, end);
+            pos = end;
+        }
+        return Arrays.copyOf(vals, n);
+    }
+
+    /**
+     * 逐个解析剩余的标记，不经过String
+     * @throws NumberFormatException 如果有标记不能解析为long
+     */
+    long[] readAllLongs() {
+        return readAllLongs(Long.MAX_VALUE);
+    }
+
+    /**
+     * 逐个解析起始位置在limit之前的标记
+     * @param limit 见position()
+     * @throws NumberFormatException 如果有标记不能解析为long
+     */
+    long[] readAllLongs(long limit) {
+        long[] vals = new long[16];
+        int n = 0;
+        while (skipWhitespace() && position() < limit) {
+            int end = tokenEnd();
+            if (n == vals.length) vals = Arrays.copyOf(vals, n << 1);
+            vals[n++] = NumberParser.parseLong(buf, pos, end);
+            pos = end;
+        }
+        return Arrays.copyOf(vals, n);
+    }
+
+    /**
+     * 逐个解析剩余的标记，不经过String
+     * @throws NumberFormatException 如果有标记不能解析为double
+     */
+    double[] readAllDoubles() {
+        return readAllDoubles(Long.MAX_VALUE);
+    }
+
+    /**
+     * 逐个解析起始位置在limit之前的标记
+     * @param limit 见position()
+     * @throws NumberFormatException 如果有标记不能解析为double
+     */
+    double[] readAllDoubles(long limit) {
+        double[] vals = new double[16];
+        int n = 0;
+        while (skipWhitespace() && position() < limit) {
+            int end = tokenEnd();
+            if (n == vals.length) vals = Arrays.copyOf(vals, n << 1);
+            vals[n++] = numbers.parseDouble(buf, pos, end);
+            pos = end;
+        }
+        return Arrays.copyOf(vals, n);
+    }
+
+    /**
+     * 跳过空白，读取一帧压缩的int数组，见VarintCodec
+     * @throws InputMismatchException 如果读取的内容不是压缩的int数组
+     * @throws NoSuchElementException 如果输入在帧结束之前就结束了
+     */
+    int[] nextEncodedInts() {
+        int tag = nextTag();
+        if ((tag & VarintCodec.LONG_FLAG) != 0)
+            throw new InputMismatchException("压缩数组中是long，不能读取为int！");
+        return decodeInts(VarintCodec.encoding(tag));
+    }
+
+    /**
+     * 跳过空白，读取一帧压缩的long数组，int数组的帧也可以读取
+     * @throws InputMismatchException 如果读取的内容不是压缩的整数数组
+     * @throws NoSuchElementException 如果输入在帧结束之前就结束了
+     */
+    long[] nextEncodedLongs() {
+        int tag = nextTag();
+        ArrayEncoding encoding = VarintCodec.encoding(tag);
+        if ((tag & VarintCodec.LONG_FLAG) == 0) {
+            int[] ints = decodeInts(encoding);
+            long[] a = new long[ints.length];
+            for (int i = 0; i < a.length; i++) a[i] = ints[i];
+            return a;
+        }
+        int n = nextCount();
+        long prev = encoding == ArrayEncoding.FRAME_OF_REFERENCE
+            ? VarintCodec.unzigzag(nextVarint(VarintCodec.MAX_LONG_BYTES)) : 0;
+        long[] a = new long[Math.min(n, INITIAL_COUNT)];
+        for (int off = 0; off < n; off += VarintCodec.BLOCK) {
+            int len = Math.min(VarintCodec.BLOCK, n - off);
+            if (off + len > a.length) a = Arrays.copyOf(a, (int) Math.min(n, 2L * a.length));
+            // 缓冲区中已经有最坏情况的字节数时成批解码，否则逐个读取，
+            // 不为凑够字节而多读，套接字和管道上读到帧尾就能返回
+            if (lim - pos >= len * VarintCodec.MAX_LONG_BYTES) {
+                pos = VarintCodec.getLongs(buf, pos, a, off, len);
+            }
+            else {
+                for (int i = off; i < off + len; i++) a[i] = nextVarint(VarintCodec.MAX_LONG_BYTES);
+            }
+            prev = VarintCodec.decodeBlock(a, off, len, encoding, prev);
+        }
+        return a;
+    }
+
+    private int[] decodeInts(ArrayEncoding encoding) {
+        int n = nextCount();
+        int prev = encoding == ArrayEncoding.FRAME_OF_REFERENCE
+            ? VarintCodec.unzigzag((int) nextVarint(VarintCodec.MAX_INT_BYTES)) : 0;
+        int[] a = new int[Math.min(n, INITIAL_COUNT)];
+        for (int off = 0; off < n; off += VarintCodec.BLOCK) {
+            int len = Math.min(VarintCodec.BLOCK, n - off);
+            if (off + len > a.length) a = Arrays.copyOf(a, (int) Math.min(n, 2L * a.length));
+            // 缓冲区中已经有最坏情况的字节数时成批解码，否则逐个读取，
+            // 不为凑够字节而多读，套接字和管道上读到帧尾就能返回
+            if (lim - pos >= len * VarintCodec.MAX_INT_BYTES) {
+                pos = VarintCodec.getInts(buf, pos, a, off, len);
+            }
+            else {
+                for (int i = off; i < off + len; i++) a[i] = (int) nextVarint(VarintCodec.MAX_INT_BYTES);
+            }
+            prev = VarintCodec.decodeBlock(a, off, len, encoding, prev);
+        }
+        return a;
+    }
+
+    // 跳过空白，读取帧的标记字节
+    private int nextTag() {
+        if (!skipWhitespace())
+            throw new NoSuchElementException("标准输入流为空！");
+        return buf[pos++] & 0xFF;
+    }
+
+    // 数组的长度，只是帧头中的声明，还没有和实际的数据核对
+    private int nextCount() {
+        long n = nextVarint(VarintCodec.MAX_INT_BYTES);
+        if (n < 0 || n > Integer.MAX_VALUE - 8)
+            throw new InputMismatchException("压缩数组的长度不对：" + n);
+        return (int) n;
+    }
+
+    // 逐字节读取一个无符号varint，最多maxBytes个字节
+    private long nextVarint(int maxBytes) {
+        long x = 0;
+        for (int shift = 0; shift < 7 * maxBytes; shift += 7) {
+            if (pos == lim && fill(pos) < 0)
+                throw new NoSuchElementException("压缩数组不完整！");
+            int c = buf[pos++];
+            x |= (long) (c & 0x7F) << shift;
+            if (c >= 0) return x;
+        }
+        throw new InputMismatchException("varint太长！");
+    }
+
+    /**
+     * 读取时遇到的最后一个IOException
+     */
+    IOException ioException() {
+        return lastException;
+    }
+
+    void close() {
+        try {
+            is.close();
+        }
+        catch (IOException ioe) {
+            lastException = ioe;
+        }
+    }
+}
@@ -0,0 +1,591 @@
+package com.fengjie.io;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.text.DecimalFormatSymbols;
+import java.util.Arrays;
+import java.util.Formattable;
+import java.util.IllegalFormatConversionException;
+import java.util.Locale;
+import java.util.MissingFormatArgumentException;
+
+/**
+ *  预先编译的格式串，可以反复用来格式化输出
+ *
+ *  格式串的语法和java.util.Formatter相同，只在编译时解析一次。
+ *  %d %s %f %c %b %n %% 以及宽度、'-'和'0'标志直接写入Out的缓冲区，不创建对象；
+ *  其他格式符逐个交给Formatter处理，使用参数索引（如%1$s）的格式串整个交给Formatter。
+ *  %f按Formatter的规则对最短表示四舍五入，绝对值不小于2^53的数交给Formatter。
+ *
+ *  用bind()得到一个Cursor，用put()依次填入参数，基本类型不会装箱，end()时一次性输出：
+ *  <pre>
+ *  CompiledFormat.Cursor row = CompiledFormat.compile("%-10s %8d %10.3f%n").bind(out);
+ *  row.put(name).put(count).put(ratio).end();
+ *  </pre>
+ *  Out.printf()也会把用过的格式串编译后缓存起来。
+ *
+ *  @author fengjie2018@qq.com
+ *  @version 1.0 2018年2月16日
+ */
+public final class CompiledFormat {
+
+    // 默认语系：简体中文-中国，和Out相同
+    private static final Locale LOCALE = Locale.SIMPLIFIED_CHINESE;
+
+    // 片段的种类
+    private static final byte LITERAL = 0;
+    private static final byte INTEGER = 1;
+    private static final byte FIXED   = 2;
+    private static final byte STRING  = 3;
+    private static final byte CHAR    = 4;
+    private static final byte BOOLEAN = 5;
+    private static final byte LINE    = 6;
+    private static final byte OTHER   = 7;
+    // 不需要参数的其他格式符，如%-5%
+    private static final byte OTHER_NO_ARG = 8;
+
+    // Formatter认识的转换符
+    private static final String CONVERSIONS = "bBhHsScCdoxXeEfgGaAtTn%";
+
+    // %f默认的小数位数
+    private static final int DEFAULT_PRECISION = 6;
+
+    // 直接格式化时支持的最大小数位数
+    private static final int MAX_PRECISION = 17;
+
+    // %f直接格式化的绝对值上限：2^53
+    private static final double FIXED_LIMIT = 9007199254740992.0;
+
+    private final String format;
+    private final Locale locale;
+
+    // false表示整个格式串交给Formatter
+    private final boolean simple;
+
+    // 各片段：种类、字面文本或格式符、宽度（-1表示没有）、小数位数、左对齐、补0
+    private final byte[]    kinds;
+    private final String[]  texts;
+    private final int[]     widths;
+    private final int[]     precisions;
+    private final boolean[] left;
+    private final boolean[] zero;
+
+    // 需要的参数个数
+    private final int argumentCount;
+
+    private CompiledFormat(Locale locale, String format) {
+        this.format = format;
+        this.locale = locale;
+        int n = format.length();
+        byte[]    kinds      = new byte[n + 1];
+        String[]  texts      = new String[n + 1];
+        int[]     widths     = new int[n + 1];
+        int[]     precisions = new int[n + 1];
+        boolean[] left       = new boolean[n + 1];
+        boolean[] zero       = new boolean[n + 1];
+        int parts = 0;
+        int args = 0;
+        boolean simple = true;
+        // 本地化的数字和ASCII不同时，数字交给Formatter
+        DecimalFormatSymbols dfs = locale == null ? null : DecimalFormatSymbols.getInstance(locale);
+        boolean plainDigits = dfs != null && dfs.getZeroDigit() == '0' && dfs.getDecimalSeparator() == '.'
+            && dfs.getMinusSign() == '-';
+
+        int i = 0;
+        while (i < n && simple) {
+            int percent = format.indexOf('%', i);
+            if (percent != i) {
+                int end = percent < 0 ? n : percent;
+                kinds[parts] = LITERAL;
+                texts[parts++] = format.substring(i, end);
+                i = end;
+                continue;
+            }
+            // 解析 %[argument_index$][flags][width][.precision]conversion
+            int j = i + 1;
+            int digitsStart = j;
+            while (j < n && Character.isDigit(format.charAt(j))) j++;
+            if (j < n && format.charAt(j) == '$') {
+                simple = false;
+                break;
+            }
+            j = digitsStart;
+            boolean minus = false, zeroPad = false, otherFlag = false;
+            for (; j < n; j++) {
+                char c = format.charAt(j);
+                if      (c == '-') minus = true;
+                else if (c == '0') zeroPad = true;
+                else if (c == '<') simple = false;
+                else if ("#+ ,(".indexOf(c) >= 0) otherFlag = true;
+                else break;
+            }
+            int width = -1;
+            if (j < n && Character.isDigit(format.charAt(j))) {
+                width = 0;
+                while (j < n && Character.isDigit(format.charAt(j)))
+                    width = width * 10 + (format.charAt(j++) - '0');
+            }
+            int precision = -1;
+            if (j < n && format.charAt(j) == '.') {
+                j++;
+                if (j == n || !Character.isDigit(format.charAt(j))) {
+                    simple = false;
+                    break;
+                }
+                precision = 0;
+                while (j < n && Character.isDigit(format.charAt(j)))
+                    precision = precision * 10 + (format.charAt(j++) - '0');
+            }
+            if (j == n || CONVERSIONS.indexOf(format.charAt(j)) < 0) {
+                // 格式不对，让Formatter抛出相应的异常
+                simple = false;
+                break;
+            }
+            char conversion = format.charAt(j);
+            if (conversion == 't' || conversion == 'T') {
+                // 日期时间还要再带一个字符
+                if (++j == n) {
+                    simple = false;
+                    break;
+                }
+            }
+            j++;
+            String spec = format.substring(i, j);
+            // 只有Formatter会接受的组合才直接格式化
+            boolean flagsOk = !otherFlag && !(minus && zeroPad) && (width >= 0 || !minus && !zeroPad);
+            byte kind;
+            switch (conversion) {
+                case 'd':
+                    kind = plainDigits && flagsOk && precision < 0 ? INTEGER : OTHER;
+                    break;
+                case 'f':
+                    kind = plainDigits && flagsOk && precision <= MAX_PRECISION ? FIXED : OTHER;
+                    break;
+                case 's':
+                    kind = flagsOk && !zeroPad && precision < 0 ? STRING : OTHER;
+                    break;
+                case 'c':
+                    kind = flagsOk && !zeroPad && precision < 0 ? CHAR : OTHER;
+                    break;
+                case 'b':
+                    kind = flagsOk && !zeroPad && precision < 0 ? BOOLEAN : OTHER;
+                    break;
+                case 'n':
+                    kind = spec.length() == 2 ? LINE : OTHER_NO_ARG;
+                    break;
+                case '%':
+                    kind = spec.length() == 2 ? LITERAL : OTHER_NO_ARG;
+                    break;
+                default:
+                    kind = OTHER;
+                    break;
+            }
+            if (kind == LITERAL) {
+                texts[parts] = "%";
+            }
+            else {
+                texts[parts] = spec;
+                if (kind != LINE && kind != OTHER_NO_ARG) args++;
+            }
+            kinds[parts]      = kind;
+            widths[parts]     = width;
+            precisions[parts] = precision < 0 ? DEFAULT_PRECISION : precision;
+            left[parts]       = minus;
+            zero[parts]       = zeroPad;
+            parts++;
+            i = j;
+        }
+        this.simple        = simple;
+        this.kinds         = Arrays.copyOf(kinds, parts);
+        this.texts         = Arrays.copyOf(texts, parts);
+        this.widths        = Arrays.copyOf(widths, parts);
+        this.precisions    = Arrays.copyOf(precisions, parts);
+        this.left          = Arrays.copyOf(left, parts);
+        this.zero          = Arrays.copyOf(zero, parts);
+        this.argumentCount = args;
+    }
+
+    /**
+     * 用默认语系（简体中文-中国）编译格式串
+     * @param format 格式串
+     * @return CompiledFormat
+     * @throws IllegalArgumentException 如果format为null
+     */
+    public static CompiledFormat compile(String format) {
+        return compile(LOCALE, format);
+    }
+
+    /**
+     * 用指定的语系编译格式串
+     * @param locale 语系，null表示不做本地化
+     * @param format 格式串
+     * @return CompiledFormat
+     * @throws IllegalArgumentException 如果format为null
+     */
+    public static CompiledFormat compile(Locale locale, String format) {
+        if (format == null) throw new IllegalArgumentException("format为null");
+        return new CompiledFormat(locale, format);
+    }
+
+    /**
+     * 返回一个向out输出的Cursor，可以反复使用，但不能在多个线程间共享
+     * @param out 输出流
+     * @return Cursor
+     */
+    public Cursor bind(Out out) {
+        if (out == null) throw new IllegalArgumentException("out为null");
+        return new Cursor(this, out);
+    }
+
+    /**
+     * 格式串
+     * @return String
+     */
+    public String format() {
+        return format;
+    }
+
+    /**
+     * 语系
+     * @return Locale
+     */
+    public Locale locale() {
+        return locale;
+    }
+
+    /**
+     * 格式串需要的参数个数，使用参数索引的格式串返回-1
+     * @return int
+     */
+    public int argumentCount() {
+        return simple ? argumentCount : -1;
+    }
+
+    /**
+     * 向Out输出参数的游标，用put()依次填入参数，end()输出一整条并清空参数
+     * 参数存放在预先分配的数组中，基本类型不会装箱
+     */
+    public static final class Cursor {
+
+        private static final byte ARG_INT     = 0;
+        private static final byte ARG_LONG    = 1;
+        private static final byte ARG_DOUBLE  = 2;
+        private static final byte ARG_FLOAT   = 3;
+        private static final byte ARG_CHAR    = 4;
+        private static final byte ARG_BOOLEAN = 5;
+        private static final byte ARG_OBJECT  = 6;
+
+        private final CompiledFormat format;
+        private final Out out;
+
+        private byte[]   kinds;
+        private long[]   longs;
+        private double[] doubles;
+        private Object[] objects;
+        private int size;
+
+        private Cursor(CompiledFormat format, Out out) {
+            this.format = format;
+            this.out    = out;
+            int n = Math.max(format.argumentCount, 1);
+            this.kinds   = new byte[n];
+            this.longs   = new long[n];
+            this.doubles = new double[n];
+            this.objects = new Object[n];
+        }
+
+        private int next(byte kind) {
+            if (size == kinds.length) {
+                if (format.simple) throw new IllegalArgumentException("参数太多：" + format.format);
+                // 使用参数索引的格式串不知道要几个参数，按需扩容
+                int n = 2 * size;
+                kinds   = Arrays.copyOf(kinds, n);
+                longs   = Arrays.copyOf(longs, n);
+                doubles = Arrays.copyOf(doubles, n);
+                objects = Arrays.copyOf(objects, n);
+            }
+            kinds[size] = kind;
+            return size++;
+        }
+
+        /**
+         * 填入一个int
+         * @param x int
+         * @return this
+         */
+        public Cursor put(int x) {
+            longs[next(ARG_INT)] = x;
+            return this;
+        }
+
+        /**
+         * 填入一个long
+         * @param x long
+         * @return this
+         */
+        public Cursor put(long x) {
+            longs[next(ARG_LONG)] = x;
+            return this;
+        }
+
+        /**
+         * 填入一个double
+         * @param x double
+         * @return this
+         */
+        public Cursor put(double x) {
+            doubles[next(ARG_DOUBLE)] = x;
+            return this;
+        }
+
+        /**
+         * 填入一个float
+         * @param x float
+         * @return this
+         */
+        public Cursor put(float x) {
+            doubles[next(ARG_FLOAT)] = x;
+            return this;
+        }
+
+        /**
+         * 填入一个char
+         * @param x char
+         * @return this
+         */
+        public Cursor put(char x) {
+            longs[next(ARG_CHAR)] = x;
+            return this;
+        }
+
+        /**
+         * 填入一个boolean
+         * @param x boolean
+         * @return this
+         */
+        public Cursor put(boolean x) {
+            longs[next(ARG_BOOLEAN)] = x ? 1 : 0;
+            return this;
+        }
+
+        /**
+         * 填入一个对象
+         * @param x Object
+         * @return this
+         */
+        public Cursor put(Object x) {
+            objects[next(ARG_OBJECT)] = x;
+            return this;
+        }
+
+        /**
+         * 输出一整条并清空参数
+         * @throws MissingFormatArgumentException 如果参数不够
+         * @throws IllegalFormatConversionException 如果参数类型和格式符不符
+         */
+        public void end() {
+            try {
+                out.print(format, this);
+            }
+            finally {
+                for (int i = 0; i < size; i++) objects[i] = null;
+                size = 0;
+            }
+        }
+
+        // 装箱，只在交给Formatter时使用
+        private Object box(int i) {
+            switch (kinds[i]) {
+                case ARG_INT:     return (int) longs[i];
+                case ARG_LONG:    return longs[i];
+                case ARG_DOUBLE:  return doubles[i];
+                case ARG_FLOAT:   return (float) doubles[i];
+                case ARG_CHAR:    return (char) longs[i];
+                case ARG_BOOLEAN: return longs[i] != 0;
+                default:          return objects[i];
+            }
+        }
+
+        private Object[] boxAll() {
+            Object[] args = new Object[size];
+            for (int i = 0; i < size; i++) args[i] = box(i);
+            return args;
+        }
+    }
+
+    /**
+     * 在out的锁内调用，把参数按格式写入out的缓冲区
+     * 参数来自cursor；cursor为null时来自args
+     */
+    void render(Out out, Cursor cursor, Object[] args) {
+        if (!simple) {
+            out.writeString(String.format(locale, format, cursor != null ? cursor.boxAll() : args));
+            return;
+        }
+        int available = cursor != null ? cursor.size : args == null ? 0 : args.length;
+        int a = 0;
+        for (int i = 0; i < kinds.length; i++) {
+            byte kind = kinds[i];
+            if (kind == LITERAL) {
+                out.writeString(texts[i]);
+                continue;
+            }
+            if (kind == LINE) {
+                out.writeLine();
+                continue;
+            }
+            if (kind == OTHER_NO_ARG) {
+                out.writeString(String.format(locale, texts[i]));
+                continue;
+            }
+            if (a == available) throw new MissingFormatArgumentException(texts[i]);
+            int arg = a++;
+            // 基本类型参数
+            if (cursor != null && cursor.kinds[arg] != Cursor.ARG_OBJECT) {
+                if (renderPrimitive(out, i, cursor, arg)) continue;
+                renderObject(out, i, cursor.box(arg));
+                continue;
+            }
+            renderObject(out, i, cursor != null ? cursor.objects[arg] : args[arg]);
+        }
+    }
+
+    // 直接格式化基本类型参数，类型和格式符不匹配时返回false
+    private boolean renderPrimitive(Out out, int i, Cursor cursor, int arg) {
+        byte type = cursor.kinds[arg];
+        byte[] b = out.scratch();
+        int len;
+        switch (kinds[i]) {
+            case INTEGER:
+                if (type != Cursor.ARG_INT && type != Cursor.ARG_LONG) return false;
+                len = NumberFormatter.writeLong(b, 0, cursor.longs[arg]);
+                padNumber(out, i, b, len);
+                return true;
+            case FIXED:
+                if (type != Cursor.ARG_DOUBLE && type != Cursor.ARG_FLOAT) return false;
+                return renderFixed(out, i, cursor.doubles[arg]);
+            case STRING:
+                switch (type) {
+                    case Cursor.ARG_INT:
+                    case Cursor.ARG_LONG:   len = NumberFormatter.writeLong(b, 0, cursor.longs[arg]); break;
+                    case Cursor.ARG_DOUBLE: len = NumberFormatter.writeDouble(b, 0, cursor.doubles[arg]); break;
+                    case Cursor.ARG_FLOAT:  len = NumberFormatter.writeFloat(b, 0, (float) cursor.doubles[arg]); break;
+                    default: return false;
+                }
+                padNumber(out, i, b, len);
+                return true;
+            case CHAR:
+                if (type != Cursor.ARG_CHAR) return false;
+                padLeft(out, i, 1);
+                out.writeChar((char) cursor.longs[arg]);
+                padRight(out, i, 1);
+                return true;
+            case BOOLEAN:
+                if (type != Cursor.ARG_BOOLEAN) return false;
+                String s = cursor.longs[arg] != 0 ? "true" : "false";
+                padLeft(out, i, s.length());
+                out.writeString(s);
+                padRight(out, i, s.length());
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    // 格式化对象参数，和Formatter的规则相同
+    private void renderObject(Out out, int i, Object o) {
+        byte[] b = out.scratch();
+        switch (kinds[i]) {
+            case INTEGER:
+                if (o instanceof Integer || o instanceof Long || o instanceof Short || o instanceof Byte) {
+                    padNumber(out, i, b, NumberFormatter.writeLong(b, 0, ((Number) o).longValue()));
+                    return;
+                }
+                if (o == null) {
+                    padString(out, i, "null");
+                    return;
+                }
+                if (!(o instanceof BigInteger)) throw new IllegalFormatConversionException('d', o.getClass());
+                break;
+            case FIXED:
+                if (o instanceof Double || o instanceof Float) {
+                    if (renderFixed(out, i, ((Number) o).doubleValue())) return;
+                    break;
+                }
+                if (o == null) {
+                    // 和Formatter一样，精度截断"null"，如%.2f输出nu
+                    padString(out, i, "null".substring(0, Math.min(4, precisions[i])));
+                    return;
+                }
+                if (!(o instanceof BigDecimal)) throw new IllegalFormatConversionException('f', o.getClass());
+                break;
+            case STRING:
+                if (o instanceof Formattable) break;
+                padString(out, i, String.valueOf(o));
+                return;
+            case CHAR:
+                if (o instanceof Character) {
+                    padLeft(out, i, 1);
+                    out.writeChar((Character) o);
+                    padRight(out, i, 1);
+                    return;
+                }
+                if (o == null) {
+                    padString(out, i, "null");
+                    return;
+                }
+                break;
+            case BOOLEAN:
+                padString(out, i, o == null ? "false" : o instanceof Boolean ? o.toString() : "true");
+                return;
+            default:
+                break;
+        }
+        // 其他格式符交给Formatter
+        out.writeString(String.format(locale, texts[i], o));
+    }
+
+    // %f：NaN和无穷大的补齐规则特殊，交给Formatter；
+    // 超过2^53的数Formatter用的FloatingDecimal常常多给出一位，也交给Formatter
+    private boolean renderFixed(Out out, int i, double v) {
+        if (!(Math.abs(v) < FIXED_LIMIT)) {
+            out.writeString(String.format(locale, texts[i], v));
+            return true;
+        }
+        byte[] b = out.scratch();
+        padNumber(out, i, b, NumberFormatter.writeFixed(b, 0, v, precisions[i]));
+        return true;
+    }
+
+    // 数字：'0'标志在负号之后补0，否则补空格
+    private void padNumber(Out out, int i, byte[] b, int len) {
+        int pad = widths[i] - len;
+        if (pad > 0 && zero[i]) {
+            int off = 0;
+            if (b[0] == '-') {
+                out.writeBytes(b, 0, 1);
+                off = 1;
+            }
+            out.writeRepeated('0', pad);
+            out.writeBytes(b, off, len - off);
+            return;
+        }
+        padLeft(out, i, len);
+        out.writeBytes(b, 0, len);
+        padRight(out, i, len);
+    }
+
+    private void padString(Out out, int i, String s) {
+        padLeft(out, i, s.length());
+        out.writeString(s);
+        padRight(out, i, s.length());
+    }
+
+    private void padLeft(Out out, int i, int len) {
+        if (!left[i]) out.writeRepeated(' ', widths[i] - len);
+    }
+
+    private void padRight(Out out, int i, int len) {
+        if (left[i]) out.writeRepeated(' ', widths[i] - len);
+    }
+}
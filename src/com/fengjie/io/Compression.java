@@ -0,0 +1,159 @@
+package com.fengjie.io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ *  识别压缩的输入并透明地解压，供In使用，只用JDK自带的java.util.zip
+ *
+ *  按开头的魔数识别GZIP（1F 8B）、ZIP（PK 03 04）和zlib（78 01/9C/DA）；
+ *  没有魔数的原始deflate流和78 5E开头的zlib流只能按扩展名（.deflate、.zz、.zlib）识别。
+ *  ZIP文件中的各个文件按顺序连在一起读取，跳过目录。
+ *
+ *  解压在后台线程中进行，通过两块缓冲区交给读取者（见ReadAheadInputStream），
+ *  所以解压和标记的分割、数字的解析同时进行。
+ *
+ *  @author fengjie2018@qq.com
+ *  @version 1.0 2018年2月16日
+ */
+final class Compression {
+
+    private enum Kind {
+        NONE, GZIP, ZIP, ZLIB, DEFLATE
+    }
+
+    // 判断格式需要的字节数
+    private static final int MAGIC = 4;
+
+    // 解压流的输入缓冲区和交给读取者的每块的大小
+    private static final int INPUT_BUFFER = 1 << 16;
+    private static final int CHUNK_SIZE   = ByteScanner.BUFFER_SIZE;
+
+    // 不能创建实例
+    private Compression() {}
+
+    /**
+     * 如果文件是压缩的，返回解压后的流，否则返回null
+     */
+    static InputStream open(File file) throws IOException {
+        byte[] head = new byte[MAGIC];
+        int n;
+        try (InputStream is = new FileInputStream(file)) {
+            n = readFully(is, head);
+        }
+        Kind kind = detect(head, n, file.getName());
+        if (kind == Kind.NONE) return null;
+        return decompress(new FileInputStream(file), kind);
+    }
+
+    /**
+     * 如果流是压缩的，返回解压后的流，否则返回一个内容和原来相同的流
+     * @param name 来源的名字，用来按扩展名识别，可以为null
+     */
+    static InputStream wrap(InputStream is, String name) throws IOException {
+        PushbackInputStream in = new PushbackInputStream(is, MAGIC);
+        byte[] head = new byte[MAGIC];
+        int n = readFully(in, head);
+        if (n > 0) in.unread(head, 0, n);
+        Kind kind = detect(head, n, name);
+        return kind == Kind.NONE ? in : decompress(in, kind);
+    }
+
+    private static Kind detect(byte[] b, int n, String name) {
+        int b0 = n > 0 ? b[0] & 0xFF : -1;
+        int b1 = n > 1 ? b[1] & 0xFF : -1;
+        if (b0 == 0x1F && b1 == 0x8B) return Kind.GZIP;
+        if (n == MAGIC && b0 == 'P' && b1 == 'K' && b[2] == 3 && b[3] == 4) return Kind.ZIP;
+        if (b0 == 0x78 && (b1 == 0x01 || b1 == 0x9C || b1 == 0xDA)) return Kind.ZLIB;
+        String ext = name == null ? "" : name.toLowerCase(Locale.ROOT);
+        if (ext.endsWith(".zz") || ext.endsWith(".zlib"))
+            return b0 == 0x78 && (b0 << 8 | b1) % 31 == 0 ? Kind.ZLIB : Kind.NONE;
+        if (ext.endsWith(".deflate")) return Kind.DEFLATE;
+        return Kind.NONE;
+    }
+
+    private static InputStream decompress(InputStream is, Kind kind) throws IOException {
+        InputStream inflated;
+        switch (kind) {
+            case GZIP: inflated = new GZIPInputStream(is, INPUT_BUFFER); break;
+            case ZIP:  inflated = new ZipEntries(new ZipInputStream(is)); break;
+            case ZLIB: inflated = new InflaterInputStream(is, new Inflater(), INPUT_BUFFER); break;
+            default:   inflated = new InflaterInputStream(is, new Inflater(true), INPUT_BUFFER); break;
+        }
+        return new ReadAheadInputStream(inflated, CHUNK_SIZE, 2, "In-inflater");
+    }
+
+    // 读满b或者读到流尾，返回读到的字节数
+    private static int readFully(InputStream is, byte[] b) throws IOException {
+        int n = 0;
+        while (n < b.length) {
+            int r = is.read(b, n, b.length - n);
+            if (r < 0) break;
+            n += r;
+        }
+        return n;
+    }
+
+    /**
+     * 把ZIP中的各个文件连在一起读取
+     */
+    private static final class ZipEntries extends InputStream {
+
+        private final ZipInputStream zip;
+        private boolean started;
+        private boolean done;
+
+        ZipEntries(ZipInputStream zip) {
+            this.zip = zip;
+        }
+
+        // 当前文件读完时移到下一个文件，没有了返回false
+        private boolean nextEntry() throws IOException {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null)
+                if (!entry.isDirectory()) return true;
+            done = true;
+            return false;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            if (!started) {
+                started = true;
+                if (!nextEntry()) return -1;
+            }
+            while (!done) {
+                int n = zip.read(b, off, len);
+                if (n > 0) return n;
+                if (n < 0 && !nextEntry()) return -1;
+            }
+            return -1;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return done ? 0 : 1;
+        }
+
+        @Override
+        public void close() throws IOException {
+            zip.close();
+        }
+    }
+}
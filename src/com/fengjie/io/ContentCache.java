@@ -0,0 +1,323 @@
+package com.fengjie.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ *  In(String)打开的文件、类路径资源和URL的内容缓存，见In.setContentCache()
+ *
+ *  按名字缓存解析的结果和全部内容，再次打开同一个名字时直接从内存读取，
+ *  不再检查文件是否存在、查找资源或连接URL。内容放在直接缓冲区（堆外）中，不可修改；
+ *  直接内存不够时退回到堆上。
+ *
+ *  缓存的总字节数不超过上限，超出时淘汰最久没有使用的内容，超过上限（或2GB）的内容不缓存，照常读取。
+ *  本地文件每次打开时比较修改时间和长度，变了就重新读取；资源和URL缓存后不再检查。
+ *  找不到的名字也会记住，下次直接失败，只再检查一次本地文件是否已经出现。
+ *
+ *  这个类是线程安全的，可以被所有线程共用
+ *
+ *  @author fengjie2018@qq.com
+ *  @version 1.0 2018年2月16日
+ */
+public final class ContentCache {
+
+    /**
+     * 一个名字的解析结果，content为null表示找不到
+     */
+    private static final class Entry {
+        final File file;
+        final long modified;
+        final long length;
+        final ByteBuffer content;
+
+        Entry(File file, long modified, long length, ByteBuffer content) {
+            this.file     = file;
+            this.modified = modified;
+            this.length   = length;
+            this.content  = content;
+        }
+
+        int size() {
+            return content == null ? 0 : content.capacity();
+        }
+    }
+
+    // 最多记住的名字数，限制找不到的名字占用的内存
+    private static final int MAX_ENTRIES = 1 << 16;
+
+    // 找不到的名字
+    private static final Entry MISSING = new Entry(null, 0, 0, null);
+
+    // 一个内容最多的字节数，受数组和ByteBuffer的大小限制
+    private static final int MAX_CONTENT = Integer.MAX_VALUE - 8;
+
+    private final long maxBytes;
+
+    // 按最近使用排序
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final ReentrantLock lock = new ReentrantLock();
+    private long bytes;
+
+    // 命中和未命中在锁外统计
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private long evictions;
+
+    /**
+     * @param maxBytes 最多缓存的字节数
+     * @throws IllegalArgumentException 如果maxBytes不是正数
+     */
+    public ContentCache(long maxBytes) {
+        if (maxBytes <= 0) throw new IllegalArgumentException("缓存大小必须是正数：" + maxBytes);
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * 打开名字对应的内容，解析顺序和In(String)相同：本地文件、类路径资源、URL
+     * @return 输入流；本地文件超过上限时不缓存，返回null
+     * @throws FileNotFoundException 如果找不到
+     * @throws IOException 如果读取失败
+     */
+    InputStream open(String name) throws IOException {
+        Entry e = lookup(name);
+        if (e == null) {
+            File file = new File(name);
+            if (file.exists()) {
+                e = load(file);
+                if (e == null) return null;
+            }
+            else {
+                URL url = In.class.getResource(name);
+                if (url == null) url = In.class.getClassLoader().getResource(name);
+                try {
+                    if (url == null) url = new URL(name);
+                    InputStream is = url.openConnection().getInputStream();
+                    Object loaded = load(is);
+                    if (loaded instanceof InputStream) return (InputStream) loaded;
+                    e = (Entry) loaded;
+                }
+                catch (FileNotFoundException | MalformedURLException ex) {
+                    e = MISSING;
+                }
+            }
+            store(name, e);
+        }
+        if (e.content == null) throw new FileNotFoundException(name);
+        return new BufferStream(e.content.duplicate());
+    }
+
+    // 查找仍然有效的缓存，本地文件变了或者已经出现时返回null
+    private Entry lookup(String name) {
+        Entry e;
+        lock.lock();
+        try {
+            e = entries.get(name);
+        }
+        finally {
+            lock.unlock();
+        }
+        // 检查文件系统时不持有锁，命中不会排在别人的文件检查后面
+        if (e != null && valid(name, e)) {
+            hits.incrementAndGet();
+            return e;
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    private static boolean valid(String name, Entry e) {
+        if (e.content == null) return !new File(name).exists();
+        if (e.file == null) return true;
+        return e.file.lastModified() == e.modified && e.file.length() == e.length;
+    }
+
+    // 读入本地文件，超过上限时返回null
+    private Entry load(File file) throws IOException {
+        long modified = file.lastModified();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > maxBytes || size > MAX_CONTENT) return null;
+            ByteBuffer content = allocate((int) size);
+            while (content.hasRemaining() && channel.read(content) >= 0) {}
+            content.flip();
+            return new Entry(file, modified, content.limit(), content.asReadOnlyBuffer());
+        }
+    }
+
+    // 读入资源或URL的全部内容；超过上限时不缓存，返回接着读取的输入流
+    private Object load(InputStream is) throws IOException {
+        byte[] b = new byte[1 << 13];
+        int n = 0;
+        try {
+            for (int r; (r = is.read(b, n, b.length - n)) >= 0; ) {
+                n += r;
+                if (n > maxBytes || n == MAX_CONTENT) {
+                    InputStream rest = new SequenceInputStream(new ByteArrayInputStream(b, 0, n), is);
+                    is = null;
+                    return rest;
+                }
+                if (n == b.length) b = Arrays.copyOf(b, (int) Math.min(2L * n, MAX_CONTENT));
+            }
+        }
+        finally {
+            if (is != null) is.close();
+        }
+        ByteBuffer content = allocate(n);
+        content.put(b, 0, n).flip();
+        return new Entry(null, 0, n, content.asReadOnlyBuffer());
+    }
+
+    // 优先用直接缓冲区
+    private static ByteBuffer allocate(int size) {
+        try {
+            return ByteBuffer.allocateDirect(size);
+        }
+        catch (OutOfMemoryError e) {
+            return ByteBuffer.allocate(size);
+        }
+    }
+
+    private void store(String name, Entry e) {
+        lock.lock();
+        try {
+            Entry old = entries.put(name, e);
+            if (old != null) bytes -= old.size();
+            bytes += e.size();
+            Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+            while ((bytes > maxBytes || entries.size() > MAX_ENTRIES) && it.hasNext()) {
+                Entry eldest = it.next().getValue();
+                it.remove();
+                bytes -= eldest.size();
+                evictions++;
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 缓存的内容的总字节数
+     * @return long
+     */
+    public long bytes() {
+        lock.lock();
+        try {
+            return bytes;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 缓存的名字数，包括找不到的名字
+     * @return int
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 命中次数
+     * @return long
+     */
+    public long hits() {
+        return hits.get();
+    }
+
+    /**
+     * 未命中次数
+     * @return long
+     */
+    public long misses() {
+        return misses.get();
+    }
+
+    /**
+     * 因超出上限被淘汰的名字数（包括找不到的名字）
+     * @return long
+     */
+    public long evictions() {
+        lock.lock();
+        try {
+            return evictions;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 清空缓存
+     */
+    public void clear() {
+        lock.lock();
+        try {
+            entries.clear();
+            bytes = 0;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 从ByteBuffer读取的输入流
+     */
+    private static final class BufferStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        BufferStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) return 0;
+            if (!buffer.hasRemaining()) return -1;
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public long skip(long n) {
+            int k = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + k);
+            return k;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.fengjie.io;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ *  固定大小的直接ByteBuffer池，供Out的CHANNEL引擎使用
+ *
+ *  直接缓冲区分配和回收都很慢，FileChannel写堆内缓冲区时还要先复制到临时的直接缓冲区，
+ *  所以把用完的缓冲区留下来给下一次使用。池中最多保留MAX_POOLED个，多余的交给垃圾回收。
+ *
+ *  @author fengjie2018@qq.com
+ *  @version 1.0 2018年2月16日
+ */
+final class DirectBufferPool {
+
+    // 每个缓冲区的大小：64KB
+    static final int BUFFER_SIZE = 1 << 16;
+
+    // 池中最多保留的缓冲区个数
+    private static final int MAX_POOLED = 64;
+
+    private static final ConcurrentLinkedQueue<ByteBuffer> POOL = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger SIZE = new AtomicInteger();
+
+    // 不能创建实例
+    private DirectBufferPool() {}
+
+    /**
+     * 取出一个清空的缓冲区，池为空时新分配一个
+     */
+    static ByteBuffer acquire() {
+        ByteBuffer buffer = POOL.poll();
+        if (buffer == null) return ByteBuffer.allocateDirect(BUFFER_SIZE);
+        SIZE.decrementAndGet();
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * 归还一个缓冲区，之后调用者不能再使用它
+     */
+    static void release(ByteBuffer buffer) {
+        if (SIZE.incrementAndGet() > MAX_POOLED) {
+            SIZE.decrementAndGet();
+            return;
+        }
+        POOL.offer(buffer);
+    }
+}
@@ -0,0 +1,103 @@
+package com.fengjie.io;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ *  按行或按标记遍历文件一个区间的Spliterator，供In的lines()和tokens()使用
+ *
+ *  trySplit()从区间中点切开，切分规则和ParallelParser相同：
+ *  每一行（或每个标记）属于它第一个字节所在的区间，区间起点落在行中间时跳过这半行，
+ *  区间的最后一行可以越过区间终点。所以并行流能把文件真正分给多个线程。
+ *
+ *  @author fengjie2018@qq.com
+ *  @version 1.0 2018年2月16日
+ */
+final class FileSpliterator implements Spliterator<String> {
+
+    // 小于两倍这个大小的区间不再切分
+    private static final long MIN_SPLIT = 1L << 16;
+
+    private final FileChannel channel;
+    private final boolean lines;
+
+    // 负责[from, to)中开始的行或标记
+    private long from;
+    private final long to;
+
+    // from是否可能落在行或标记中间
+    private boolean skipPartial;
+
+    // 第一次tryAdvance()时才打开
+    private ByteScanner bs;
+    private long limit;
+
+    /**
+     * @param channel 文件通道
+     * @param from 区间起点
+     * @param to 区间终点
+     * @param skipPartial 起点前面如果是半行或半个标记，是否跳过
+     * @param lines true按行遍历，false按标记遍历
+     */
+    FileSpliterator(FileChannel channel, long from, long to, boolean skipPartial, boolean lines) {
+        this.channel     = channel;
+        this.from        = from;
+        this.to          = to;
+        this.skipPartial = skipPartial;
+        this.lines       = lines;
+    }
+
+    // 从起点前一个字节开始映射，这样才能知道起点是否落在行或标记中间
+    private void open() {
+        long begin = skipPartial ? from - 1 : from;
+        try {
+            // 窗口不超过64MB，超过2GB的分段也能映射
+            long window = Math.min(MappedInputStream.WINDOW_SIZE, to - begin + ByteScanner.BUFFER_SIZE);
+            bs = new ByteScanner(new MappedInputStream(channel, begin, window));
+        }
+        catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+        if (skipPartial) {
+            if (lines) bs.skipPartialLine();
+            else       bs.skipPartialToken();
+        }
+        limit = to - begin;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super String> action) {
+        if (bs == null) open();
+        if (lines ? !bs.hasNextLine(limit) : !bs.hasNext(limit)) {
+            if (bs.ioException() != null) throw new UncheckedIOException(bs.ioException());
+            return false;
+        }
+        action.accept(lines ? bs.nextLine() : bs.next());
+        return true;
+    }
+
+    @Override
+    public Spliterator<String> trySplit() {
+        if (bs != null || to - from < 2 * MIN_SPLIT) return null;
+        long mid = from + (to - from) / 2;
+        // 有序的Spliterator必须把前一半交出去
+        FileSpliterator prefix = new FileSpliterator(channel, from, mid, skipPartial, lines);
+        from = mid;
+        skipPartial = true;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        // 不知道确切的个数，用剩余的字节数作估计
+        return to - from;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL;
+    }
+}
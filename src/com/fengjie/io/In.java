@@ -1,25 +1,45 @@
 package com.fengjie.io;
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.UncheckedIOException;
 import java.net.URL;
 import java.net.Socket;
 import java.net.URLConnection;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.InputMismatchException;
+import java.util.Iterator;
 import java.util.Locale;
 import java.util.NoSuchElementException;
 import java.util.Scanner;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.DoubleConsumer;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
 import java.util.regex.Pattern;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import com.fengjie.stdio.Stdout;
 
 /**
  *  这个类提供了从标准输入，文件，网页和套接字读取数字，字符串的方法
  *  读取标记会丢弃空白，读取一行会丢弃换行符
+ *  文件、资源和URL如果是GZIP、ZIP或deflate压缩的，会在后台线程中透明地解压
  *  
  *  语系：简体中文-中国
  *  @author fengjie2018@qqcom
@@ -36,21 +56,66 @@ public final class In {
     // 空白符
     private static final Pattern WHITESPACE_PATTERN = Pattern.compile("\\p{javaWhitespace}+");
 
-    // 空字符
-    private static final Pattern EMPTY_PATTERN = Pattern.compile("");
+    // 任意一个字符，增补字符算作一个
+    private static final Pattern ANY_CHAR_PATTERN = Pattern.compile(".", Pattern.DOTALL);
+
+    // 向前看一个字符而不消耗它
+    private static final Pattern PEEK_PATTERN = Pattern.compile("(?=(.))", Pattern.DOTALL);
 
     // 匹配所有字符
     private static final Pattern EVERYTHING_PATTERN = Pattern.compile("\\A");
 
+    // 预读时每块的最大字节数
+    private static final int PREFETCH_CHUNK = ByteScanner.BUFFER_SIZE;
+
+    // In(String)共用的内容缓存，为null时不缓存
+    private static volatile ContentCache contentCache;
+
+    /**
+     * 读取引擎
+     */
+    public enum Engine {
+        /** 用java.util.Scanner读取，支持本地化的数字格式和Unicode空白 */
+        SCANNER,
+        /** 直接扫描字节缓冲区，只以ASCII空白分割标记，速度快得多 */
+        BYTES,
+        /** 和BYTES相同，但本地文件通过FileChannel.map读取；其他来源按BYTES处理 */
+        MAPPED
+    }
+
     //Scanner
     private Scanner scanner;
 
+    // 字节引擎，使用Engine.BYTES时不为null，此时scanner为null
+    private ByteScanner bytes;
+
+    // 字节引擎直接读取的本地文件，可以并行解析；其他来源为null
+    private File file;
+
+    // Scanner读取到增补字符时，暂存的低位代理
+    private char pendingLow;
+
+    // 读取的统计
+    private final StreamMetrics metrics = new StreamMetrics("In");
+
+    // readString()和readAllStrings()使用的标记池，为null时每个标记都创建新的String
+    private TokenPool pool;
+
    /**
      * 从System.in初始化一个输入流
      */
     public In(){
-        scanner = new Scanner(new BufferedInputStream(System.in), CHARSET);
-        scanner.useLocale(LOCALE);
+        this(Engine.SCANNER);
+    }
+
+   /**
+     * 用指定的引擎从System.in初始化一个输入流
+     * @param  engine 读取引擎
+     * @throws IllegalArgumentException 如果engine为null则抛出异常
+     */
+    public In(Engine engine) {
+        if (engine == null) throw new IllegalArgumentException("engine为null");
+        init(System.in, engine);
     }
 
    /**
@@ -59,11 +124,43 @@ public final class In {
      * @throws IllegalArgumentException 如果不能读取套接字，或套接字为null则抛出异常
      */
     public In(Socket socket) {
+        this(socket, Engine.SCANNER);
+    }
+
+   /**
+     * 用指定的引擎从socket初始化一个输入流
+     * @param  socket 套接字
+     * @param  engine 读取引擎
+     * @throws IllegalArgumentException 如果不能读取套接字，或参数为null则抛出异常
+     */
+    public In(Socket socket, Engine engine) {
+        if (socket == null) throw new IllegalArgumentException("套接字为 null");
+        if (engine == null) throw new IllegalArgumentException("engine为null");
+        try {
+            InputStream is = socket.getInputStream();
+            init(is, engine);
+        }
+        catch (IOException ioe) {
+            throw new IllegalArgumentException("无法打开" + socket, ioe);
+        }
+    }
+
+   /**
+     * 用指定的引擎从socket初始化一个输入流，并在后台线程中预读
+     * 后台线程不断读取套接字，最多预读readAhead个字节，解析和网络等待因此可以同时进行。
+     * readAhead取带宽和往返时间的乘积比较合适，例如100MB/s、20ms时约为2MB
+     * @param  socket 套接字
+     * @param  engine 读取引擎
+     * @param  readAhead 最多预读的字节数，为0时不预读
+     * @throws IllegalArgumentException 如果不能读取套接字，参数为null，或readAhead为负数则抛出异常
+     */
+    public In(Socket socket, Engine engine, int readAhead) {
         if (socket == null) throw new IllegalArgumentException("套接字为 null");
+        if (engine == null) throw new IllegalArgumentException("engine为null");
+        checkReadAhead(readAhead);
         try {
             InputStream is = socket.getInputStream();
-            scanner = new Scanner(new BufferedInputStream(is), CHARSET);
-            scanner.useLocale(LOCALE);
+            init(prefetch(is, readAhead), engine);
         }
         catch (IOException ioe) {
             throw new IllegalArgumentException("无法打开" + socket, ioe);
@@ -76,12 +173,43 @@ public final class In {
      * @throws IllegalArgumentException 如果无法打开URL或URL为null，则抛出异常
      */
     public In(URL url) {
+        this(url, Engine.SCANNER);
+    }
+
+   /**
+     * 用一个URL和指定的引擎初始化输入流
+     * @param  url URL
+     * @param  engine 读取引擎
+     * @throws IllegalArgumentException 如果无法打开URL或参数为null，则抛出异常
+     */
+    public In(URL url, Engine engine) {
         if (url == null) throw new IllegalArgumentException("url为null");
+        if (engine == null) throw new IllegalArgumentException("engine为null");
         try {
             URLConnection site = url.openConnection();
             InputStream is     = site.getInputStream();
-            scanner            = new Scanner(new BufferedInputStream(is), CHARSET);
-            scanner.useLocale(LOCALE);
+            init(Compression.wrap(is, url.getPath()), engine);
+        }
+        catch (IOException ioe) {
+            throw new IllegalArgumentException("无法打开" + url, ioe);
+        }
+    }
+
+   /**
+     * 用一个URL和指定的引擎初始化输入流，并在后台线程中预读，见In(Socket, Engine, int)
+     * @param  url URL
+     * @param  engine 读取引擎
+     * @param  readAhead 最多预读的字节数，为0时不预读
+     * @throws IllegalArgumentException 如果无法打开URL，参数为null，或readAhead为负数则抛出异常
+     */
+    public In(URL url, Engine engine, int readAhead) {
+        if (url == null) throw new IllegalArgumentException("url为null");
+        if (engine == null) throw new IllegalArgumentException("engine为null");
+        checkReadAhead(readAhead);
+        try {
+            URLConnection site = url.openConnection();
+            InputStream is     = prefetch(site.getInputStream(), readAhead);
+            init(Compression.wrap(is, url.getPath()), engine);
         }
         catch (IOException ioe) {
             throw new IllegalArgumentException("无法打开" + url, ioe);
@@ -94,11 +222,20 @@ public final class In {
      * @throws IllegalArgumentException 如果未能打开文件或文件为null
      */
     public In(File file) {
+        this(file, Engine.SCANNER);
+    }
+
+   /**
+     * 用一个文件和指定的引擎初始化输入流
+     * @param  file 传入文件
+     * @param  engine 读取引擎
+     * @throws IllegalArgumentException 如果未能打开文件或参数为null
+     */
+    public In(File file, Engine engine) {
         if (file == null) throw new IllegalArgumentException("文件为null");
+        if (engine == null) throw new IllegalArgumentException("engine为null");
         try {
-            FileInputStream fis = new FileInputStream(file);
-            scanner = new Scanner(new BufferedInputStream(fis), CHARSET);
-            scanner.useLocale(LOCALE);
+            initFile(file, engine);
         }
         catch (IOException ioe) {
             throw new IllegalArgumentException("无法打开" + file, ioe);
@@ -111,14 +248,32 @@ public final class In {
      * @throws IllegalArgumentException 如果无法打开或为null则抛出异常
      */
     public In(String name) {
+        this(name, Engine.SCANNER);
+    }
+
+   /**
+     * 用一个字符串和指定的引擎初始化输入流
+     * @param name String
+     * @param engine 读取引擎
+     * @throws IllegalArgumentException 如果无法打开或参数为null则抛出异常
+     */
+    public In(String name, Engine engine) {
         if (name == null) throw new IllegalArgumentException("参数为 null");
+        if (engine == null) throw new IllegalArgumentException("engine为null");
         try {
+            ContentCache cache = contentCache;
+            if (cache != null) {
+                InputStream is = cache.open(name);
+                if (is != null) {
+                    init(Compression.wrap(is, name), engine);
+                    return;
+                }
+            }
+
             // 首先尝试从本地文件系统读取
             File file = new File(name);
             if (file.exists()) {
-                FileInputStream fis = new FileInputStream(file);
-                scanner = new Scanner(new BufferedInputStream(fis), CHARSET);
-                scanner.useLocale(LOCALE);
+                initFile(file, engine);
                 return;
             }
 
@@ -138,14 +293,31 @@ public final class In {
             }
             URLConnection site = url.openConnection();
             InputStream is     = site.getInputStream();
-            scanner            = new Scanner(new BufferedInputStream(is), CHARSET);
-            scanner.useLocale(LOCALE);
+            init(Compression.wrap(is, url.getPath()), engine);
         }
         catch (IOException ioe) {
             throw new IllegalArgumentException("未能打开" + name, ioe);
         }
     }
 
+    /**
+     * 用指定大小的缓冲区，以字节引擎读取输入流，供同时打开大量连接的SocketServer使用
+     */
+    In(InputStream is, int bufferSize) {
+        bytes = new ByteScanner(is, bufferSize);
+        bytes.metrics = metrics;
+    }
+
+    /**
+     * 让之后的In(String)都使用这个缓存：同一个名字第二次打开时直接从内存读取，
+     * 不再检查文件、查找资源或连接URL，见ContentCache。
+     * 从缓存读取的本地文件不能映射，也不能并行解析
+     * @param cache 所有线程共用的缓存，为null时不再缓存
+     */
+    public static void setContentCache(ContentCache cache) {
+        contentCache = cache;
+    }
+
     /**
      * 用给定的Scanner初始化输入流
      * @param  scanner scanner
@@ -156,12 +328,54 @@ public final class In {
         this.scanner = scanner;
     }
 
+    // 用指定的引擎打开本地文件
+    private void initFile(File file, Engine engine) throws IOException {
+        // 压缩文件只能顺序解压，不能映射，也不能并行解析
+        InputStream inflated = Compression.open(file);
+        if (inflated != null) {
+            init(inflated, engine);
+            return;
+        }
+        if (engine != Engine.SCANNER) this.file = file;
+        if (engine == Engine.MAPPED) {
+            FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            bytes = new ByteScanner(new MappedInputStream(channel));
+            bytes.metrics = metrics;
+            return;
+        }
+        init(new FileInputStream(file), engine);
+    }
+
+    private static void checkReadAhead(int readAhead) {
+        if (readAhead < 0) throw new IllegalArgumentException("预读的字节数不能为负数：" + readAhead);
+    }
+
+    // 把预读的字节数分成至少两块，每块不超过字节引擎的缓冲区大小
+    private static InputStream prefetch(InputStream is, int readAhead) {
+        if (readAhead == 0) return is;
+        int chunks = Math.max(2, (readAhead + PREFETCH_CHUNK - 1) / PREFETCH_CHUNK);
+        int chunkSize = Math.max(1, (readAhead + chunks - 1) / chunks);
+        return new ReadAheadInputStream(is, chunkSize, chunks, "In-prefetch");
+    }
+
+    // 用指定的引擎包装输入流
+    private void init(InputStream is, Engine engine) {
+        if (engine != Engine.SCANNER) {
+            // ByteScanner自带缓冲区，不需要BufferedInputStream
+            bytes = new ByteScanner(is);
+            bytes.metrics = metrics;
+            return;
+        }
+        scanner = new Scanner(new BufferedInputStream(metrics.counting(is)), CHARSET);
+        scanner.useLocale(LOCALE);
+    }
+
     /**
      * 判断输入流是否存在
      * @return 输入流不为null则返回true
      */
     public boolean exists()  {
-        return scanner != null;
+        return scanner != null || bytes != null;
     }
 
     /**
@@ -169,6 +383,7 @@ public final class In {
      * @return boolean
      */
     public boolean isEmpty() {
+        if (bytes != null) return !bytes.hasNext();
         return !scanner.hasNext();
     }
 
@@ -177,6 +392,7 @@ public final class In {
      * @return boolean
      */
     public boolean hasNextLine() {
+        if (bytes != null) return bytes.hasNextLine();
         return scanner.hasNextLine();
     }
 
@@ -185,10 +401,8 @@ public final class In {
      * @return boolean
      */
     public boolean hasNextChar() {
-        scanner.useDelimiter(EMPTY_PATTERN);
-        boolean result = scanner.hasNext();
-        scanner.useDelimiter(WHITESPACE_PATTERN);
-        return result;
+        if (bytes != null) return bytes.hasNextChar();
+        return pendingLow != 0 || scanner.findWithinHorizon(PEEK_PATTERN, 1) != null;
     }
 
    /**
@@ -197,25 +411,85 @@ public final class In {
      * @throws NoSuchElementException 如果输入流没有下一行，则抛出此异常
      */
     public String readLine() {
-    	if(!scanner.hasNextLine())
-    		throw new NoSuchElementException("没有下一行！");
         String line;
-        line = scanner.nextLine();
+        if (bytes != null) line = bytes.nextLine();
+        else {
+            if(!scanner.hasNextLine())
+                throw new NoSuchElementException("没有下一行！");
+            line = scanner.nextLine();
+        }
+        metrics.lines++;
         return line;
     }
 
     /**
-     * 读取下一个字符
+     * 读取下一个字符，增补字符分两次返回高位代理和低位代理
+     * 读到高位代理后应当接着读取低位代理，或者用readCodePoint()读取完整的码点
      * @return char
      * @throws NoSuchElementException 如果输入流为空，则抛出此异常
      */
     public char readChar() {
-    	if(!hasNextChar())throw new NoSuchElementException("标准输入流为空！");
-        scanner.useDelimiter(EMPTY_PATTERN);
-        String ch = scanner.next();
-        scanner.useDelimiter(WHITESPACE_PATTERN);
+        if (bytes != null) return bytes.nextChar();
+        if (pendingLow != 0) {
+            char low = pendingLow;
+            pendingLow = 0;
+            return low;
+        }
+        // 不切换分隔符，直接匹配一个字符；视界为2才能匹配完整的代理对
+        String ch = scanner.findWithinHorizon(ANY_CHAR_PATTERN, 2);
+        if (ch == null) throw new NoSuchElementException("标准输入流为空！");
+        if (ch.length() == 2) pendingLow = ch.charAt(1);
         return ch.charAt(0);
-    }  
+    }
+
+    /**
+     * 返回下一个字符但不消耗它
+     * @return char
+     * @throws NoSuchElementException 如果输入流为空，则抛出此异常
+     */
+    public char peekChar() {
+        if (bytes != null) return bytes.peekChar();
+        if (pendingLow != 0) return pendingLow;
+        if (scanner.findWithinHorizon(PEEK_PATTERN, 1) == null)
+            throw new NoSuchElementException("标准输入流为空！");
+        return scanner.match().group(1).charAt(0);
+    }
+
+    /**
+     * 读取下一个完整的码点
+     * @return int
+     * @throws NoSuchElementException 如果输入流为空，则抛出此异常
+     */
+    public int readCodePoint() {
+        if (bytes != null) return bytes.nextCodePoint();
+        if (pendingLow != 0) {
+            char low = pendingLow;
+            pendingLow = 0;
+            return low;
+        }
+        String ch = scanner.findWithinHorizon(ANY_CHAR_PATTERN, 2);
+        if (ch == null) throw new NoSuchElementException("标准输入流为空！");
+        return ch.codePointAt(0);
+    }
+
+    /**
+     * 把最多len个字符读入数组
+     * @param cbuf 目标数组
+     * @param off 开始存放的位置
+     * @param len 最多读取的字符数
+     * @return 读取的字符数，输入流已经结束时返回-1
+     * @throws IndexOutOfBoundsException 如果off和len超出数组范围
+     */
+    public int read(char[] cbuf, int off, int len) {
+        if (off < 0 || len < 0 || len > cbuf.length - off)
+            throw new IndexOutOfBoundsException("off=" + off + ", len=" + len);
+        if (bytes != null) return bytes.read(cbuf, off, len);
+        if (len == 0) return 0;
+        int n = 0;
+        while (n < len && hasNextChar())
+            cbuf[off + n++] = readChar();
+        return n == 0 ? -1 : n;
+    }
 
    /**
      * 读取剩余的所有输入
@@ -223,6 +497,7 @@ public final class In {
      * @throws NoSuchElementException 如果输入流为空，则抛出此异常
      */
     public String readAll() {
+        if (bytes != null) return bytes.readAll();
     	if(isEmpty())
     		throw new NoSuchElementException("标准输入流为空！");
         scanner.useDelimiter(EVERYTHING_PATTERN);
@@ -237,9 +512,59 @@ public final class In {
      * @throws NoSuchElementException 如果输入流为空，则抛出此异常
      */
     public String readString() {
-    	if(!scanner.hasNext())
-    		throw new NoSuchElementException("标准输入流为空！");
-        return scanner.next();
+        String token;
+        if (bytes != null) token = bytes.next(pool);
+        else {
+            if(!scanner.hasNext())
+                throw new NoSuchElementException("标准输入流为空！");
+            token = pool != null ? pool.intern(scanner.next()) : scanner.next();
+        }
+        metrics.tokens++;
+        return token;
+    }
+
+    /**
+     * 让readString()和readAllStrings()对重复的标记返回池中的同一个String
+     * 适合词汇量小、重复多的输入（如边列表、符号表），可以大大减少内存和GC。
+     * 字节引擎直接按字节查找，命中时不创建任何对象
+     * @param pool 标记池，可以由多个In共用（同一个线程中）；为null时关闭
+     */
+    public void setTokenPool(TokenPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * 读取下一个标记，返回它在符号表中的编号，第一次见到的标记加入符号表
+     * @param symbols 符号表
+     * @return int
+     * @throws NoSuchElementException 如果输入流为空
+     */
+    public int readSymbol(SymbolTable symbols) {
+        int id;
+        if (bytes != null) id = bytes.nextTokenId(symbols.dictionary());
+        else {
+            if (!scanner.hasNext())
+                throw new NoSuchElementException("标准输入流为空！");
+            id = symbols.id(scanner.next());
+        }
+        metrics.tokens++;
+        return id;
+    }
+
+    /**
+     * 读取所有标记在符号表中的编号
+     * @param symbols 符号表
+     * @return int[]
+     */
+    public int[] readAllSymbols(SymbolTable symbols) {
+        if (bytes != null) return countTokens(bytes.readAllTokenIds(symbols.dictionary()));
+        int[] ids = new int[16];
+        int n = 0;
+        while (scanner.hasNext()) {
+            if (n == ids.length) ids = Arrays.copyOf(ids, 2 * n);
+            ids[n++] = symbols.id(scanner.next());
+        }
+        return countTokens(Arrays.copyOf(ids, n));
     }
 
    /**
@@ -248,9 +573,15 @@ public final class In {
      * @throws NoSuchElementException 如果输入流为空或读取的内容无法解析为int，则抛出此异常
      */
     public int readInt() {
-    	 if(!scanner.hasNextInt())
-    	     throw new NoSuchElementException("标准输入为空或读取的内容无法解析为int！");
-    	 return scanner.nextInt();
+        int v;
+        if (bytes != null) v = bytes.nextInt();
+        else {
+            if(!scanner.hasNextInt())
+                throw mismatch("int");
+            v = scanner.nextInt();
+        }
+        metrics.tokens++;
+        return v;
     }
 
    /**
@@ -259,9 +590,15 @@ public final class In {
      * @throws NoSuchElementException 如果输入流为空或读取的内容无法解析为double，则抛出此异常
      */
     public double readDouble() {
-    	if(!scanner.hasNextDouble())
-    		throw new NoSuchElementException("标准输入为空或读取的内容无法解析为double！");
-        return scanner.nextDouble();
+        double v;
+        if (bytes != null) v = bytes.nextDouble();
+        else {
+            if(!scanner.hasNextDouble())
+                throw mismatch("double");
+            v = scanner.nextDouble();
+        }
+        metrics.tokens++;
+        return v;
     }
 
    /**
@@ -270,9 +607,15 @@ public final class In {
      * @throws NoSuchElementException 如果输入流为空或读取的内容无法解析为float，则抛出此异常
      */
     public float readFloat() {
-    	if(!scanner.hasNextFloat())
-    		throw new NoSuchElementException("标准输入为空或读取的内容无法解析为float！");
-        return scanner.nextFloat();
+        float v;
+        if (bytes != null) v = bytes.nextFloat();
+        else {
+            if(!scanner.hasNextFloat())
+                throw mismatch("float");
+            v = scanner.nextFloat();
+        }
+        metrics.tokens++;
+        return v;
     }
 
    /**
@@ -281,9 +624,15 @@ public final class In {
      * @throws NoSuchElementException 如果输入流为空或读取的内容无法解析为long，则抛出此异常
      */
     public long readLong() {
-    	if(!scanner.hasNextLong())
-    		throw new NoSuchElementException("标准输入为空或读取的内容无法解析为long！");
-        return scanner.nextLong();
+        long v;
+        if (bytes != null) v = bytes.nextLong();
+        else {
+            if(!scanner.hasNextLong())
+                throw mismatch("long");
+            v = scanner.nextLong();
+        }
+        metrics.tokens++;
+        return v;
     }
 
    /**
@@ -292,9 +641,15 @@ public final class In {
      * @throws NoSuchElementException 如果输入流为空或读取的内容无法解析为short，则抛出此异常
      */
     public short readShort() {
-    	if(!scanner.hasNextShort())
-    		throw new NoSuchElementException("标准输入为空或读取的内容无法解析为short！");
-        return scanner.nextShort();
+        short v;
+        if (bytes != null) v = bytes.nextShort();
+        else {
+            if(!scanner.hasNextShort())
+                throw mismatch("short");
+            v = scanner.nextShort();
+        }
+        metrics.tokens++;
+        return v;
     }
 
    /**
@@ -303,9 +658,15 @@ public final class In {
      * @throws NoSuchElementException 如果输入流为空或读取的内容无法解析为byte，则抛出此异常
      */
     public byte readByte() {
-    	if(!scanner.hasNextByte())
-    		throw new NoSuchElementException("标准输入为空或读取的内容无法解析为byte！");
-	    return scanner.nextByte();
+        byte v;
+        if (bytes != null) v = bytes.nextByte();
+        else {
+            if(!scanner.hasNextByte())
+                throw mismatch("byte");
+            v = scanner.nextByte();
+        }
+        metrics.tokens++;
+        return v;
     }
 
     /**
@@ -321,6 +682,7 @@ public final class In {
         if ("false".equalsIgnoreCase(token)) return false;
         if ("1".equals(token))               return true;
         if ("0".equals(token))               return false;
+        metrics.failures++;
         throw new InputMismatchException("无法解析为boolean！");
     }
 
@@ -329,16 +691,83 @@ public final class In {
      * @return String[]
      */
     public String[] readAllStrings() {
-    	//如果原字符串全是空白符，结果字符串数组长度就是0，如果原字符串第0位不是空白符，
-    	//split()会在结果数组第0位生成空的“前导子串”
-        String[] tokens = WHITESPACE_PATTERN.split(readAll());
-        if (tokens.length == 0 || tokens[0].length() > 0)
-            return tokens;
-        // 应当忽略这个“前导子串”
-        String[] decapitokens = new String[tokens.length-1];
-        for (int i = 0; i < tokens.length - 1; i++)
-            decapitokens[i] = tokens[i+1];
-        return decapitokens;
+        if(isEmpty())
+            throw new NoSuchElementException("标准输入流为空！");
+        if (bytes != null) return countTokens(bytes.readAllStrings(pool));
+        // 逐个读取标记，不把全部输入读成一个字符串再分割
+        ArrayList<String> tokens = new ArrayList<>();
+        while (scanner.hasNext())
+            tokens.add(pool != null ? pool.intern(scanner.next()) : scanner.next());
+        return countTokens(tokens.toArray(new String[tokens.size()]));
+    }
+
+    /**
+     * 返回剩余所有行的惰性Stream，每行都不包括换行符
+     * 用字节引擎读取本地文件时，流可以在换行处切分，用parallel()就能真正并行处理；
+     * 这时剩余的输入全部交给流读取，用完后应关闭流
+     * @return Stream
+     */
+    public Stream<String> lines() {
+        Stream<String> stream = fileStream(true);
+        if (stream != null) return stream;
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(new Iterator<String>() {
+            @Override
+            public boolean hasNext() {
+                return hasNextLine();
+            }
+
+            @Override
+            public String next() {
+                return readLine();
+            }
+        }, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * 返回剩余所有标记的惰性Stream
+     * 用字节引擎读取本地文件时，流可以在空白处切分，用parallel()就能真正并行处理；
+     * 这时剩余的输入全部交给流读取，用完后应关闭流
+     * @return Stream
+     */
+    public Stream<String> tokens() {
+        Stream<String> stream = fileStream(false);
+        if (stream != null) return stream;
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(new Iterator<String>() {
+            @Override
+            public boolean hasNext() {
+                return !isEmpty();
+            }
+
+            @Override
+            public String next() {
+                return readString();
+            }
+        }, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    // 用可切分的FileSpliterator遍历文件剩余的部分，不是本地文件或无法打开时返回null
+    private Stream<String> fileStream(boolean lines) {
+        if (file == null) return null;
+        FileChannel channel;
+        long size;
+        try {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            size = channel.size();
+        }
+        catch (IOException ioe) {
+            return null;
+        }
+        long start = bytes.position();
+        bytes.skipToEnd();
+        return StreamSupport.stream(new FileSpliterator(channel, start, size, false, lines), false)
+            .onClose(() -> {
+                try {
+                    channel.close();
+                }
+                catch (IOException ioe) {
+                    throw new UncheckedIOException(ioe);
+                }
+            });
     }
 
     /**
@@ -359,11 +788,27 @@ public final class In {
      * @throws InputMismatchException 如果有任何一个标记不能解释为int，就抛出此异常
      */
     public int[] readAllInts() {
-        String[] fields = readAllStrings();
-        int[] vals = new int[fields.length];
-        for (int i = 0; i < fields.length; i++)
-            vals[i] = Integer.parseInt(fields[i]);
-        return vals;
+        if(isEmpty())
+            throw new NoSuchElementException("标准输入流为空！");
+        if (bytes != null) {
+            // 大文件在公共ForkJoinPool上并行解析
+            if (file != null) {
+                int[] vals = ParallelParser.readAllInts(file, bytes.position());
+                if (vals != null) {
+                    skipParsed();
+                    return countTokens(vals);
+                }
+            }
+            return countTokens(bytes.readAllInts());
+        }
+        // 逐个解析，占用的内存只和结果数组成正比
+        int[] vals = new int[16];
+        int n = 0;
+        while (scanner.hasNext()) {
+            if (n == vals.length) vals = Arrays.copyOf(vals, n << 1);
+            vals[n++] = Integer.parseInt(scanner.next());
+        }
+        return countTokens(Arrays.copyOf(vals, n));
     }
 
     /**
@@ -372,11 +817,27 @@ public final class In {
      * @throws InputMismatchException 如果有任何一个标记不能解释为long，就抛出此异常
      */
     public long[] readAllLongs() {
-        String[] fields = readAllStrings();
-        long[] vals = new long[fields.length];
-        for (int i = 0; i < fields.length; i++)
-            vals[i] = Long.parseLong(fields[i]);
-        return vals;
+        if(isEmpty())
+            throw new NoSuchElementException("标准输入流为空！");
+        if (bytes != null) {
+            // 大文件在公共ForkJoinPool上并行解析
+            if (file != null) {
+                long[] vals = ParallelParser.readAllLongs(file, bytes.position());
+                if (vals != null) {
+                    skipParsed();
+                    return countTokens(vals);
+                }
+            }
+            return countTokens(bytes.readAllLongs());
+        }
+        // 逐个解析，占用的内存只和结果数组成正比
+        long[] vals = new long[16];
+        int n = 0;
+        while (scanner.hasNext()) {
+            if (n == vals.length) vals = Arrays.copyOf(vals, n << 1);
+            vals[n++] = Long.parseLong(scanner.next());
+        }
+        return countTokens(Arrays.copyOf(vals, n));
     }
 
     /**
@@ -385,18 +846,193 @@ public final class In {
      * @throws InputMismatchException 如果有任何一个标记不能解释为double，就抛出此异常
      */
     public double[] readAllDoubles() {
-        String[] fields = readAllStrings();
-        double[] vals = new double[fields.length];
-        for (int i = 0; i < fields.length; i++)
-            vals[i] = Double.parseDouble(fields[i]);
-        return vals;
+        if(isEmpty())
+            throw new NoSuchElementException("标准输入流为空！");
+        if (bytes != null) {
+            // 大文件在公共ForkJoinPool上并行解析
+            if (file != null) {
+                double[] vals = ParallelParser.readAllDoubles(file, bytes.position());
+                if (vals != null) {
+                    skipParsed();
+                    return countTokens(vals);
+                }
+            }
+            return countTokens(bytes.readAllDoubles());
+        }
+        // 逐个解析，占用的内存只和结果数组成正比
+        double[] vals = new double[16];
+        int n = 0;
+        while (scanner.hasNext()) {
+            if (n == vals.length) vals = Arrays.copyOf(vals, n << 1);
+            vals[n++] = Double.parseDouble(scanner.next());
+        }
+        return countTokens(Arrays.copyOf(vals, n));
+    }
+
+    /**
+     * 把剩余的标记逐个解析为int，返回一个惰性的IntStream
+     * 和readAllInts()不同，它不会一次读取所有输入流
+     * @return IntStream
+     * @throws NumberFormatException 遍历时遇到不能解释为int的标记
+     */
+    public IntStream ints() {
+        return StreamSupport.intStream(new Spliterators.AbstractIntSpliterator(Long.MAX_VALUE, Spliterator.ORDERED) {
+            @Override
+            public boolean tryAdvance(IntConsumer action) {
+                if (isEmpty()) return false;
+                int v = bytes != null ? bytes.nextIntToken() : Integer.parseInt(scanner.next());
+                metrics.tokens++;
+                action.accept(v);
+                return true;
+            }
+        }, false);
+    }
+
+    /**
+     * 把剩余的标记逐个解析为long，返回一个惰性的LongStream
+     * 和readAllLongs()不同，它不会一次读取所有输入流
+     * @return LongStream
+     * @throws NumberFormatException 遍历时遇到不能解释为long的标记
+     */
+    public LongStream longs() {
+        return StreamSupport.longStream(new Spliterators.AbstractLongSpliterator(Long.MAX_VALUE, Spliterator.ORDERED) {
+            @Override
+            public boolean tryAdvance(LongConsumer action) {
+                if (isEmpty()) return false;
+                long v = bytes != null ? bytes.nextLongToken() : Long.parseLong(scanner.next());
+                metrics.tokens++;
+                action.accept(v);
+                return true;
+            }
+        }, false);
+    }
+
+    /**
+     * 把剩余的标记逐个解析为double，返回一个惰性的DoubleStream
+     * 和readAllDoubles()不同，它不会一次读取所有输入流
+     * @return DoubleStream
+     * @throws NumberFormatException 遍历时遇到不能解释为double的标记
+     */
+    public DoubleStream doubles() {
+        return StreamSupport.doubleStream(new Spliterators.AbstractDoubleSpliterator(Long.MAX_VALUE, Spliterator.ORDERED) {
+            @Override
+            public boolean tryAdvance(DoubleConsumer action) {
+                if (isEmpty()) return false;
+                double v = bytes != null ? bytes.nextDoubleToken() : Double.parseDouble(scanner.next());
+                metrics.tokens++;
+                action.accept(v);
+                return true;
+            }
+        }, false);
+    }
+
+    /**
+     * 把剩余的所有标记按列读入一个Table，每types.length个标记是一行
+     * 各列直接解析到基本类型数组中，STRING列去重后存放字典编号。
+     * 字节引擎读取本地文件时，先读几十行，再按文件长度估计行数，一次分配好数组
+     * @param types 各列的类型
+     * @return Table，没有剩余标记时行数为0
+     * @throws IllegalArgumentException 如果types为空或含有null
+     * @throws InputMismatchException 如果标记不能解析为列的类型，或最后一行不完整
+     */
+    public Table readTable(Table.Type... types) {
+        Table.Type[] schema = Table.schema(types);
+        if (bytes != null) return Table.read(bytes, schema, file != null ? file.length() : -1);
+        return Table.read(scanner, schema);
+    }
+
+    /**
+     * 跳过空白，读取一个Out.writeEncoded()写出的压缩int数组
+     * @return int[]
+     * @throws UnsupportedOperationException 如果使用的是Engine.SCANNER
+     * @throws InputMismatchException 如果读取的内容不是压缩的int数组
+     * @throws NoSuchElementException 如果输入流在数组结束之前就结束了
+     */
+    public int[] readEncodedInts() {
+        return bytes("压缩数组").nextEncodedInts();
+    }
+
+    /**
+     * 跳过空白，读取一个Out.writeEncoded()写出的压缩long数组，压缩的int数组也可以读取
+     * @return long[]
+     * @throws UnsupportedOperationException 如果使用的是Engine.SCANNER
+     * @throws InputMismatchException 如果读取的内容不是压缩的整数数组
+     * @throws NoSuchElementException 如果输入流在数组结束之前就结束了
+     */
+    public long[] readEncodedLongs() {
+        return bytes("压缩数组").nextEncodedLongs();
+    }
+
+    /**
+     * 按格式逐条读取剩余的记录（CSV、TSV等），见RecordReader
+     * 字段直接留在读取缓冲区里，不为每个字段创建对象。
+     * 使用RecordReader期间不要再调用这个In的其他读取方法
+     * @param format 记录的格式，如RecordReader.Format.csv()
+     * @return RecordReader
+     * @throws UnsupportedOperationException 如果使用的是Engine.SCANNER
+     */
+    public RecordReader records(RecordReader.Format format) {
+        if (format == null) throw new IllegalArgumentException("format为null");
+        return new RecordReader(bytes("记录"), format);
+    }
+
+    /**
+     * 读取的统计：字节数、从来源读取的次数、标记数、行数和解析失败的次数
+     * 并行解析的readAllInts()等只计入字节数和标记数，不计入读取次数；
+     * lines()和tokens()交给可切分的流遍历本地文件时，流读取的部分不计入统计
+     * 可以用StreamMetrics.register()注册为JMX的MBean
+     * @return 这个In的StreamMetrics，随读取不断更新
+     */
+    public StreamMetrics metrics() {
+        return metrics;
+    }
+
+    // Scanner读取数字失败时的异常，不是因为没有标记时计入解析失败
+    private NoSuchElementException mismatch(String type) {
+        if (scanner.hasNext()) metrics.failures++;
+        return new NoSuchElementException("标准输入为空或读取的内容无法解析为" + type + "！");
+    }
+
+    // ParallelParser读完了文件剩余的部分，把这部分字节计入统计
+    private void skipParsed() {
+        metrics.bytes += Math.max(0, file.length() - bytes.filled());
+        bytes.skipToEnd();
+    }
+
+    private int[] countTokens(int[] a) {
+        metrics.tokens += a.length;
+        return a;
+    }
+
+    private long[] countTokens(long[] a) {
+        metrics.tokens += a.length;
+        return a;
+    }
+
+    private double[] countTokens(double[] a) {
+        metrics.tokens += a.length;
+        return a;
+    }
+
+    private String[] countTokens(String[] a) {
+        metrics.tokens += a.length;
+        return a;
+    }
+
+    // 压缩数组和记录直接读取字节，只能使用字节引擎
+    private ByteScanner bytes(String what) {
+        if (bytes == null)
+            throw new UnsupportedOperationException("Engine.SCANNER不能读取" + what + "，请使用BYTES或MAPPED");
+        return bytes;
     }
 
    /**
      * 关闭输入流
      */
     public void close() {
-        scanner.close();  
+        metrics.unregister();
+        if (bytes != null) bytes.close();
+        else scanner.close();
     }
 
     
@@ -497,5 +1133,36 @@ public final class In {
             Stdout.println(e);
         }
         Stdout.println();
+
+        // 压缩数组后面紧跟文本，结尾没有换行
+        Stdout.println("测试readEncodedInts()和文本混合");
+        Stdout.println("---------------------------------------------------------------------------");
+        int[] encoded = { 1, 2, 3, 4, 5 };
+        ByteArrayOutputStream mixed = new ByteArrayOutputStream();
+        Out out = new Out(mixed, Out.FlushPolicy.explicit());
+        out.writeEncoded(encoded, ArrayEncoding.ZIGZAG);
+        out.print(" 42 77");
+        out.flush();
+        in = new In(new ByteArrayInputStream(mixed.toByteArray()), 64);
+        boolean ok = Arrays.equals(in.readEncodedInts(), encoded) && in.readInt() == 42 && in.readInt() == 77 && in.isEmpty();
+        Stdout.println(ok ? "正确" : "错误");
+
+        // 管道没有关闭时，读完一帧就应该返回，不等待帧后面的数据
+        try (PipedInputStream pipe = new PipedInputStream();
+             PipedOutputStream writer = new PipedOutputStream(pipe)) {
+            out = new Out(writer, Out.FlushPolicy.explicit());
+            out.writeEncoded(encoded, ArrayEncoding.ZIGZAG);
+            out.flush();
+            in = new In(pipe, 64);
+            ok = Arrays.equals(in.readEncodedInts(), encoded);
+            out.print(" 42 77");
+            out.close();
+            ok = ok && in.readInt() == 42 && in.readInt() == 77 && in.isEmpty();
+            Stdout.println(ok ? "正确" : "错误");
+        }
+        catch (IOException e) {
+            Stdout.println(e);
+        }
+        Stdout.println();
     }
 }
\ No newline at end of file
@@ -0,0 +1,108 @@
+package com.fengjie.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ *  通过FileChannel.map读取文件的输入流，供In的MAPPED引擎使用
+ *
+ *  每次只映射一个窗口，读完再映射下一个，所以可以读取超过2GB的文件。
+ *  读取就是从页缓存到调用者数组的一次复制，不经过内核读缓冲区和BufferedInputStream。
+ *  旧窗口的映射在被垃圾回收时才会解除。
+ *
+ *  @author fengjie2018@qq.com
+ *  @version 1.0 2018年2月16日
+ */
+final class MappedInputStream extends InputStream {
+
+    // 每个窗口的大小：64MB
+    static final long WINDOW_SIZE = 1L << 26;
+
+    private final FileChannel channel;
+    private final long size;
+    private final long windowSize;
+
+    // 当前窗口及其在文件中的起始位置
+    private MappedByteBuffer window;
+    private long windowStart;
+
+    MappedInputStream(FileChannel channel) throws IOException {
+        this(channel, 0, WINDOW_SIZE);
+    }
+
+    /**
+     * @param channel 文件通道
+     * @param start 开始读取的位置
+     * @param windowSize 每次映射的字节数
+     */
+    MappedInputStream(FileChannel channel, long start, long windowSize) throws IOException {
+        this.channel     = channel;
+        this.size        = channel.size();
+        this.windowSize  = windowSize;
+        this.windowStart = start;
+    }
+
+    /**
+     * 下一个要读取的字节在文件中的位置
+     */
+    long position() {
+        return window == null ? windowStart : windowStart + window.position();
+    }
+
+    /**
+     * 文件的大小
+     */
+    long size() {
+        return size;
+    }
+
+    // 当前窗口读完时映射下一个窗口，文件尾返回false
+    private boolean advance() throws IOException {
+        if (window != null) {
+            if (window.hasRemaining()) return true;
+            windowStart += window.capacity();
+            window = null;
+        }
+        if (windowStart >= size) return false;
+        long length = Math.min(windowSize, size - windowStart);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, length);
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!advance()) return -1;
+        return window.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) return 0;
+        if (!advance()) return -1;
+        int n = Math.min(len, window.remaining());
+        window.get(b, off, n);
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long target = Math.min(size, position() + Math.max(0, n));
+        long skipped = target - position();
+        window = null;
+        windowStart = target;
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (int) Math.min(Integer.MAX_VALUE, size - position());
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+}
@@ -0,0 +1,410 @@
+package com.fengjie.io;
+
+import java.math.BigInteger;
+
+/**
+ *  把数字直接格式化为ASCII字节写入数组，不创建任何对象，供Out使用
+ *
+ *  整数用两位一组的查表法从低位向高位写。
+ *  浮点数用Schubfach算法求最短的、能精确还原的十进制表示，
+ *  排版规则和Double.toString、Float.toString的规范一致：
+ *  10^-3 <= |v| < 10^7 时用普通小数，否则用科学计数法，小数点后至少一位。
+ *  JDK 19起Double.toString也用这个算法，结果逐字节相同；
+ *  更早的JDK偶尔会多输出一位，那时这里的结果更短，但解析回来是同一个数。
+ *
+ *  所有方法都是静态的，调用者要保证数组从pos起有足够的空间：
+ *  整数20字节，浮点数32字节。
+ *
+ *  @author fengjie2018@qq.com
+ *  @version 1.0 2018年2月16日
+ */
+final class NumberFormatter {
+
+    // 浮点数最多需要的字节数
+    static final int MAX_FLOATING_LENGTH = 32;
+
+    // 整数最多需要的字节数
+    static final int MAX_INTEGER_LENGTH = 20;
+
+    // "00" "01" ... "99"
+    private static final byte[] DIGIT_PAIRS = new byte[200];
+
+    // 10^0 ~ 10^18
+    private static final long[] POW10 = new long[19];
+
+    // double的参数，见Schubfach论文
+    private static final int  D_P      = 53;
+    private static final int  D_Q_MIN  = -1074;
+    private static final long D_C_MIN  = 1L << (D_P - 1);
+    private static final long D_C_TINY = 3;
+    private static final int  D_K_MIN  = -324;
+    private static final int  D_K_MAX  = 292;
+
+    // float的参数
+    private static final int F_P      = 24;
+    private static final int F_Q_MIN  = -149;
+    private static final int F_C_MIN  = 1 << (F_P - 1);
+    private static final int F_C_TINY = 8;
+
+    private static final long MASK_63 = (1L << 63) - 1;
+    private static final long MASK_32 = (1L << 32) - 1;
+
+    // 10^-k = β·2^r，2^125 <= β < 2^126，g = floor(β) + 1 = g1·2^63 + g0，每个k占两个long
+    private static final long[] G = new long[2 * (D_K_MAX - D_K_MIN + 1)];
+
+    static {
+        for (int i = 0; i < 100; i++) {
+            DIGIT_PAIRS[2 * i]     = (byte) ('0' + i / 10);
+            DIGIT_PAIRS[2 * i + 1] = (byte) ('0' + i % 10);
+        }
+        POW10[0] = 1;
+        for (int i = 1; i < POW10.length; i++)
+            POW10[i] = POW10[i - 1] * 10;
+
+        BigInteger mask63 = BigInteger.ONE.shiftLeft(63).subtract(BigInteger.ONE);
+        for (int k = D_K_MIN; k <= D_K_MAX; k++) {
+            BigInteger g;
+            if (k <= 0) {
+                BigInteger p = BigInteger.TEN.pow(-k);
+                int len = p.bitLength();
+                g = len <= 126 ? p.shiftLeft(126 - len) : p.shiftRight(len - 126);
+            }
+            else {
+                BigInteger p = BigInteger.TEN.pow(k);
+                g = BigInteger.ONE.shiftLeft(125 + p.bitLength()).divide(p);
+            }
+            g = g.add(BigInteger.ONE);
+            int index = 2 * (k - D_K_MIN);
+            G[index]     = g.shiftRight(63).longValue();
+            G[index + 1] = g.and(mask63).longValue();
+        }
+    }
+
+    // 不能创建实例
+    private NumberFormatter() {}
+
+    /**
+     * 写入一个int
+     * @return 写完后的位置
+     */
+    static int writeInt(byte[] b, int pos, int v) {
+        return writeLong(b, pos, v);
+    }
+
+    /**
+     * 写入一个long
+     * @return 写完后的位置
+     */
+    static int writeLong(byte[] b, int pos, long v) {
+        if (v < 0) {
+            b[pos++] = '-';
+            if (v == Long.MIN_VALUE) {
+                // 取反会溢出，先写出最高位
+                b[pos++] = '9';
+                return writePositive(b, pos, 223372036854775808L, 18);
+            }
+            v = -v;
+        }
+        return writePositive(b, pos, v, digits(v));
+    }
+
+    // 非负数的十进制位数
+    private static int digits(long v) {
+        int n = 1;
+        while (n < POW10.length && v >= POW10[n]) n++;
+        return n;
+    }
+
+    // 从低位向高位，每次写两位，不足len位时前面补0
+    private static int writePositive(byte[] b, int pos, long v, int len) {
+        int end = pos + len;
+        int i = end;
+        while (v >= 100) {
+            int r = (int) (v % 100);
+            v /= 100;
+            b[--i] = DIGIT_PAIRS[2 * r + 1];
+            b[--i] = DIGIT_PAIRS[2 * r];
+        }
+        int r = (int) v;
+        if (r >= 10) {
+            b[--i] = DIGIT_PAIRS[2 * r + 1];
+            b[--i] = DIGIT_PAIRS[2 * r];
+        }
+        else {
+            b[--i] = (byte) ('0' + r);
+        }
+        while (i > pos) b[--i] = '0';
+        return end;
+    }
+
+    /**
+     * 写入一个double，格式和Double.toString相同
+     * @return 写完后的位置
+     */
+    static int writeDouble(byte[] b, int pos, double v) {
+        return writeDouble(b, pos, v, -1);
+    }
+
+    /**
+     * 按%.nf的规则写入一个double：对最短表示按四舍五入保留precision位小数，
+     * 和Formatter的做法相同。NaN和无穷大按Double.toString写出。
+     * 整数部分最多有309位，调用者要保证数组有足够的空间
+     * @param precision 小数位数，0 ~ 17
+     * @return 写完后的位置
+     */
+    static int writeFixed(byte[] b, int pos, double v, int precision) {
+        return writeDouble(b, pos, v, precision);
+    }
+
+    // precision < 0 时按Double.toString排版，否则保留precision位小数
+    private static int writeDouble(byte[] b, int pos, double v, int precision) {
+        long bits = Double.doubleToRawLongBits(v);
+        long t = bits & (D_C_MIN - 1);
+        int bq = (int) (bits >>> (D_P - 1)) & 0x7FF;
+        if (bq == 0x7FF)
+            return writeAscii(b, pos, t != 0 ? "NaN" : bits > 0 ? "Infinity" : "-Infinity");
+        if (bits < 0) b[pos++] = '-';
+        if (bq != 0) {
+            // 规格化数
+            int mq = -D_Q_MIN + 1 - bq;
+            long c = D_C_MIN | t;
+            // 整数值直接输出
+            if (0 < mq && mq < D_P) {
+                long f = c >> mq;
+                if (f << mq == c) return emit(b, pos, f, 0, precision);
+            }
+            return toDecimal(b, pos, -mq, c, 0, precision);
+        }
+        if (t != 0) {
+            // 非规格化数
+            return t < D_C_TINY
+                ? toDecimal(b, pos, D_Q_MIN, 10 * t, -1, precision)
+                : toDecimal(b, pos, D_Q_MIN, t, 0, precision);
+        }
+        return precision < 0 ? writeAscii(b, pos, "0.0") : fixed(b, pos, 0, 0, precision);
+    }
+
+    /**
+     * 写入一个float，格式和Float.toString相同
+     * @return 写完后的位置
+     */
+    static int writeFloat(byte[] b, int pos, float v) {
+        int bits = Float.floatToRawIntBits(v);
+        int t = bits & (F_C_MIN - 1);
+        int bq = (bits >>> (F_P - 1)) & 0xFF;
+        if (bq == 0xFF)
+            return writeAscii(b, pos, t != 0 ? "NaN" : bits > 0 ? "Infinity" : "-Infinity");
+        if (bits < 0) b[pos++] = '-';
+        if (bq != 0) {
+            int mq = -F_Q_MIN + 1 - bq;
+            int c = F_C_MIN | t;
+            if (0 < mq && mq < F_P) {
+                int f = c >> mq;
+                if (f << mq == c) return layout(b, pos, f, 0);
+            }
+            return toDecimal(b, pos, -mq, c, 0);
+        }
+        if (t != 0) {
+            return t < F_C_TINY ? toDecimal(b, pos, F_Q_MIN, 10 * t, -1) : toDecimal(b, pos, F_Q_MIN, t, 0);
+        }
+        return writeAscii(b, pos, "0.0");
+    }
+
+    // double：v = c·2^q，求最短的 f·10^e 落在v的舍入区间内
+    private static int toDecimal(byte[] b, int pos, int q, long c, int dk, int precision) {
+        int out = (int) c & 1;
+        long cb  = c << 2;
+        long cbr = cb + 2;
+        long cbl;
+        int k;
+        if (c != D_C_MIN || q == D_Q_MIN) {
+            // 间距均匀
+            cbl = cb - 2;
+            k = flog10pow2(q);
+        }
+        else {
+            // 2的幂，下方的间距只有一半
+            cbl = cb - 1;
+            k = flog10threeQuartersPow2(q);
+        }
+        int h = q + flog2pow10(-k) + 2;
+        int index = 2 * (k - D_K_MIN);
+        long g1 = G[index];
+        long g0 = G[index + 1];
+
+        long vb  = rop(g1, g0, cb << h);
+        long vbl = rop(g1, g0, cbl << h);
+        long vbr = rop(g1, g0, cbr << h);
+
+        long s = vb >> 2;
+        if (s >= 100) {
+            // 先试少一位：s' = floor(s / 10)
+            long sp10 = 10 * Math.multiplyHigh(s, 115292150460684698L << 4);
+            long tp10 = sp10 + 10;
+            boolean upin = vbl + out <= sp10 << 2;
+            boolean wpin = (tp10 << 2) + out <= vbr;
+            if (upin != wpin) return emit(b, pos, upin ? sp10 : tp10, k, precision);
+        }
+        long t = s + 1;
+        boolean uin = vbl + out <= s << 2;
+        boolean win = (t << 2) + out <= vbr;
+        if (uin != win) return emit(b, pos, uin ? s : t, k + dk, precision);
+        // 两个都在区间内，取离v近的，一样近时取偶数
+        long cmp = vb - ((s + t) << 1);
+        return emit(b, pos, cmp < 0 || cmp == 0 && (s & 1) == 0 ? s : t, k + dk, precision);
+    }
+
+    // float：和double相同，只需要g的高64位
+    private static int toDecimal(byte[] b, int pos, int q, int c, int dk) {
+        int out = c & 1;
+        long cb  = (long) c << 2;
+        long cbr = cb + 2;
+        long cbl;
+        int k;
+        if (c != F_C_MIN || q == F_Q_MIN) {
+            cbl = cb - 2;
+            k = flog10pow2(q);
+        }
+        else {
+            cbl = cb - 1;
+            k = flog10threeQuartersPow2(q);
+        }
+        int h = q + flog2pow10(-k) + 33;
+        long g = G[2 * (k - D_K_MIN)] + 1;
+
+        int vb  = rop(g, cb << h);
+        int vbl = rop(g, cbl << h);
+        int vbr = rop(g, cbr << h);
+
+        int s = vb >> 2;
+        if (s >= 100) {
+            int sp10 = 10 * (int) (s * 1717986919L >>> 34);
+            int tp10 = sp10 + 10;
+            boolean upin = vbl + out <= sp10 << 2;
+            boolean wpin = (tp10 << 2) + out <= vbr;
+            if (upin != wpin) return layout(b, pos, upin ? sp10 : tp10, k);
+        }
+        int t = s + 1;
+        boolean uin = vbl + out <= s << 2;
+        boolean win = (t << 2) + out <= vbr;
+        if (uin != win) return layout(b, pos, uin ? s : t, k + dk);
+        int cmp = vb - ((s + t) << 1);
+        return layout(b, pos, cmp < 0 || cmp == 0 && (s & 1) == 0 ? s : t, k + dk);
+    }
+
+    // 向奇数舍入的 cp·g·2^-127
+    private static long rop(long g1, long g0, long cp) {
+        long x1 = Math.multiplyHigh(g0, cp);
+        long y0 = g1 * cp;
+        long y1 = Math.multiplyHigh(g1, cp);
+        long z = (y0 >>> 1) + x1;
+        long vbp = y1 + (z >>> 63);
+        return vbp | ((z & MASK_63) + MASK_63) >>> 63;
+    }
+
+    // 向奇数舍入的 cp·g·2^-95
+    private static int rop(long g, long cp) {
+        long x1 = Math.multiplyHigh(g, cp);
+        long vbp = x1 >>> 31;
+        return (int) (vbp | ((x1 & MASK_32) + MASK_32) >>> 32);
+    }
+
+    // floor(log10(2^e))
+    private static int flog10pow2(int e) {
+        return (int) (e * 661971961083L >> 41);
+    }
+
+    // floor(log10(3/4·2^e))
+    private static int flog10threeQuartersPow2(int e) {
+        return (int) (e * 661971961083L - 274743187321L >> 41);
+    }
+
+    // floor(log2(10^e))
+    private static int flog2pow10(int e) {
+        return (int) (e * 913124641741L >> 38);
+    }
+
+    private static int emit(byte[] b, int pos, long f, int e, int precision) {
+        return precision < 0 ? layout(b, pos, f, e) : fixed(b, pos, f, e, precision);
+    }
+
+    // 按%.nf的规则写出 f·10^e，多余的位四舍五入
+    private static int fixed(byte[] b, int pos, long f, int e, int precision) {
+        if (e < -precision) {
+            // 要舍去的位数
+            int d = -precision - e;
+            f = d >= POW10.length ? 0 : (f + 5 * POW10[d - 1]) / POW10[d];
+            e = -precision;
+        }
+        if (e >= 0) {
+            pos = writePositive(b, pos, f, digits(f));
+            for (int i = 0; i < e; i++) b[pos++] = '0';
+            if (precision > 0) {
+                b[pos++] = '.';
+                for (int i = 0; i < precision; i++) b[pos++] = '0';
+            }
+            return pos;
+        }
+        int frac = -e;
+        long p = POW10[frac];
+        long ip = f / p;
+        pos = writePositive(b, pos, ip, digits(ip));
+        b[pos++] = '.';
+        pos = writePositive(b, pos, f % p, frac);
+        for (int i = frac; i < precision; i++) b[pos++] = '0';
+        return pos;
+    }
+
+    // 按Double.toString的规则排版 f·10^e
+    private static int layout(byte[] b, int pos, long f, int e) {
+        while (f % 10 == 0) {
+            f /= 10;
+            e++;
+        }
+        int len = digits(f);
+        // 第一位数字的十进制指数
+        int exp = e + len - 1;
+        if (exp >= -3 && exp < 7) {
+            if (exp >= 0) {
+                // 整数部分占exp + 1位
+                int intLen = exp + 1;
+                if (len <= intLen) {
+                    pos = writePositive(b, pos, f, len);
+                    for (int i = len; i < intLen; i++) b[pos++] = '0';
+                    b[pos++] = '.';
+                    b[pos++] = '0';
+                    return pos;
+                }
+                return insertPoint(b, pos, f, len, intLen);
+            }
+            b[pos++] = '0';
+            b[pos++] = '.';
+            for (int i = -1; i > exp; i--) b[pos++] = '0';
+            return writePositive(b, pos, f, len);
+        }
+        if (len == 1) {
+            b[pos++] = (byte) ('0' + f);
+            b[pos++] = '.';
+            b[pos++] = '0';
+        }
+        else {
+            pos = insertPoint(b, pos, f, len, 1);
+        }
+        b[pos++] = 'E';
+        return writeLong(b, pos, exp);
+    }
+
+    // 写出len位的f，在第intLen位后插入小数点
+    private static int insertPoint(byte[] b, int pos, long f, int len, int intLen) {
+        writePositive(b, pos + 1, f, len);
+        for (int i = 0; i < intLen; i++) b[pos + i] = b[pos + i + 1];
+        b[pos + intLen] = '.';
+        return pos + len + 1;
+    }
+
+    private static int writeAscii(byte[] b, int pos, String s) {
+        for (int i = 0; i < s.length(); i++)
+            b[pos++] = (byte) s.charAt(i);
+        return pos;
+    }
+}
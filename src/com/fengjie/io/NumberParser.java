@@ -0,0 +1,302 @@
+package com.fengjie.io;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+
+/**
+ *  直接从字节解析数字，解析成功时不创建任何对象
+ *
+ *  整数一次遍历完成；浮点数先尝试Clinger的快速路径，
+ *  再用Eisel-Lemire算法得到正确舍入的结果，
+ *  只有在极少数无法判定的情况下才退回到Double.parseDouble。
+ *  解析失败时和Integer.parseInt一样抛出NumberFormatException。
+ *
+ *  浮点解析需要暂存中间结果，所以每个线程应当使用自己的实例。
+ *
+ *  @author fengjie2018@qq.com
+ *  @version 1.0 2018年2月16日
+ */
+final class NumberParser {
+
+    // 最多保留的有效数字位数，19位十进制数一定能放进64位无符号整数
+    private static final int MAX_DIGITS = 19;
+
+    // 表中最小和最大的10的幂
+    private static final int SMALLEST_POWER = -342;
+    private static final int LARGEST_POWER  = 308;
+
+    // 可以精确表示为double的10的幂
+    private static final double[] POW10 = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    // 可以精确表示为float的10的幂
+    private static final float[] POW10F = {
+        1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f
+    };
+
+    // 5^q的128位近似值，每个q占两个long（高位在前），q从SMALLEST_POWER到LARGEST_POWER
+    private static final long[] POW5_128 = new long[2 * (LARGEST_POWER - SMALLEST_POWER + 1)];
+
+    static {
+        BigInteger two128 = BigInteger.ONE.shiftLeft(128);
+        BigInteger mask64 = BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE);
+        for (int q = SMALLEST_POWER; q <= LARGEST_POWER; q++) {
+            BigInteger c;
+            if (q < 0) {
+                // 负幂取2^b / 5^-q向上的近似，再截断到128位
+                BigInteger power5 = BigInteger.valueOf(5).pow(-q);
+                int z = power5.subtract(BigInteger.ONE).bitLength();
+                int b = q >= -27 ? z + 127 : 2 * z + 128;
+                c = BigInteger.ONE.shiftLeft(b).divide(power5).add(BigInteger.ONE);
+                while (c.compareTo(two128) >= 0) c = c.shiftRight(1);
+            }
+            else {
+                // 正幂把最高位移到第127位并截断
+                c = BigInteger.valueOf(5).pow(q);
+                int bits = c.bitLength();
+                c = bits <= 128 ? c.shiftLeft(128 - bits) : c.shiftRight(bits - 128);
+            }
+            int index = 2 * (q - SMALLEST_POWER);
+            POW5_128[index]     = c.shiftRight(64).longValue();
+            POW5_128[index + 1] = c.and(mask64).longValue();
+        }
+    }
+
+    // 上一次scan()的结果
+    private long    mantissa;
+    private int     exponent;
+    private boolean negative;
+    private boolean truncated;
+    private double  special;
+
+    /**
+     * 解析一个十进制int，只接受ASCII数字和可选的正负号
+     * @throws NumberFormatException 如果格式不对或溢出
+     */
+    static int parseInt(byte[] b, int from, int to) {
+        return (int) parseLong(b, from, to, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 解析一个十进制long，只接受ASCII数字和可选的正负号
+     * @throws NumberFormatException 如果格式不对或溢出
+     */
+    static long parseLong(byte[] b, int from, int to) {
+        return parseLong(b, from, to, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * 解析一个在[min, max]之间的十进制整数
+     * 用负数累加，这样最小值也不会溢出
+     * @throws NumberFormatException 如果格式不对或超出范围
+     */
+    static long parseLong(byte[] b, int from, int to, long min, long max) {
+        if (from >= to) throw error(b, from, from);
+        int i = from;
+        boolean negative = false;
+        if (b[i] == '-' || b[i] == '+') {
+            negative = b[i] == '-';
+            i++;
+        }
+        if (i == to) throw error(b, from, to);
+        long limit = negative ? min : -max;
+        long multmin = limit / 10;
+        long result = 0;
+        for (; i < to; i++) {
+            int d = b[i] - '0';
+            if (d < 0 || d > 9 || result < multmin) throw error(b, from, to);
+            result *= 10;
+            if (result < limit + d) throw error(b, from, to);
+            result -= d;
+        }
+        return negative ? result : -result;
+    }
+
+    /**
+     * 解析一个十进制double，接受小数点、指数以及NaN和Infinity
+     * @throws NumberFormatException 如果格式不对
+     */
+    double parseDouble(byte[] b, int from, int to) {
+        if (!scan(b, from, to)) return special;
+        long w = mantissa;
+        int  q = exponent;
+        double d;
+        if (w == 0) {
+            d = 0.0;
+        }
+        else if (!truncated && q >= -22 && q <= 22 && w >= 0 && w <= (1L << 53)) {
+            // Clinger快速路径：w和10^q都能精确表示，一次运算就是正确舍入的结果
+            d = q < 0 ? w / POW10[-q] : w * POW10[q];
+        }
+        else {
+            long bits = eiselLemire(q, w);
+            if (truncated && bits >= 0 && bits != eiselLemire(q, w + 1)) bits = -1;
+            if (bits < 0)
+                return Double.parseDouble(new String(b, from, to - from, StandardCharsets.ISO_8859_1));
+            d = Double.longBitsToDouble(bits);
+        }
+        return negative ? -d : d;
+    }
+
+    /**
+     * 解析一个十进制float
+     * @throws NumberFormatException 如果格式不对
+     */
+    float parseFloat(byte[] b, int from, int to) {
+        if (!scan(b, from, to)) return (float) special;
+        long w = mantissa;
+        int  q = exponent;
+        if (w != 0 && (truncated || q < -10 || q > 10 || w < 0 || w > (1L << 24)))
+            return Float.parseFloat(new String(b, from, to - from, StandardCharsets.ISO_8859_1));
+        float f = w == 0 ? 0f : q < 0 ? w / POW10F[-q] : w * POW10F[q];
+        return negative ? -f : f;
+    }
+
+    /**
+     * 把[from, to)分解为 ±mantissa × 10^exponent，mantissa按无符号数理解
+     * @return 如果是NaN或Infinity就把它存入special并返回false
+     */
+    private boolean scan(byte[] b, int from, int to) {
+        int i = from;
+        negative = false;
+        if (i < to && (b[i] == '-' || b[i] == '+')) {
+            negative = b[i] == '-';
+            i++;
+        }
+        if (i < to && (b[i] == 'N' || b[i] == 'I')) {
+            if (matches(b, i, to, "NaN"))
+                special = Double.NaN;
+            else if (matches(b, i, to, "Infinity"))
+                special = negative ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+            else
+                throw error(b, from, to);
+            return false;
+        }
+        long w = 0;
+        int digits = 0;
+        int exp10 = 0;
+        boolean anyDigit = false;
+        truncated = false;
+        for (; i < to; i++) {
+            int d = b[i] - '0';
+            if (d < 0 || d > 9) break;
+            anyDigit = true;
+            if (digits < MAX_DIGITS) {
+                if (w != 0 || d != 0) {
+                    w = w * 10 + d;
+                    digits++;
+                }
+            }
+            else {
+                exp10++;
+                if (d != 0) truncated = true;
+            }
+        }
+        if (i < to && b[i] == '.') {
+            for (i++; i < to; i++) {
+                int d = b[i] - '0';
+                if (d < 0 || d > 9) break;
+                anyDigit = true;
+                if (digits < MAX_DIGITS) {
+                    if (w != 0 || d != 0) {
+                        w = w * 10 + d;
+                        digits++;
+                    }
+                    exp10--;
+                }
+                else if (d != 0) {
+                    truncated = true;
+                }
+            }
+        }
+        if (!anyDigit) throw error(b, from, to);
+        if (i < to && (b[i] == 'e' || b[i] == 'E')) {
+            i++;
+            boolean negativeExp = false;
+            if (i < to && (b[i] == '-' || b[i] == '+')) {
+                negativeExp = b[i] == '-';
+                i++;
+            }
+            if (i == to) throw error(b, from, to);
+            int e = 0;
+            for (; i < to; i++) {
+                int d = b[i] - '0';
+                if (d < 0 || d > 9) throw error(b, from, to);
+                // 再大的指数结果也只是0或无穷大
+                if (e < 100000) e = e * 10 + d;
+            }
+            exp10 += negativeExp ? -e : e;
+        }
+        if (i != to) throw error(b, from, to);
+        mantissa = w;
+        exponent = exp10;
+        return true;
+    }
+
+    private static boolean matches(byte[] b, int from, int to, String s) {
+        if (to - from != s.length()) return false;
+        for (int k = 0; k < s.length(); k++)
+            if (b[from + k] != s.charAt(k)) return false;
+        return true;
+    }
+
+    /**
+     * Eisel-Lemire算法：用5^q的128位近似值计算 w × 10^q 正确舍入后的double
+     * @param q 十进制指数
+     * @param w 非零的无符号尾数
+     * @return double的位模式（不含符号），无法判定时返回-1
+     */
+    private static long eiselLemire(int q, long w) {
+        if (w == 0 || q < SMALLEST_POWER) return 0;
+        if (q > LARGEST_POWER) return 0x7FFL << 52;
+        int lz = Long.numberOfLeadingZeros(w);
+        w <<= lz;
+        int index = 2 * (q - SMALLEST_POWER);
+        long high = unsignedMultiplyHigh(w, POW5_128[index]);
+        long low  = w * POW5_128[index];
+        // 高位的低9位全为1时，乘积可能受截断误差影响，需要第二个64位修正
+        if ((high & 0x1FF) == 0x1FF) {
+            long high2 = unsignedMultiplyHigh(w, POW5_128[index + 1]);
+            low += high2;
+            if (Long.compareUnsigned(high2, low) > 0) high++;
+            if (low == -1 && (q < -27 || q > 55)) return -1;
+        }
+        int upperbit = (int) (high >>> 63);
+        int shift = upperbit + 9;
+        long m = high >>> shift;
+        int power2 = (((152170 + 65536) * q) >> 16) + 63 + upperbit - lz + 1023;
+        if (power2 <= 0) {
+            // 非规格化数
+            if (-power2 + 1 >= 64) return 0;
+            m >>>= -power2 + 1;
+            m += m & 1;
+            m >>>= 1;
+            power2 = m < (1L << 52) ? 0 : 1;
+            return m | ((long) power2 << 52);
+        }
+        // 恰好在两个double正中间时舍入到偶数
+        if ((low == 0 || low == 1) && q >= -4 && q <= 23 && (m & 3) == 1 && (m << shift) == high)
+            m &= ~1L;
+        m += m & 1;
+        m >>>= 1;
+        if (m >= (2L << 52)) {
+            m = 1L << 52;
+            power2++;
+        }
+        m &= ~(1L << 52);
+        if (power2 >= 0x7FF) return 0x7FFL << 52;
+        return m | ((long) power2 << 52);
+    }
+
+    // 64位无符号乘法的高64位
+    private static long unsignedMultiplyHigh(long x, long y) {
+        return Math.multiplyHigh(x, y) + ((x >> 63) & y) + ((y >> 63) & x);
+    }
+
+    private static NumberFormatException error(byte[] b, int from, int to) {
+        return new NumberFormatException("For input string: \""
+            + new String(b, from, to - from, StandardCharsets.UTF_8) + "\"");
+    }
+}
@@ -5,13 +5,24 @@ package com.fengjie.io;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  *  这个类提供了把字符串，数字写入输出流的方法
+ *  输出先写入内部的字节缓冲区，再按刷新策略（见FlushPolicy）写到目的地，
+ *  默认的策略和以前一样，每次打印后都刷新
+ *  数字直接格式化为字节，不经过String；浮点数输出最短的、能精确还原的表示
+ *  写文件时可以选择CHANNEL引擎（见Engine），通过FileChannel成批写出
  *  编码：UTF-8
  *  语系：简体中文-中国
  *  @author fengjie2018@qq.com
@@ -21,28 +32,164 @@ import java.util.Locale;
  */
 public class Out {
 
-    // 编码：UTF-8
-    private static final String CHARSET = "UTF-8";
-
     // 语系：简体中文-中国
     private static final Locale LOCALE = Locale.SIMPLIFIED_CHINESE;
 
-    //Writer
-    private PrintWriter out;
+    // 缓冲区大小：64KB
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    // 最小的缓冲区，要装得下一个格式化的数字
+    private static final int MIN_BUFFER_SIZE = 64;
+
+    // 换行符
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+
+    // printf最多缓存的编译后的格式串
+    private static final int MAX_CACHED_FORMATS = 64;
+
+    // 格式化数字用的临时数组的大小，%f的整数部分最多309位
+    private static final int SCRATCH_SIZE = 400;
+
+    // CHANNEL引擎最多攒多少个直接缓冲区再一次写出
+    private static final int MAX_QUEUED = 16;
+
+    /**
+     * 写文件的引擎
+     */
+    public enum Engine {
+        /** 通过FileOutputStream写出 */
+        STREAM,
+        /** 缓冲区内容复制到池化的直接ByteBuffer，攒够几个后用FileChannel的聚集写一次写出 */
+        CHANNEL
+    }
+
+    /**
+     * 刷新策略，决定缓冲区中的内容什么时候写到目的地
+     * 无论哪种策略，缓冲区满了都会写出，flush()和close()都会刷新
+     */
+    public static final class FlushPolicy {
+
+        private static final int EXPLICIT = 0;
+        private static final int SIZE     = 1;
+        private static final int TIME     = 2;
+        private static final int LINE     = 3;
+
+        private static final FlushPolicy EXPLICIT_POLICY = new FlushPolicy(EXPLICIT, 0);
+        private static final FlushPolicy LINE_POLICY     = new FlushPolicy(LINE, 0);
+
+        private final int  kind;
+        private final long value;
+
+        private FlushPolicy(int kind, long value) {
+            this.kind  = kind;
+            this.value = value;
+        }
+
+        /**
+         * 只在缓冲区满、调用flush()或close()时刷新，适合批量输出
+         * @return FlushPolicy
+         */
+        public static FlushPolicy explicit() {
+            return EXPLICIT_POLICY;
+        }
+
+        /**
+         * 缓冲的字节数达到bytes时刷新
+         * @param bytes 字节数
+         * @return FlushPolicy
+         * @throws IllegalArgumentException 如果bytes不是正数
+         */
+        public static FlushPolicy size(int bytes) {
+            if (bytes <= 0) throw new IllegalArgumentException("bytes必须是正数");
+            return new FlushPolicy(SIZE, bytes);
+        }
+
+        /**
+         * 距上一次刷新超过millis毫秒后，在下一次写入时刷新
+         * 没有后台线程，空闲时缓冲的内容要等到下一次写入或flush()
+         * @param millis 毫秒数
+         * @return FlushPolicy
+         * @throws IllegalArgumentException 如果millis是负数
+         */
+        public static FlushPolicy time(long millis) {
+            if (millis < 0) throw new IllegalArgumentException("millis不能是负数");
+            return new FlushPolicy(TIME, millis * 1000000L);
+        }
+
+        /**
+         * 每次println、print和printf之后都刷新，适合交互使用，这是默认的策略
+         * @return FlushPolicy
+         */
+        public static FlushPolicy line() {
+            return LINE_POLICY;
+        }
+    }
+
+    // 目的地，使用CHANNEL引擎时为null
+    private OutputStream os;
+
+    // CHANNEL引擎的目的地和等待写出的直接缓冲区
+    private FileChannel channel;
+    private ByteBuffer[] queue;
+    private int queued;
+
+    // 缓冲区，有效数据为buf[0, count)
+    private byte[] buf;
+    private int count;
+
+    // 刷新策略
+    private FlushPolicy policy;
+
+    // 上一次刷新的时间，纳秒
+    private long lastFlush;
+
+    // 写入char时暂存的高位代理，等待和下一个低位代理组成一个码点
+    private char pendingHigh;
+
+    // 写入时是否发生过IOException
+    private boolean error;
+
+    // 代替PrintWriter的监视器锁，保证每次打印的完整性
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // 写出的统计
+    private final StreamMetrics metrics = new StreamMetrics("Out");
+
+    // printf编译过的格式串，按最近使用排序，第一次使用时才创建
+    private Map<String, CompiledFormat> formats;
+
+    // CompiledFormat格式化数字用的临时数组，第一次使用时才创建
+    private byte[] scratch;
 
     /**
      * 初始化输出流
      * @param os OutputStream
      */
     public Out(OutputStream os) {
-        try {
-            OutputStreamWriter osw = new OutputStreamWriter(os, CHARSET);
-            //这个boolean若为true，println(),printf()会刷新输出流
-            out = new PrintWriter(osw, true);
-        }
-        catch (IOException e) {
-            e.printStackTrace();
-        }
+        this(os, FlushPolicy.line());
+    }
+
+    /**
+     * 用指定的刷新策略初始化输出流
+     * @param os OutputStream
+     * @param policy 刷新策略
+     * @throws IllegalArgumentException 如果policy为null
+     */
+    public Out(OutputStream os, FlushPolicy policy) {
+        init(os, policy, BUFFER_SIZE);
+    }
+
+    /**
+     * 用指定的刷新策略和缓冲区大小初始化输出流
+     * 同时存在大量Out时（如SocketServer的连接、Stdout异步模式的每个线程）用小缓冲区节省内存
+     * @param os OutputStream
+     * @param policy 刷新策略
+     * @param bufferSize 缓冲区大小，小于64字节时按64字节
+     * @throws IllegalArgumentException 如果policy为null或bufferSize不是正数
+     */
+    public Out(OutputStream os, FlushPolicy policy, int bufferSize) {
+        if (bufferSize <= 0) throw new IllegalArgumentException("缓冲区大小必须是正数：" + bufferSize);
+        init(os, policy, Math.max(bufferSize, MIN_BUFFER_SIZE));
     }
 
     /**
@@ -57,10 +204,19 @@ public class Out {
      * @param  socket socket
      */
     public Out(Socket socket) {
+        this(socket, FlushPolicy.line());
+    }
+
+    /**
+     * 用套接字和指定的刷新策略初始化输出流
+     * @param  socket socket
+     * @param  policy 刷新策略
+     * @throws IllegalArgumentException 如果policy为null
+     */
+    public Out(Socket socket, FlushPolicy policy) {
         try {
             OutputStream os = socket.getOutputStream();
-            OutputStreamWriter osw = new OutputStreamWriter(os, CHARSET);
-            out = new PrintWriter(osw, true);
+            init(os, policy, BUFFER_SIZE);
         }
         catch (IOException e) {
             e.printStackTrace();
@@ -72,28 +228,128 @@ public class Out {
      * @param filename 文件名
      */
     public Out(String filename) {
+        this(filename, FlushPolicy.line());
+    }
+
+    /**
+     * 用文件和指定的刷新策略初始化输出流
+     * @param filename 文件名
+     * @param policy 刷新策略
+     * @throws IllegalArgumentException 如果policy为null
+     */
+    public Out(String filename, FlushPolicy policy) {
+        this(filename, policy, Engine.STREAM);
+    }
+
+    /**
+     * 用文件和指定的引擎初始化输出流
+     * @param filename 文件名
+     * @param engine 引擎
+     * @throws IllegalArgumentException 如果engine为null
+     */
+    public Out(String filename, Engine engine) {
+        this(filename, FlushPolicy.line(), engine);
+    }
+
+    /**
+     * 用文件、指定的刷新策略和引擎初始化输出流
+     * @param filename 文件名
+     * @param policy 刷新策略
+     * @param engine 引擎
+     * @throws IllegalArgumentException 如果policy或engine为null
+     */
+    public Out(String filename, FlushPolicy policy, Engine engine) {
+        if (engine == null) throw new IllegalArgumentException("engine为null");
         try {
-            OutputStream os = new FileOutputStream(filename);
-            OutputStreamWriter osw = new OutputStreamWriter(os, CHARSET);
-            out = new PrintWriter(osw, true);
+            if (engine == Engine.CHANNEL) {
+                FileChannel channel = FileChannel.open(Paths.get(filename),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                init(null, policy, BUFFER_SIZE);
+                this.channel = channel;
+                this.queue   = new ByteBuffer[MAX_QUEUED];
+            }
+            else {
+                OutputStream os = new FileOutputStream(filename);
+                init(os, policy, BUFFER_SIZE);
+            }
         }
         catch (IOException e) {
             e.printStackTrace();
         }
     }
 
+    private void init(OutputStream os, FlushPolicy policy, int size) {
+        if (policy == null) throw new IllegalArgumentException("policy为null");
+        this.os     = os;
+        this.policy = policy;
+        // 按大小刷新时，缓冲区至少要装得下阈值
+        if (policy.kind == FlushPolicy.SIZE) size = (int) Math.max(size, policy.value);
+        this.buf       = new byte[size];
+        this.lastFlush = System.nanoTime();
+    }
+
     /**
      * 关闭输入流
      */
     public void close() {
-        out.close();
+        metrics.unregister();
+        lock.lock();
+        try {
+            flushStream();
+            if (channel != null) channel.close();
+            else                 os.close();
+        }
+        catch (IOException e) {
+            error = true;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 把缓冲区的内容写到目的地并刷新
+     */
+    public void flush() {
+        lock.lock();
+        try {
+            flushStream();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 写出的统计：字节数、行数、刷新次数和刷新的耗时
+     * 可以用StreamMetrics.register()注册为JMX的MBean
+     * @return 这个Out的StreamMetrics，随写出不断更新
+     */
+    public StreamMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * 刷新输出流，并检查是否发生过错误
+     * @return 如果写入时发生过IOException就返回true
+     */
+    public boolean checkError() {
+        flush();
+        return error;
     }
 
     /**
      * 换行
      */
     public void println() {
-        out.println();
+        lock.lock();
+        try {
+            writeLine();
+            afterWrite();
+        }
+        finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -101,7 +357,15 @@ public class Out {
      * @param x object
      */
     public void println(Object x) {
-        out.println(x);
+        lock.lock();
+        try {
+            writeString(String.valueOf(x));
+            writeLine();
+            afterWrite();
+        }
+        finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -109,7 +373,15 @@ public class Out {
      * @param x boolean
      */
     public void println(boolean x) {
-        out.println(x);
+        lock.lock();
+        try {
+            writeString(x ? "true" : "false");
+            writeLine();
+            afterWrite();
+        }
+        finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -117,7 +389,15 @@ public class Out {
      * @param x char
      */
     public void println(char x) {
-        out.println(x);
+        lock.lock();
+        try {
+            writeChar(x);
+            writeLine();
+            afterWrite();
+        }
+        finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -125,7 +405,15 @@ public class Out {
      * @param x double
      */
     public void println(double x) {
-        out.println(x);
+        lock.lock();
+        try {
+            writeDouble(x);
+            writeLine();
+            afterWrite();
+        }
+        finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -133,7 +421,15 @@ public class Out {
      * @param x float
      */
     public void println(float x) {
-        out.println(x);
+        lock.lock();
+        try {
+            writeFloat(x);
+            writeLine();
+            afterWrite();
+        }
+        finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -141,7 +437,15 @@ public class Out {
      * @param x int
      */
     public void println(int x) {
-        out.println(x);
+        lock.lock();
+        try {
+            writeLong(x);
+            writeLine();
+            afterWrite();
+        }
+        finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -149,7 +453,15 @@ public class Out {
      * @param x long
      */
     public void println(long x) {
-        out.println(x);
+        lock.lock();
+        try {
+            writeLong(x);
+            writeLine();
+            afterWrite();
+        }
+        finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -157,86 +469,142 @@ public class Out {
      * @param x byte
      */
     public void println(byte x) {
-        out.println(x);
+        lock.lock();
+        try {
+            writeLong(x);
+            writeLine();
+            afterWrite();
+        }
+        finally {
+            lock.unlock();
+        }
     }
 
     /**
      * 刷新输出流
      */
     public void print() {
-        out.flush();
+        flush();
     }
 
-    /**
-     * 打印并刷新
+   /**
+     * 打印，按刷新策略决定是否刷新
      * @param x object
      */
     public void print(Object x) {
-        out.print(x);
-        out.flush();
+        lock.lock();
+        try {
+            writeString(String.valueOf(x));
+            afterWrite();
+        }
+        finally {
+            lock.unlock();
+        }
     }
 
-    /**
-     * 打印并刷新
+   /**
+     * 打印，按刷新策略决定是否刷新
      * @param x boolean
      */
     public void print(boolean x) {
-        out.print(x);
-        out.flush();
+        lock.lock();
+        try {
+            writeString(x ? "true" : "false");
+            afterWrite();
+        }
+        finally {
+            lock.unlock();
+        }
     }
 
    /**
-     * 打印并刷新 
+     * 打印，按刷新策略决定是否刷新
      * @param x char
      */
     public void print(char x) {
-        out.print(x);
-        out.flush();
+        lock.lock();
+        try {
+            writeChar(x);
+            afterWrite();
+        }
+        finally {
+            lock.unlock();
+        }
     }
 
    /**
-     * 打印并刷新
+     * 打印，按刷新策略决定是否刷新
      * @param x double
      */
     public void print(double x) {
-        out.print(x);
-        out.flush();
+        lock.lock();
+        try {
+            writeDouble(x);
+            afterWrite();
+        }
+        finally {
+            lock.unlock();
+        }
     }
 
    /**
-     * 打印并刷新
+     * 打印，按刷新策略决定是否刷新
      * @param x float
      */
     public void print(float x) {
-        out.print(x);
-        out.flush();
+        lock.lock();
+        try {
+            writeFloat(x);
+            afterWrite();
+        }
+        finally {
+            lock.unlock();
+        }
     }
 
    /**
-     * 打印并刷新
+     * 打印，按刷新策略决定是否刷新
      * @param x int
      */
     public void print(int x) {
-        out.print(x);
-        out.flush();
+        lock.lock();
+        try {
+            writeLong(x);
+            afterWrite();
+        }
+        finally {
+            lock.unlock();
+        }
     }
 
    /**
-     * 打印并刷新
+     * 打印，按刷新策略决定是否刷新
      * @param x long
      */
     public void print(long x) {
-        out.print(x);
-        out.flush();
+        lock.lock();
+        try {
+            writeLong(x);
+            afterWrite();
+        }
+        finally {
+            lock.unlock();
+        }
     }
 
    /**
-     * 打印并刷新
+     * 打印，按刷新策略决定是否刷新
      * @param x byte
      */
     public void print(byte x) {
-        out.print(x);
-        out.flush();
+        lock.lock();
+        try {
+            writeLong(x);
+            afterWrite();
+        }
+        finally {
+            lock.unlock();
+        }
     }
 
    /**
@@ -245,19 +613,336 @@ public class Out {
      * @param args   格式串对应的内容
      */
     public void printf(String format, Object... args) {
-        out.printf(LOCALE, format, args);
+        printf(LOCALE, format, args);
     }
 
    /**
-     * 格式化输出
+     * 格式化输出，格式串编译后缓存起来，见CompiledFormat
      * @param locale 语系
      * @param format 格式串
      * @param args   格式串对应内容
      */
     public void printf(Locale locale, String format, Object... args) {
-        out.printf(locale, format, args);
+        lock.lock();
+        try {
+            compiled(locale, format).render(this, null, args);
+            afterWrite();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 把int数组压缩成一帧写出，按刷新策略决定是否刷新，用In.readEncodedInts()读取
+     * 压缩方式见ArrayEncoding，压缩的数组可以和文本混在一起
+     * @param a        数组
+     * @param encoding 压缩方式
+     * @throws IllegalArgumentException 如果参数为null
+     */
+    public void writeEncoded(int[] a, ArrayEncoding encoding) {
+        if (a == null) throw new IllegalArgumentException("数组为null");
+        if (encoding == null) throw new IllegalArgumentException("encoding为null");
+        lock.lock();
+        try {
+            int base = encoding == ArrayEncoding.FRAME_OF_REFERENCE ? VarintCodec.min(a) : 0;
+            writeFrameHeader(false, encoding, a.length, base);
+            int prev = 0;
+            for (int x : a) {
+                long v;
+                switch (encoding) {
+                    case ZIGZAG: v = VarintCodec.zigzag(x) & 0xFFFFFFFFL; break;
+                    case DELTA:  v = VarintCodec.zigzag(x - prev) & 0xFFFFFFFFL; prev = x; break;
+                    default:     v = (x - base) & 0xFFFFFFFFL; break;
+                }
+                ensure(VarintCodec.MAX_INT_BYTES);
+                count = VarintCodec.putVarint(buf, count, v);
+            }
+            afterWrite();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 把long数组压缩成一帧写出，按刷新策略决定是否刷新，用In.readEncodedLongs()读取
+     * @param a        数组
+     * @param encoding 压缩方式
+     * @throws IllegalArgumentException 如果参数为null
+     */
+    public void writeEncoded(long[] a, ArrayEncoding encoding) {
+        if (a == null) throw new IllegalArgumentException("数组为null");
+        if (encoding == null) throw new IllegalArgumentException("encoding为null");
+        lock.lock();
+        try {
+            long base = encoding == ArrayEncoding.FRAME_OF_REFERENCE ? VarintCodec.min(a) : 0;
+            writeFrameHeader(true, encoding, a.length, base);
+            long prev = 0;
+            for (long x : a) {
+                long v;
+                switch (encoding) {
+                    case ZIGZAG: v = VarintCodec.zigzag(x); break;
+                    case DELTA:  v = VarintCodec.zigzag(x - prev); prev = x; break;
+                    default:     v = x - base; break;
+                }
+                ensure(VarintCodec.MAX_LONG_BYTES);
+                count = VarintCodec.putVarint(buf, count, v);
+            }
+            afterWrite();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    // 标记字节、个数和FRAME_OF_REFERENCE的最小值
+    private void writeFrameHeader(boolean isLong, ArrayEncoding encoding, int n, long base) {
+        ensure(1 + VarintCodec.MAX_INT_BYTES + VarintCodec.MAX_LONG_BYTES);
+        buf[count++] = VarintCodec.tag(isLong, encoding);
+        count = VarintCodec.putVarint(buf, count, n);
+        if (encoding == ArrayEncoding.FRAME_OF_REFERENCE) {
+            long z = isLong ? VarintCodec.zigzag(base) : VarintCodec.zigzag((int) base) & 0xFFFFFFFFL;
+            count = VarintCodec.putVarint(buf, count, z);
+        }
+    }
+
+    // 从缓存中取出编译好的格式串，缓存满时淘汰最久没用的
+    private CompiledFormat compiled(Locale locale, String format) {
+        if (formats == null) {
+            formats = new LinkedHashMap<String, CompiledFormat>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CompiledFormat> eldest) {
+                    return size() > MAX_CACHED_FORMATS;
+                }
+            };
+        }
+        CompiledFormat cf = formats.get(format);
+        if (cf == null || !Objects.equals(cf.locale(), locale)) {
+            cf = CompiledFormat.compile(locale, format);
+            formats.put(format, cf);
+        }
+        return cf;
     }
 
+    // 供CompiledFormat.Cursor使用：在锁内输出一整条
+    void print(CompiledFormat format, CompiledFormat.Cursor cursor) {
+        lock.lock();
+        try {
+            format.render(this, cursor, null);
+            afterWrite();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    // 以下几个方法供CompiledFormat在锁内使用
+
+    byte[] scratch() {
+        if (scratch == null) scratch = new byte[SCRATCH_SIZE];
+        return scratch;
+    }
+
+    void writeBytes(byte[] b, int off, int len) {
+        while (len > 0) {
+            if (count == buf.length) flushBuffer();
+            int n = Math.min(len, buf.length - count);
+            System.arraycopy(b, off, buf, count, n);
+            count += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    // 写入n个相同的ASCII字符，n <= 0时什么都不做
+    void writeRepeated(char c, int n) {
+        for (int i = 0; i < n; i++) {
+            if (count == buf.length) flushBuffer();
+            buf[count++] = (byte) c;
+        }
+    }
+
+    // 按刷新策略决定是否刷新
+    private void afterWrite() {
+        switch (policy.kind) {
+            case FlushPolicy.LINE:
+                flushStream();
+                break;
+            case FlushPolicy.SIZE:
+                if (count >= policy.value) flushStream();
+                break;
+            case FlushPolicy.TIME:
+                if (System.nanoTime() - lastFlush >= policy.value) flushStream();
+                break;
+            default:
+                break;
+        }
+    }
+
+    // 把缓冲区写到目的地并刷新目的地
+    private void flushStream() {
+        StreamMetrics.FlushEvent event = StreamMetrics.FLUSH_TYPE.isEnabled() ? new StreamMetrics.FlushEvent() : null;
+        if (event != null) event.begin();
+        long start = System.nanoTime();
+        int pending = count;
+        flushBuffer();
+        try {
+            if (channel != null) writeQueue();
+            else                 os.flush();
+        }
+        catch (IOException e) {
+            error = true;
+        }
+        lastFlush = System.nanoTime();
+        metrics.flushes++;
+        metrics.flushNanos += lastFlush - start;
+        if (event != null) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.bytes = pending;
+                event.commit();
+            }
+        }
+    }
+
+    // 把缓冲区写到目的地，不刷新目的地；CHANNEL引擎只是放入队列，队列满了才写出
+    private void flushBuffer() {
+        if (count == 0) return;
+        metrics.bytes += count;
+        try {
+            if (channel != null) enqueue();
+            else                 os.write(buf, 0, count);
+        }
+        catch (IOException e) {
+            error = true;
+        }
+        count = 0;
+    }
+
+    // 把buf[0, count)复制到直接缓冲区，queue[0, queued)中只有最后一个可能没写满
+    private void enqueue() throws IOException {
+        for (int off = 0; off < count; ) {
+            ByteBuffer bb = queued == 0 ? null : queue[queued - 1];
+            if (bb == null || !bb.hasRemaining()) {
+                if (queued == queue.length) writeQueue();
+                bb = queue[queued++] = DirectBufferPool.acquire();
+            }
+            int n = Math.min(count - off, bb.remaining());
+            bb.put(buf, off, n);
+            off += n;
+        }
+    }
+
+    // 用一次聚集写写出队列中的所有缓冲区，再把它们还给池
+    private void writeQueue() throws IOException {
+        int n = queued;
+        if (n == 0) return;
+        for (int i = 0; i < n; i++)
+            queue[i].flip();
+        try {
+            while (queue[n - 1].hasRemaining())
+                channel.write(queue, 0, n);
+        }
+        finally {
+            for (int i = 0; i < n; i++) {
+                DirectBufferPool.release(queue[i]);
+                queue[i] = null;
+            }
+            queued = 0;
+        }
+    }
+
+    // 确保缓冲区还能写入n个字节
+    private void ensure(int n) {
+        if (buf.length - count < n) flushBuffer();
+    }
+
+    void writeLine() {
+        metrics.lines++;
+        ensure(LINE_SEPARATOR.length);
+        for (byte b : LINE_SEPARATOR)
+            buf[count++] = b;
+    }
+
+    // 数字直接格式化到缓冲区，不创建字符串
+    private void writeLong(long x) {
+        ensure(NumberFormatter.MAX_INTEGER_LENGTH);
+        count = NumberFormatter.writeLong(buf, count, x);
+    }
+
+    private void writeDouble(double x) {
+        ensure(NumberFormatter.MAX_FLOATING_LENGTH);
+        count = NumberFormatter.writeDouble(buf, count, x);
+    }
+
+    private void writeFloat(float x) {
+        ensure(NumberFormatter.MAX_FLOATING_LENGTH);
+        count = NumberFormatter.writeFloat(buf, count, x);
+    }
+
+    // 按UTF-8编码写入字符串，连续的ASCII字符逐字节直接复制
+    void writeString(String s) {
+        int n = s.length();
+        int i = 0;
+        while (i < n) {
+            if (pendingHigh == 0) {
+                if (count == buf.length) flushBuffer();
+                byte[] b = buf;
+                int c = count;
+                int end = Math.min(n, i + b.length - c);
+                for (char ch; i < end && (ch = s.charAt(i)) < 0x80; i++)
+                    b[c++] = (byte) ch;
+                count = c;
+                if (i == n) return;
+                if (i < end) writeChar(s.charAt(i++));
+            }
+            else {
+                writeChar(s.charAt(i++));
+            }
+        }
+    }
+
+    // 按UTF-8编码写入一个char，单独的代理写为'?'，和OutputStreamWriter一致
+    void writeChar(char c) {
+        if (pendingHigh != 0) {
+            char high = pendingHigh;
+            pendingHigh = 0;
+            if (Character.isLowSurrogate(c)) {
+                int cp = Character.toCodePoint(high, c);
+                ensure(4);
+                buf[count++] = (byte) (0xF0 | (cp >> 18));
+                buf[count++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                buf[count++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                buf[count++] = (byte) (0x80 | (cp & 0x3F));
+                return;
+            }
+            writeChar('?');
+        }
+        if (c < 0x80) {
+            if (count == buf.length) flushBuffer();
+            buf[count++] = (byte) c;
+        }
+        else if (c < 0x800) {
+            ensure(2);
+            buf[count++] = (byte) (0xC0 | (c >> 6));
+            buf[count++] = (byte) (0x80 | (c & 0x3F));
+        }
+        else if (Character.isHighSurrogate(c)) {
+            pendingHigh = c;
+        }
+        else if (Character.isLowSurrogate(c)) {
+            writeChar('?');
+        }
+        else {
+            ensure(3);
+            buf[count++] = (byte) (0xE0 | (c >> 12));
+            buf[count++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            buf[count++] = (byte) (0x80 | (c & 0x3F));
+        }
+    }
 
    /**
      * 测试
@@ -0,0 +1,174 @@
+package com.fengjie.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ *  在公共ForkJoinPool上并行解析大文件，供In的readAllInts()等方法使用
+ *
+ *  文件从给定位置起被切成若干块，每个标记属于它第一个字节所在的块：
+ *  块的起点落在标记中间时，跳过这半个标记；块的最后一个标记可以越过块的终点。
+ *  每块解析成一个基本类型数组，最后按顺序拼接。
+ *
+ *  @author fengjie2018@qq.com
+ *  @version 1.0 2018年2月16日
+ */
+final class ParallelParser {
+
+    // 剩余部分小于1MB时不值得并行
+    static final long THRESHOLD = 1L << 20;
+
+    // 每块至少1MB
+    private static final long MIN_CHUNK = 1L << 20;
+
+    // 每个线程分到的块数，块多一些可以平衡负载
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private static final int INTS    = 0;
+    private static final int LONGS   = 1;
+    private static final int DOUBLES = 2;
+
+    // 不能创建实例
+    private ParallelParser() {}
+
+    /**
+     * 并行解析file中从start开始的所有int
+     * @return 结果；文件太小、只有一个线程或无法打开文件时返回null
+     * @throws NumberFormatException 如果有标记不能解析为int
+     */
+    static int[] readAllInts(File file, long start) {
+        Object[] parts = parse(file, start, INTS);
+        if (parts == null) return null;
+        int n = 0;
+        for (Object part : parts) n += ((int[]) part).length;
+        int[] vals = new int[n];
+        n = 0;
+        for (Object part : parts) {
+            int[] a = (int[]) part;
+            System.arraycopy(a, 0, vals, n, a.length);
+            n += a.length;
+        }
+        return vals;
+    }
+
+    /**
+     * 并行解析file中从start开始的所有long
+     * @return 结果；文件太小、只有一个线程或无法打开文件时返回null
+     * @throws NumberFormatException 如果有标记不能解析为long
+     */
+    static long[] readAllLongs(File file, long start) {
+        Object[] parts = parse(file, start, LONGS);
+        if (parts == null) return null;
+        int n = 0;
+        for (Object part : parts) n += ((long[]) part).length;
+        long[] vals = new long[n];
+        n = 0;
+        for (Object part : parts) {
+            long[] a = (long[]) part;
+            System.arraycopy(a, 0, vals, n, a.length);
+            n += a.length;
+        }
+        return vals;
+    }
+
+    /**
+     * 并行解析file中从start开始的所有double
+     * @return 结果；文件太小、只有一个线程或无法打开文件时返回null
+     * @throws NumberFormatException 如果有标记不能解析为double
+     */
+    static double[] readAllDoubles(File file, long start) {
+        Object[] parts = parse(file, start, DOUBLES);
+        if (parts == null) return null;
+        int n = 0;
+        for (Object part : parts) n += ((double[]) part).length;
+        double[] vals = new double[n];
+        n = 0;
+        for (Object part : parts) {
+            double[] a = (double[]) part;
+            System.arraycopy(a, 0, vals, n, a.length);
+            n += a.length;
+        }
+        return vals;
+    }
+
+    // 切块并行解析，返回按顺序排列的各块结果
+    private static Object[] parse(File file, long start, int kind) {
+        int parallelism = ForkJoinPool.getCommonPoolParallelism();
+        if (parallelism < 2) return null;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long length = size - start;
+            if (length < THRESHOLD) return null;
+            int chunks = (int) Math.max(2, Math.min((long) parallelism * CHUNKS_PER_THREAD, length / MIN_CHUNK));
+            ChunkTask[] tasks = new ChunkTask[chunks];
+            for (int i = 0; i < chunks; i++) {
+                long from = start + length * i / chunks;
+                long to   = start + length * (i + 1) / chunks;
+                tasks[i] = new ChunkTask(channel, from, to, from > start, kind);
+            }
+            ForkJoinTask.invokeAll(tasks);
+            Object[] parts = new Object[chunks];
+            for (int i = 0; i < chunks; i++)
+                parts[i] = tasks[i].join();
+            return parts;
+        }
+        catch (IOException | UncheckedIOException e) {
+            // 退回到顺序读取
+            return null;
+        }
+    }
+
+    /**
+     * 解析起始位置在[from, to)中的标记
+     */
+    private static final class ChunkTask extends RecursiveTask<Object> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient FileChannel channel;
+        private final long from;
+        private final long to;
+        private final boolean skipPartial;
+        private final int kind;
+
+        ChunkTask(FileChannel channel, long from, long to, boolean skipPartial, int kind) {
+            this.channel     = channel;
+            this.from        = from;
+            this.to          = to;
+            this.skipPartial = skipPartial;
+            this.kind        = kind;
+        }
+
+        @Override
+        protected Object compute() {
+            // 从前一个字节开始读，这样才能知道from是否落在标记中间
+            long begin = skipPartial ? from - 1 : from;
+            ByteScanner bs;
+            try {
+                // 窗口不超过64MB，超过2GB的块也能映射
+                long window = Math.min(MappedInputStream.WINDOW_SIZE, to - begin + ByteScanner.BUFFER_SIZE);
+                bs = new ByteScanner(new MappedInputStream(channel, begin, window));
+            }
+            catch (IOException ioe) {
+                throw new UncheckedIOException(ioe);
+            }
+            if (skipPartial) bs.skipPartialToken();
+            long limit = to - begin;
+            Object vals;
+            switch (kind) {
+                case INTS:  vals = bs.readAllInts(limit);    break;
+                case LONGS: vals = bs.readAllLongs(limit);   break;
+                default:    vals = bs.readAllDoubles(limit); break;
+            }
+            // ByteScanner把IOException当作流尾，这里不能让它悄悄截断结果
+            if (bs.ioException() != null) throw new UncheckedIOException(bs.ioException());
+            return vals;
+        }
+    }
+}
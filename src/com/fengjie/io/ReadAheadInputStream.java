@@ -0,0 +1,193 @@
+package com.fengjie.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ *  在后台线程中预先读取的输入流，供In使用
+ *
+ *  后台任务从源中读取，依次填满固定数量的块，交给读取者；读取者用完一块再还回去。
+ *  这样源的读取（解压、网络等待）和读取者的解析同时进行，
+ *  正在传递的数据最多是 块数 * 块大小 个字节。
+ *  两块就是双缓冲：一块在解析时另一块在填充。
+ *
+ *  后台任务运行在所有实例共用的守护线程池中，只在有空闲的块时才运行，
+ *  块都填满了就结束，读取者还回一块时再提交。所以不再使用又没有关闭的流不会占住线程，
+ *  可以被垃圾回收；空闲的线程一分钟后退出。
+ *
+ *  源抛出的IOException在读取者读到那个位置时再抛出。
+ *  close()关闭源，之后不再读取。
+ *
+ *  @author fengjie2018@qq.com
+ *  @version 1.0 2018年2月16日
+ */
+final class ReadAheadInputStream extends InputStream {
+
+    /**
+     * 一块数据；last表示这是最后一块，读完它的数据后，error为null是流尾，否则抛出error
+     */
+    private static final class Chunk {
+        final byte[] data;
+        int length;
+        boolean last;
+        IOException error;
+
+        Chunk(int size) {
+            this.data = new byte[size];
+        }
+    }
+
+    // 所有实例共用的线程池，空闲的线程60秒后退出
+    private static final ExecutorService EXECUTOR;
+
+    static {
+        AtomicInteger id = new AtomicInteger();
+        EXECUTOR = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS, new SynchronousQueue<>(), r -> {
+            Thread t = new Thread(r, "In-read-ahead-" + id.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    private final InputStream source;
+    private final String name;
+
+    // 填好的块和空闲的块
+    private final BlockingQueue<Chunk> full;
+    private final BlockingQueue<Chunk> free;
+
+    // 是否有后台任务正在填充
+    private final AtomicBoolean filling = new AtomicBoolean();
+
+    // 后台任务已经交出最后一块
+    private volatile boolean finished;
+
+    // 读取者正在读的块和其中的位置
+    private Chunk current;
+    private int pos;
+
+    private volatile boolean closed;
+
+    /**
+     * @param source    源
+     * @param chunkSize 每块的字节数
+     * @param chunks    块数，至少2
+     * @param name      后台任务运行时线程的名字
+     */
+    ReadAheadInputStream(InputStream source, int chunkSize, int chunks, String name) {
+        if (chunkSize <= 0) throw new IllegalArgumentException("块大小必须是正数：" + chunkSize);
+        if (chunks < 2) throw new IllegalArgumentException("至少要有两块：" + chunks);
+        this.source = source;
+        this.name   = name;
+        this.full   = new ArrayBlockingQueue<>(chunks);
+        this.free   = new ArrayBlockingQueue<>(chunks);
+        for (int i = 0; i < chunks; i++) free.add(new Chunk(chunkSize));
+        schedule();
+    }
+
+    // 有空闲的块而且没有任务在填充时，提交一个填充任务
+    private void schedule() {
+        if (finished || closed || free.isEmpty()) return;
+        if (filling.compareAndSet(false, true)) EXECUTOR.execute(this::fill);
+    }
+
+    // 后台任务：填满空闲的块，没有空闲的块或读到流尾时结束
+    private void fill() {
+        Thread thread = Thread.currentThread();
+        String threadName = thread.getName();
+        thread.setName(name);
+        try {
+            Chunk chunk;
+            while (!finished && !closed && (chunk = free.poll()) != null) {
+                int n = 0;
+                try {
+                    // 填满一块或源暂时没有更多数据时就交出去
+                    do {
+                        int r = source.read(chunk.data, n, chunk.data.length - n);
+                        if (r < 0) {
+                            chunk.last = true;
+                            break;
+                        }
+                        n += r;
+                    } while (n < chunk.data.length && source.available() > 0);
+                }
+                catch (IOException ioe) {
+                    // 先交出已经读到的数据，再报告异常
+                    chunk.last  = true;
+                    chunk.error = closed ? null : ioe;
+                }
+                chunk.length = n;
+                if (chunk.last) finished = true;
+                full.add(chunk);
+            }
+        }
+        finally {
+            thread.setName(threadName);
+            filling.set(false);
+        }
+        // 读取者可能在清除filling之前还回了块
+        schedule();
+    }
+
+    // 当前块读完时换下一块，流尾返回false
+    private boolean advance() throws IOException {
+        if (current != null) {
+            if (pos < current.length) return true;
+            if (current.last) {
+                if (current.error != null) throw current.error;
+                return false;
+            }
+            free.add(current);
+            current = null;
+            schedule();
+        }
+        if (closed) throw new IOException("流已关闭");
+        try {
+            current = full.take();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("等待预读的数据时被中断");
+        }
+        pos = 0;
+        return advance();
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!advance()) return -1;
+        return current.data[pos++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) return 0;
+        if (!advance()) return -1;
+        int n = Math.min(len, current.length - pos);
+        System.arraycopy(current.data, pos, b, off, n);
+        pos += n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        Chunk c = current;
+        return c == null ? 0 : c.length - pos;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        source.close();
+    }
+}
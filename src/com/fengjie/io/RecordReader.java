@@ -0,0 +1,379 @@
+package com.fengjie.io;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ *  按分隔符读取记录（如CSV、TSV），由In.records()创建
+ *
+ *  每次next()读取一条记录，字段直接留在In的读取缓冲区里：引号和转义符在原地去掉，
+ *  字段用可以反复使用的Field视图表示，getInt(i)等方法直接从字节解析。
+ *  处理一条记录不创建任何对象，只有getString(i)和Field.toString()会创建String。
+ *
+ *  记录以\n或\r\n结束，引号中的换行属于字段。空行是只有一个空字段的记录。
+ *  字段的内容和视图只在下一次调用next()之前有效。
+ *  这个类不是线程安全的
+ *
+ *  @author fengjie2018@qq.com
+ *  @version 1.0 2018年2月16日
+ */
+public final class RecordReader {
+
+    /**
+     * 记录的格式：分隔符、引号和转义符，都必须是ASCII字符
+     */
+    public static final class Format {
+
+        private static final Format CSV = new Format(',', '"', '"');
+        private static final Format TSV = new Format('\t', -1, -1);
+
+        private final int delimiter;
+        private final int quote;
+        private final int escape;
+
+        private Format(int delimiter, int quote, int escape) {
+            this.delimiter = delimiter;
+            this.quote     = quote;
+            this.escape    = escape;
+        }
+
+        /**
+         * RFC 4180的CSV：逗号分隔，双引号括起字段，引号中的两个双引号表示一个双引号
+         * @return Format
+         */
+        public static Format csv() {
+            return CSV;
+        }
+
+        /**
+         * 制表符分隔，没有引号和转义符
+         * @return Format
+         */
+        public static Format tsv() {
+            return TSV;
+        }
+
+        /**
+         * 用指定的分隔符，没有引号和转义符
+         * @param delimiter 分隔符
+         * @return Format
+         * @throws IllegalArgumentException 如果分隔符不是ASCII字符或者是换行符
+         */
+        public static Format of(char delimiter) {
+            check(delimiter);
+            return new Format(delimiter, -1, -1);
+        }
+
+        /**
+         * 换一个引号，转义符和引号相同时，引号中的两个引号表示一个引号
+         * @param quote 引号
+         * @return Format
+         * @throws IllegalArgumentException 如果引号不是ASCII字符，或者和分隔符相同
+         */
+        public Format withQuote(char quote) {
+            check(quote);
+            if (quote == delimiter) throw new IllegalArgumentException("引号和分隔符相同");
+            return new Format(delimiter, quote, escape == this.quote ? quote : escape);
+        }
+
+        /**
+         * 去掉引号，之后引号就是普通字符
+         * @return Format
+         */
+        public Format withoutQuote() {
+            return new Format(delimiter, -1, escape == quote ? -1 : escape);
+        }
+
+        /**
+         * 换一个转义符：转义符后面的字符按原样放进字段，不管它是不是分隔符、引号或换行符
+         * 转义符和引号相同时只在引号中起作用，见withQuote()
+         * @param escape 转义符
+         * @return Format
+         * @throws IllegalArgumentException 如果转义符不是ASCII字符，或者和分隔符相同
+         */
+        public Format withEscape(char escape) {
+            check(escape);
+            if (escape == delimiter) throw new IllegalArgumentException("转义符和分隔符相同");
+            return new Format(delimiter, quote, escape);
+        }
+
+        private static void check(char c) {
+            if (c >= 0x80 || c == '\n' || c == '\r')
+                throw new IllegalArgumentException("必须是ASCII字符，并且不能是换行符：" + (int) c);
+        }
+    }
+
+    /**
+     * 一个字段的视图，按字节访问，charAt()把每个字节当作一个字符
+     * 只含ASCII时和字段内容一致，否则请用toString()按UTF-8解码
+     */
+    public final class Field implements CharSequence {
+
+        private final int index;
+
+        private Field(int index) {
+            this.index = index;
+        }
+
+        private int from() {
+            return start + starts[index];
+        }
+
+        @Override
+        public int length() {
+            return ends[index] - starts[index];
+        }
+
+        @Override
+        public char charAt(int i) {
+            if (i < 0 || i >= length()) throw new IndexOutOfBoundsException("下标越界：" + i);
+            return (char) (buf[from() + i] & 0xFF);
+        }
+
+        /**
+         * 第i个字节
+         * @param i 下标
+         * @return byte
+         */
+        public byte byteAt(int i) {
+            if (i < 0 || i >= length()) throw new IndexOutOfBoundsException("下标越界：" + i);
+            return buf[from() + i];
+        }
+
+        /**
+         * 把字段的字节复制到dst[off, off + length())
+         * @param dst 目标数组
+         * @param off 起始位置
+         */
+        public void copyTo(byte[] dst, int off) {
+            System.arraycopy(buf, from(), dst, off, length());
+        }
+
+        /**
+         * 判断字段的字节是否和给定的ASCII字符串相同，不创建对象
+         * @param s 只含ASCII的字符串
+         * @return boolean
+         */
+        public boolean contentEquals(String s) {
+            int n = length();
+            if (s.length() != n) return false;
+            int from = from();
+            for (int i = 0; i < n; i++)
+                if ((buf[from + i] & 0xFF) != s.charAt(i)) return false;
+            return true;
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return toString().subSequence(start, end);
+        }
+
+        /**
+         * 按UTF-8解码
+         * @return String
+         */
+        @Override
+        public String toString() {
+            return new String(buf, from(), length(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private final ByteScanner bytes;
+
+    private final int delimiter;
+    private final int quote;
+    private final int escape;
+
+    private final NumberParser numbers = new NumberParser();
+
+    // 当前记录所在的缓冲区和起始位置，各字段相对于start的起止位置
+    private byte[] buf;
+    private int start;
+    private int[] starts = new int[16];
+    private int[] ends   = new int[16];
+    private Field[] views = new Field[16];
+    private int fields;
+
+    // 已经读取的记录数
+    private long records;
+
+    RecordReader(ByteScanner bytes, Format format) {
+        this.bytes     = bytes;
+        this.delimiter = format.delimiter;
+        this.quote     = format.quote;
+        this.escape    = format.escape;
+    }
+
+    /**
+     * 读取下一条记录
+     * @return 没有记录时返回false
+     */
+    public boolean next() {
+        fields = 0;
+        buf   = bytes.buffer();
+        start = bytes.offset();
+        if (start == bytes.limit() && refill() < 0) return false;
+        // r是已经扫描的字节数，w是去掉引号和转义符后写回的字节数，都相对于start
+        int r = 0;
+        int w = 0;
+        int fieldStart = 0;
+        boolean quoted = false;
+        for (;;) {
+            if (start + r == bytes.limit() && refill() < 0) {
+                if (quoted) throw new NoSuchElementException("第" + (records + 1) + "条记录的引号没有结束！");
+                break;
+            }
+            int c = buf[start + r++] & 0xFF;
+            if (quoted) {
+                if (c == escape && (escape != quote || peek(r) == quote)) {
+                    if (escape != quote && start + r == bytes.limit() && refill() < 0) break;
+                    buf[start + w++] = buf[start + r++];
+                }
+                else if (c == quote) {
+                    quoted = false;
+                }
+                else {
+                    buf[start + w++] = (byte) c;
+                }
+            }
+            else if (c == delimiter) {
+                endField(fieldStart, w);
+                fieldStart = w;
+            }
+            else if (c == '\n') {
+                break;
+            }
+            else if (c == '\r' && peek(r) == '\n') {
+                r++;
+                break;
+            }
+            else if (c == quote && w == fieldStart) {
+                quoted = true;
+            }
+            else if (c == escape && escape != quote) {
+                if (start + r == bytes.limit() && refill() < 0) break;
+                buf[start + w++] = buf[start + r++];
+            }
+            else {
+                buf[start + w++] = (byte) c;
+            }
+        }
+        endField(fieldStart, w);
+        bytes.offset(start + r);
+        records++;
+        // 每条记录计为一行，每个字段计为一个标记
+        StreamMetrics metrics = bytes.metrics;
+        if (metrics != null) {
+            metrics.lines++;
+            metrics.tokens += fields;
+        }
+        return true;
+    }
+
+    // 保证下标为start + r的字节在缓冲区中，返回它；流尾返回-1
+    private int peek(int r) {
+        if (start + r == bytes.limit() && refill() < 0) return -1;
+        return buf[start + r];
+    }
+
+    // 读入更多字节，当前记录移到缓冲区开头
+    private int refill() {
+        bytes.offset(start);
+        int n = bytes.refill();
+        buf   = bytes.buffer();
+        start = bytes.offset();
+        return n;
+    }
+
+    private void endField(int from, int to) {
+        if (fields == starts.length) {
+            starts = Arrays.copyOf(starts, 2 * fields);
+            ends   = Arrays.copyOf(ends, 2 * fields);
+            views  = Arrays.copyOf(views, 2 * fields);
+        }
+        starts[fields] = from;
+        ends[fields]   = to;
+        fields++;
+    }
+
+    /**
+     * 当前记录的字段数
+     * @return int
+     */
+    public int fields() {
+        return fields;
+    }
+
+    /**
+     * 已经读取的记录数
+     * @return long
+     */
+    public long records() {
+        return records;
+    }
+
+    /**
+     * 第i个字段的视图，同一个下标总是返回同一个对象
+     * @param i 下标，从0开始
+     * @return Field
+     * @throws IndexOutOfBoundsException 如果i不小于fields()
+     */
+    public Field field(int i) {
+        check(i);
+        Field f = views[i];
+        if (f == null) f = views[i] = new Field(i);
+        return f;
+    }
+
+    /**
+     * 把第i个字段解析为int
+     * @param i 下标
+     * @return int
+     * @throws IndexOutOfBoundsException 如果i不小于fields()
+     * @throws NumberFormatException 如果字段不能解析为int
+     */
+    public int getInt(int i) {
+        check(i);
+        return NumberParser.parseInt(buf, start + starts[i], start + ends[i]);
+    }
+
+    /**
+     * 把第i个字段解析为long
+     * @param i 下标
+     * @return long
+     * @throws IndexOutOfBoundsException 如果i不小于fields()
+     * @throws NumberFormatException 如果字段不能解析为long
+     */
+    public long getLong(int i) {
+        check(i);
+        return NumberParser.parseLong(buf, start + starts[i], start + ends[i]);
+    }
+
+    /**
+     * 把第i个字段解析为double
+     * @param i 下标
+     * @return double
+     * @throws IndexOutOfBoundsException 如果i不小于fields()
+     * @throws NumberFormatException 如果字段不能解析为double
+     */
+    public double getDouble(int i) {
+        check(i);
+        return numbers.parseDouble(buf, start + starts[i], start + ends[i]);
+    }
+
+    /**
+     * 第i个字段按UTF-8解码的String
+     * @param i 下标
+     * @return String
+     * @throws IndexOutOfBoundsException 如果i不小于fields()
+     */
+    public String getString(int i) {
+        check(i);
+        return new String(buf, start + starts[i], ends[i] - starts[i], StandardCharsets.UTF_8);
+    }
+
+    private void check(int i) {
+        if (i < 0 || i >= fields) throw new IndexOutOfBoundsException("没有第" + i + "个字段，共" + fields + "个");
+    }
+}
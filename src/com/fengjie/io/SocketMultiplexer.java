@@ -0,0 +1,442 @@
+package com.fengjie.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *  用少数几个线程读取大量套接字，把完整的标记或行交给每个连接的回调
+ *
+ *  每个线程有一个Selector，负责一部分连接，连接按注册顺序轮流分给各个线程。
+ *  套接字是非阻塞的，哪个连接有数据就读哪个，空闲的连接不占用线程。
+ *  分割规则就是In的字节引擎（ByteScanner）的规则：标记以ASCII空白分割，行以\n、\r\n或\r结束，按UTF-8解码。
+ *  一个标记或行超过最大长度（默认1MB）时，关闭这个连接，Handler.closed()收到IOException。
+ *
+ *  每个线程只有一个读缓冲区，连接只在有不完整的标记或行时才保存剩下的字节，
+ *  所以空闲的连接几乎不占用内存。
+ *  对方关闭连接时，最后一个不完整的标记或行也会交给回调，然后调用Handler.closed()。
+ *
+ *  同一个连接的回调总是在同一个线程中按顺序调用；回调应该尽快返回，否则会耽误同一线程的其他连接。
+ *
+ *  @author fengjie2018@qq.com
+ *  @version 1.0 2018年2月16日
+ */
+public final class SocketMultiplexer implements Closeable {
+
+    /**
+     * 把连接上的数据分割成什么
+     */
+    public enum Mode {
+        /** 以ASCII空白分割的标记 */
+        TOKENS,
+        /** 不包括换行符的行 */
+        LINES
+    }
+
+    /**
+     * 每个连接的回调
+     */
+    public interface Handler {
+        /**
+         * 读到一个完整的标记或行
+         * @param channel 连接
+         * @param item 标记或行
+         */
+        void accept(SocketChannel channel, String item);
+
+        /**
+         * 连接已经关闭
+         * @param channel 连接
+         * @param error 对方正常关闭时为null，否则是读取或回调中的异常
+         */
+        default void closed(SocketChannel channel, Exception error) {}
+    }
+
+    // 每个线程的读缓冲区大小
+    private static final int BUFFER_SIZE = ByteScanner.BUFFER_SIZE;
+
+    // 默认的标记或行的最大长度：1MB
+    private static final int DEFAULT_MAX_LENGTH = 1 << 20;
+
+    private final int maxLength;
+    private final Worker[] workers;
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicInteger connections = new AtomicInteger();
+    private volatile boolean closed;
+
+    /**
+     * 标记或行的最大长度为1MB
+     * @param threads 线程数
+     * @throws IllegalArgumentException 如果threads不是正数
+     * @throws UncheckedIOException 如果不能打开Selector
+     */
+    public SocketMultiplexer(int threads) {
+        this(threads, DEFAULT_MAX_LENGTH);
+    }
+
+    /**
+     * @param threads   线程数
+     * @param maxLength 标记或行的最大字节数，超过时关闭连接
+     * @throws IllegalArgumentException 如果参数不是正数
+     * @throws UncheckedIOException 如果不能打开Selector
+     */
+    public SocketMultiplexer(int threads, int maxLength) {
+        if (threads <= 0) throw new IllegalArgumentException("线程数必须是正数：" + threads);
+        if (maxLength <= 0) throw new IllegalArgumentException("最大长度必须是正数：" + maxLength);
+        this.maxLength = maxLength;
+        workers = new Worker[threads];
+        try {
+            for (int i = 0; i < threads; i++) workers[i] = new Worker("In-selector-" + i);
+        }
+        catch (IOException ioe) {
+            for (Worker w : workers) {
+                if (w == null) continue;
+                try {
+                    w.selector.close();
+                }
+                catch (IOException e) {}
+            }
+            throw new UncheckedIOException("无法打开Selector", ioe);
+        }
+        for (Worker w : workers) w.thread.start();
+    }
+
+    /**
+     * 注册一个连接，之后它上面的数据都交给handler，连接会被设为非阻塞的
+     * @param channel 已连接的套接字通道
+     * @param mode    分割成标记还是行
+     * @param handler 回调
+     * @throws IllegalArgumentException 如果参数为null
+     * @throws IllegalStateException 如果已经关闭
+     * @throws UncheckedIOException 如果不能把通道设为非阻塞的
+     */
+    public void register(SocketChannel channel, Mode mode, Handler handler) {
+        if (channel == null) throw new IllegalArgumentException("通道为null");
+        if (mode == null) throw new IllegalArgumentException("mode为null");
+        if (handler == null) throw new IllegalArgumentException("handler为null");
+        if (closed) throw new IllegalStateException("已经关闭");
+        try {
+            channel.configureBlocking(false);
+        }
+        catch (IOException ioe) {
+            throw new UncheckedIOException("无法设置" + channel, ioe);
+        }
+        connections.incrementAndGet();
+        Worker w = workers[Math.floorMod(next.getAndIncrement(), workers.length)];
+        Connection c = new Connection(channel, mode, handler);
+        w.pending.add(c);
+        // close()可能在检查之后已经让线程退出，这时没有人会取走这个连接
+        if (closed && w.pending.remove(c)) {
+            w.close(channel);
+            connections.decrementAndGet();
+            throw new IllegalStateException("已经关闭");
+        }
+        w.selector.wakeup();
+    }
+
+    /**
+     * 还没有关闭的连接数
+     * @return int
+     */
+    public int connections() {
+        return connections.get();
+    }
+
+    /**
+     * 停止所有线程，关闭所有连接，不再调用回调
+     */
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        for (Worker w : workers) w.shutdown();
+        for (Worker w : workers) {
+            try {
+                w.thread.join();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * 一个连接：通道、回调，以及上次没有分割完的字节
+     */
+    private static final class Connection {
+        final SocketChannel channel;
+        final Mode mode;
+        final Handler handler;
+        byte[] carry;
+        int carryLength;
+
+        // 上一行以\r结束，如果下一个字节是\n就跳过
+        boolean afterCR;
+
+        Connection(SocketChannel channel, Mode mode, Handler handler) {
+            this.channel = channel;
+            this.mode    = mode;
+            this.handler = handler;
+        }
+    }
+
+    /**
+     * 一个Selector线程
+     */
+    private final class Worker implements Runnable {
+        final Selector selector;
+        final Thread thread;
+        final Queue<Connection> pending = new ConcurrentLinkedQueue<>();
+        byte[] buf = new byte[BUFFER_SIZE];
+
+        Worker(String name) throws IOException {
+            this.selector = Selector.open();
+            this.thread = new Thread(this, name);
+            this.thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!closed) {
+                    selector.select();
+                    Connection c;
+                    while ((c = pending.poll()) != null) {
+                        try {
+                            c.channel.register(selector, SelectionKey.OP_READ, c);
+                        }
+                        catch (IOException | RuntimeException e) {
+                            finish(c, e);
+                        }
+                    }
+                    Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                    while (it.hasNext()) {
+                        SelectionKey key = it.next();
+                        it.remove();
+                        if (key.isValid() && key.isReadable()) read(key, (Connection) key.attachment());
+                    }
+                }
+            }
+            catch (IOException | ClosedSelectorException e) {
+                // 关闭了
+            }
+            finally {
+                for (SelectionKey key : keys()) {
+                    // 已经取消的连接在finish()中关闭过了
+                    if (!key.isValid()) continue;
+                    close(((Connection) key.attachment()).channel);
+                    connections.decrementAndGet();
+                }
+                Connection c;
+                while ((c = pending.poll()) != null) {
+                    close(c.channel);
+                    connections.decrementAndGet();
+                }
+                try {
+                    selector.close();
+                }
+                catch (IOException ioe) {}
+            }
+        }
+
+        private Iterable<SelectionKey> keys() {
+            try {
+                return selector.keys();
+            }
+            catch (ClosedSelectorException e) {
+                return Collections.emptySet();
+            }
+        }
+
+        void shutdown() {
+            selector.wakeup();
+        }
+
+        // 把上次剩下的字节放在缓冲区开头，读入新数据，分割出完整的标记或行
+        private void read(SelectionKey key, Connection c) {
+            int lim = c.carryLength;
+            if (lim > 0) {
+                if (lim > buf.length / 2) buf = Arrays.copyOf(buf, 2 * lim);
+                System.arraycopy(c.carry, 0, buf, 0, lim);
+            }
+            boolean eof = false;
+            try {
+                // 读到没有数据或者缓冲区满了为止
+                for (;;) {
+                    int n = c.channel.read(ByteBuffer.wrap(buf, lim, buf.length - lim));
+                    if (n < 0) eof = true;
+                    if (n <= 0) break;
+                    lim += n;
+                    if (lim == buf.length) break;
+                }
+                int used = c.mode == Mode.TOKENS ? tokens(c, lim, eof) : lines(c, lim, eof);
+                int rest = lim - used;
+                if (rest > maxLength) throw tooLong();
+                if (rest > 0) {
+                    if (c.carry == null || c.carry.length < rest)
+                        c.carry = new byte[Math.max(rest, 64)];
+                    System.arraycopy(buf, used, c.carry, 0, rest);
+                }
+                else if (c.carry != null && c.carry.length > BUFFER_SIZE) {
+                    c.carry = null;
+                }
+                c.carryLength = rest;
+                if (eof) {
+                    key.cancel();
+                    finish(c, null);
+                }
+            }
+            catch (IOException | RuntimeException e) {
+                key.cancel();
+                finish(c, e);
+            }
+            finally {
+                // 长标记或长行让缓冲区变大了，用完就还原，不让一个连接长期占用
+                if (buf.length > BUFFER_SIZE) buf = new byte[BUFFER_SIZE];
+            }
+        }
+
+        private IOException tooLong() {
+            return new IOException("标记或行超过最大长度" + maxLength + "字节");
+        }
+
+        // 交出buf[0, lim)中完整的标记，返回用掉的字节数
+        private int tokens(Connection c, int lim, boolean eof) throws IOException {
+            int pos = 0;
+            for (;;) {
+                pos = ByteScanner.skipWhitespace(buf, pos, lim);
+                if (pos == lim) return pos;
+                int end = ByteScanner.tokenEnd(buf, pos, lim);
+                if (end == lim && !eof) return pos;
+                if (end - pos > maxLength) throw tooLong();
+                c.handler.accept(c.channel, new String(buf, pos, end - pos, StandardCharsets.UTF_8));
+                pos = end;
+            }
+        }
+
+        // 交出buf[0, lim)中完整的行，返回用掉的字节数
+        private int lines(Connection c, int lim, boolean eof) throws IOException {
+            int pos = 0;
+            if (c.afterCR && pos < lim) {
+                if (buf[pos] == '\n') pos++;
+                c.afterCR = false;
+            }
+            for (;;) {
+                int end = ByteScanner.lineEnd(buf, pos, lim);
+                if (end == lim && !eof) return pos;
+                if (end - pos > maxLength) throw tooLong();
+                if (end == lim) {
+                    if (end > pos) {
+                        c.handler.accept(c.channel, new String(buf, pos, end - pos, StandardCharsets.UTF_8));
+                        return lim;
+                    }
+                    return pos;
+                }
+                c.handler.accept(c.channel, new String(buf, pos, end - pos, StandardCharsets.UTF_8));
+                pos = end + 1;
+                if (buf[end] == '\r') {
+                    if (pos < lim) {
+                        if (buf[pos] == '\n') pos++;
+                    }
+                    else {
+                        c.afterCR = true;
+                    }
+                }
+            }
+        }
+
+        // 回调抛出的异常不能传出去，否则这个线程会退出，它负责的连接再也没有人读
+        private void finish(Connection c, Exception error) {
+            close(c.channel);
+            connections.decrementAndGet();
+            c.carry = null;
+            try {
+                c.handler.closed(c.channel, error);
+            }
+            catch (RuntimeException e) {
+                // 忽略
+            }
+        }
+
+        void close(SocketChannel channel) {
+            try {
+                channel.close();
+            }
+            catch (IOException ioe) {}
+        }
+    }
+
+   /**
+     * 用本机回环地址上的连接进行测试
+     * @param args 命令行参数：连接数，每个连接发送的行数
+     */
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int lines   = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        AtomicLong received = new AtomicLong();
+        AtomicLong sum = new AtomicLong();
+        CountDownLatch done = new CountDownLatch(clients);
+        Handler handler = new Handler() {
+            @Override
+            public void accept(SocketChannel channel, String item) {
+                received.incrementAndGet();
+                sum.addAndGet(Integer.parseInt(item.substring(item.indexOf(' ') + 1)));
+            }
+
+            @Override
+            public void closed(SocketChannel channel, Exception error) {
+                if (error != null) error.printStackTrace();
+                done.countDown();
+            }
+        };
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        try (ServerSocketChannel server = ServerSocketChannel.open();
+             SocketMultiplexer mux = new SocketMultiplexer(2)) {
+            server.bind(new InetSocketAddress(loopback, 0), clients);
+            Thread acceptor = new Thread(() -> {
+                try {
+                    for (int i = 0; i < clients; i++) mux.register(server.accept(), Mode.LINES, handler);
+                }
+                catch (IOException e) {
+                    e.printStackTrace();
+                }
+            });
+            acceptor.start();
+            long start = System.nanoTime();
+            Socket[] sockets = new Socket[clients];
+            for (int i = 0; i < clients; i++) sockets[i] = new Socket(loopback, server.socket().getLocalPort());
+            for (int j = 0; j < lines; j++) {
+                for (int i = 0; i < clients; i++) {
+                    String line = "c" + i + " " + j + (j % 2 == 0 ? "\n" : "\r\n");
+                    sockets[i].getOutputStream().write(line.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            for (Socket s : sockets) s.close();
+            boolean finished = done.await(60, TimeUnit.SECONDS);
+            long expected = (long) clients * lines * (lines - 1) / 2;
+            System.out.printf("连接数：%d，收到%d行（应为%d），总和%d（应为%d），%s，用时%dms%n",
+                clients, received.get(), (long) clients * lines, sum.get(), expected,
+                finished ? "全部关闭" : "超时", (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package com.fengjie.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *  每个连接一个线程的套接字服务器，连接包装成In和Out交给Handler
+ *
+ *  运行在支持虚拟线程的JDK（21及以上）上时，每个连接用一个虚拟线程，否则用普通的守护线程。
+ *  读写路径上没有synchronized：In使用字节引擎直接读取套接字，Out用ReentrantLock，
+ *  所以阻塞在读写上的虚拟线程不会占住载体线程。
+ *
+ *  每个连接的In和Out各有一个8KB的缓冲区（标记太长时In会扩大），
+ *  Out只在缓冲区满、调用flush()和Handler返回时写出，不会每行都刷新；
+ *  一问一答的协议在写完回答后要调用out.flush()。
+ *
+ *  @author fengjie2018@qq.com
+ *  @version 1.0 2018年2月16日
+ */
+public final class SocketServer implements Closeable {
+
+    /**
+     * 处理一个连接
+     */
+    public interface Handler {
+        /**
+         * 处理一个连接，返回后Out被刷新，连接被关闭
+         * @param in  从连接读取
+         * @param out 写到连接
+         * @throws Exception 处理中的异常，只计入failures()
+         */
+        void handle(In in, Out out) throws Exception;
+    }
+
+    // 每个连接的读、写缓冲区大小：8KB
+    private static final int CONNECTION_BUFFER = 1 << 13;
+
+    // 默认的等待队列长度
+    private static final int DEFAULT_BACKLOG = 1024;
+
+    private final ServerSocket server;
+    private final Handler handler;
+    private final ExecutorService executor;
+    private final boolean virtual;
+    private final Thread acceptor;
+
+    // 正在处理的连接
+    private final Set<Socket> sockets = ConcurrentHashMap.newKeySet();
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    private volatile boolean closed;
+
+    /**
+     * 在所有地址的port端口上监听，并开始接受连接
+     * @param port    端口，为0时由系统选择，见port()
+     * @param handler 处理每个连接
+     * @throws IllegalArgumentException 如果handler为null
+     * @throws UncheckedIOException 如果不能监听
+     */
+    public SocketServer(int port, Handler handler) {
+        this(new InetSocketAddress(port), DEFAULT_BACKLOG, handler);
+    }
+
+    /**
+     * 在指定的地址上监听，并开始接受连接
+     * @param address 地址
+     * @param backlog 等待接受的连接的最大个数
+     * @param handler 处理每个连接
+     * @throws IllegalArgumentException 如果address或handler为null
+     * @throws UncheckedIOException 如果不能监听
+     */
+    public SocketServer(InetSocketAddress address, int backlog, Handler handler) {
+        if (address == null) throw new IllegalArgumentException("地址为null");
+        if (handler == null) throw new IllegalArgumentException("handler为null");
+        try {
+            this.server = new ServerSocket();
+            server.setReuseAddress(true);
+            server.bind(address, backlog);
+        }
+        catch (IOException ioe) {
+            throw new UncheckedIOException("无法监听" + address, ioe);
+        }
+        this.handler = handler;
+        ExecutorService virtualExecutor = virtualExecutor();
+        this.virtual  = virtualExecutor != null;
+        this.executor = virtual ? virtualExecutor : Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "SocketServer-connection");
+            t.setDaemon(true);
+            return t;
+        });
+        this.acceptor = new Thread(this::accept, "SocketServer-acceptor");
+        this.acceptor.setDaemon(true);
+        this.acceptor.start();
+    }
+
+    // JDK 21的Executors.newVirtualThreadPerTaskExecutor()，没有时返回null
+    private static ExecutorService virtualExecutor() {
+        try {
+            Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) m.invoke(null);
+        }
+        catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private void accept() {
+        while (!closed) {
+            Socket socket;
+            try {
+                socket = server.accept();
+            }
+            catch (IOException ioe) {
+                if (closed) return;
+                failures.incrementAndGet();
+                continue;
+            }
+            accepted.incrementAndGet();
+            sockets.add(socket);
+            try {
+                executor.execute(() -> serve(socket));
+            }
+            catch (RejectedExecutionException e) {
+                close(socket);
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try {
+            socket.setTcpNoDelay(true);
+            InputStream is  = socket.getInputStream();
+            OutputStream os = socket.getOutputStream();
+            In in   = new In(is, CONNECTION_BUFFER);
+            Out out = new Out(os, Out.FlushPolicy.explicit(), CONNECTION_BUFFER);
+            try {
+                handler.handle(in, out);
+            }
+            finally {
+                out.flush();
+            }
+        }
+        catch (Exception e) {
+            if (!closed) failures.incrementAndGet();
+        }
+        finally {
+            close(socket);
+        }
+    }
+
+    private void close(Socket socket) {
+        sockets.remove(socket);
+        try {
+            socket.close();
+        }
+        catch (IOException ioe) {}
+    }
+
+    /**
+     * 实际监听的端口
+     * @return int
+     */
+    public int port() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * 是否每个连接用一个虚拟线程
+     * @return boolean
+     */
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * 正在处理的连接数
+     * @return int
+     */
+    public int connections() {
+        return sockets.size();
+    }
+
+    /**
+     * 已经接受的连接总数
+     * @return long
+     */
+    public long accepted() {
+        return accepted.get();
+    }
+
+    /**
+     * 接受连接失败和Handler抛出异常的次数
+     * @return long
+     */
+    public long failures() {
+        return failures.get();
+    }
+
+    /**
+     * 停止接受连接，关闭所有正在处理的连接
+     */
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        try {
+            server.close();
+        }
+        catch (IOException ioe) {}
+        for (Socket s : sockets) close(s);
+        executor.shutdown();
+    }
+
+   /**
+     * 用本机回环地址上的连接进行测试：每个客户端发送一些整数，服务器返回它们的和
+     * @param args 命令行参数：连接数，每个连接发送的整数个数
+     */
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int count   = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        try (SocketServer server = new SocketServer(new InetSocketAddress(loopback, 0), clients, (in, out) -> {
+            long sum = 0;
+            while (!in.isEmpty()) sum += in.readInt();
+            out.println(sum);
+        })) {
+            long start = System.nanoTime();
+            Socket[] sockets = new Socket[clients];
+            for (int i = 0; i < clients; i++) sockets[i] = new Socket(loopback, server.port());
+            for (int i = 0; i < clients; i++) {
+                StringBuilder sb = new StringBuilder();
+                for (int j = 0; j < count; j++) sb.append(i + j).append('\n');
+                OutputStream os = sockets[i].getOutputStream();
+                os.write(sb.toString().getBytes("UTF-8"));
+                sockets[i].shutdownOutput();
+            }
+            int correct = 0;
+            for (int i = 0; i < clients; i++) {
+                long expected = (long) i * count + (long) count * (count - 1) / 2;
+                In in = new In(sockets[i], In.Engine.BYTES);
+                try {
+                    if (in.readLong() == expected) correct++;
+                }
+                catch (RuntimeException e) {
+                    // 计为错误
+                }
+                in.close();
+            }
+            System.out.printf("%s线程，连接数：%d，正确%d，失败%d，用时%dms%n",
+                server.isVirtual() ? "虚拟" : "平台", clients, correct, server.failures(),
+                (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+}
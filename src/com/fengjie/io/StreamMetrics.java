@@ -0,0 +1,205 @@
+package com.fengjie.io;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ *  一个In或Out的读写统计，由In.metrics()和Out.metrics()返回
+ *
+ *  计数器就是普通的long字段，由读写这个流的线程顺便累加，没有同步，
+ *  所以几乎没有开销；其他线程（包括JMX）读到的可能是稍早的值。
+ *  In统计读取的字节数、从来源读取的次数、标记数、行数和解析失败的次数；
+ *  Out统计写出的字节数、行数、刷新次数和刷新的耗时。
+ *
+ *  register()把它注册为JMX的MBean，名字是com.fengjie.io:type=In或Out,name=给定的名字。
+ *  耗时超过10ms的读取和刷新还会作为JFR事件com.fengjie.io.Refill和com.fengjie.io.Flush记录，
+ *  没有在录制时，这些事件不产生开销。
+ *
+ *  @author fengjie2018@qq.com
+ *  @version 1.0 2018年2月16日
+ */
+public final class StreamMetrics implements StreamMetricsMXBean {
+
+    // 由读写流的线程累加
+    long bytes;
+    long tokens;
+    long lines;
+    long refills;
+    long flushes;
+    long flushNanos;
+    long failures;
+
+    // In或Out
+    private final String type;
+
+    // 注册的MBean名字
+    private volatile ObjectName registered;
+
+    StreamMetrics(String type) {
+        this.type = type;
+    }
+
+    @Override
+    public long getBytes() {
+        return bytes;
+    }
+
+    @Override
+    public long getTokens() {
+        return tokens;
+    }
+
+    @Override
+    public long getLines() {
+        return lines;
+    }
+
+    @Override
+    public long getRefills() {
+        return refills;
+    }
+
+    @Override
+    public long getFlushes() {
+        return flushes;
+    }
+
+    @Override
+    public long getFlushNanos() {
+        return flushNanos;
+    }
+
+    @Override
+    public long getFailures() {
+        return failures;
+    }
+
+    /**
+     * 注册为平台MBeanServer中的MBean，已经注册过时先注销原来的名字
+     * @param name 名字，同一类型中不能重复
+     * @throws IllegalArgumentException 如果名字不合法或者已经被使用
+     */
+    public void register(String name) {
+        if (name == null) throw new IllegalArgumentException("名字为null");
+        unregister();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName objectName = new ObjectName("com.fengjie.io:type=" + type + ",name=" + ObjectName.quote(name));
+            server.registerMBean(this, objectName);
+            registered = objectName;
+        }
+        catch (JMException e) {
+            throw new IllegalArgumentException("无法注册MBean：" + name, e);
+        }
+    }
+
+    /**
+     * 注销register()注册的MBean，In和Out关闭时会自动注销
+     */
+    public void unregister() {
+        ObjectName objectName = registered;
+        if (objectName == null) return;
+        registered = null;
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        }
+        catch (JMException e) {
+            // 已经被别人注销了
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[bytes=%d, tokens=%d, lines=%d, refills=%d, flushes=%d, flushMillis=%d, failures=%d]",
+            type, bytes, tokens, lines, refills, flushes, TimeUnit.NANOSECONDS.toMillis(flushNanos), failures);
+    }
+
+    /**
+     * 从来源读取一次，超过阈值的记录为JFR事件
+     */
+    @Name("com.fengjie.io.Refill")
+    @Label("In Refill")
+    @Category({ "fengjie", "I/O" })
+    @Description("In从来源读取数据，耗时超过阈值")
+    @Threshold("10 ms")
+    @StackTrace(false)
+    static final class RefillEvent extends Event {
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+    }
+
+    /**
+     * Out写出并刷新一次，超过阈值的记录为JFR事件
+     */
+    @Name("com.fengjie.io.Flush")
+    @Label("Out Flush")
+    @Category({ "fengjie", "I/O" })
+    @Description("Out把缓冲区写到目的地并刷新，耗时超过阈值")
+    @Threshold("10 ms")
+    @StackTrace(false)
+    static final class FlushEvent extends Event {
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+    }
+
+    // 两种事件的类型，没有在录制它们时isEnabled()为false，这时不创建事件对象
+    static final EventType REFILL_TYPE = EventType.getEventType(RefillEvent.class);
+    static final EventType FLUSH_TYPE  = EventType.getEventType(FlushEvent.class);
+
+    /**
+     * 从in读取到b[off, off + len)，统计字节数和读取次数
+     */
+    int read(InputStream in, byte[] b, int off, int len) throws IOException {
+        RefillEvent event = REFILL_TYPE.isEnabled() ? new RefillEvent() : null;
+        if (event != null) event.begin();
+        int n = in.read(b, off, len);
+        refills++;
+        if (n > 0) bytes += n;
+        if (event != null) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.bytes = n;
+                event.commit();
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Scanner引擎读取的输入流，通过它统计字节数和读取次数
+     */
+    InputStream counting(InputStream in) {
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0) bytes++;
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return StreamMetrics.this.read(in, b, off, len);
+            }
+        };
+    }
+}
@@ -0,0 +1,31 @@
+package com.fengjie.io;
+
+/**
+ *  StreamMetrics在JMX中的接口，见StreamMetrics.register()
+ *
+ *  @author fengjie2018@qq.com
+ *  @version 1.0 2018年2月16日
+ */
+public interface StreamMetricsMXBean {
+
+    /** 读取或写出的字节数 */
+    long getBytes();
+
+    /** 读取或写出的标记数 */
+    long getTokens();
+
+    /** 读取或写出的行数 */
+    long getLines();
+
+    /** 从来源读取的次数 */
+    long getRefills();
+
+    /** 刷新的次数 */
+    long getFlushes();
+
+    /** 刷新的总耗时，纳秒 */
+    long getFlushNanos();
+
+    /** 解析失败的次数 */
+    long getFailures();
+}
@@ -0,0 +1,62 @@
+package com.fengjie.io;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ *  把标记映射为从0开始的连续编号，见In.readSymbol()
+ *
+ *  和TokenPool不同，符号表没有容量上限，也不淘汰：同一个标记总是得到同一个编号，
+ *  所以编号可以直接当作数组下标使用（如图的顶点）。每个不同的标记只创建一个String，
+ *  字节引擎读取重复的标记时不创建任何对象。
+ *
+ *  这个类不是线程安全的
+ *
+ *  @author fengjie2018@qq.com
+ *  @version 1.0 2018年2月16日
+ */
+public final class SymbolTable {
+
+    private final ByteDictionary dictionary = new ByteDictionary();
+
+    /**
+     * 不同标记的个数，也就是下一个新标记的编号
+     * @return int
+     */
+    public int size() {
+        return dictionary.size();
+    }
+
+    /**
+     * 编号为id的标记
+     * @param id 编号
+     * @return String
+     * @throws IndexOutOfBoundsException 如果id不在[0, size())中
+     */
+    public String name(int id) {
+        if (id < 0 || id >= dictionary.size())
+            throw new IndexOutOfBoundsException("没有编号为" + id + "的标记，共" + dictionary.size() + "个");
+        return dictionary.get(id);
+    }
+
+    /**
+     * 标记的编号，第一次见到时加入符号表
+     * @param token 标记
+     * @return int
+     */
+    public int id(String token) {
+        byte[] b = token.getBytes(StandardCharsets.UTF_8);
+        return dictionary.add(b, 0, b.length);
+    }
+
+    /**
+     * 按编号排列的所有标记
+     * @return String[]
+     */
+    public String[] names() {
+        return dictionary.strings();
+    }
+
+    ByteDictionary dictionary() {
+        return dictionary;
+    }
+}
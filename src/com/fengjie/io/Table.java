@@ -0,0 +1,305 @@
+package com.fengjie.io;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.InputMismatchException;
+import java.util.List;
+import java.util.Scanner;
+
+/**
+ *  按列存放的表格，由In.readTable()读取
+ *
+ *  每一列是一个基本类型数组：INT列是int[]，LONG列是long[]，DOUBLE列是double[]；
+ *  STRING列去重后放进字典，列中存放的是每个值在字典中的编号，重复的值只有一个String。
+ *  各个访问方法直接返回内部的数组，不要修改它们。
+ *
+ *  @author fengjie2018@qq.com
+ *  @version 1.0 2018年2月16日
+ */
+public final class Table {
+
+    /**
+     * 列的类型
+     */
+    public enum Type {
+        INT, LONG, DOUBLE, STRING
+    }
+
+    // 估计行数之前先读的行数
+    private static final int SAMPLE_ROWS = 64;
+
+    private final Type[] types;
+
+    // 各列的数组，STRING列是int[]，存放字典编号
+    private final Object[] columns;
+
+    // STRING列的字典，其他列为null
+    private final String[][] dictionaries;
+
+    private final int rows;
+
+    private Table(Type[] types, Object[] columns, String[][] dictionaries, int rows) {
+        this.types        = types;
+        this.columns      = columns;
+        this.dictionaries = dictionaries;
+        this.rows         = rows;
+    }
+
+    /**
+     * 行数
+     * @return int
+     */
+    public int rows() {
+        return rows;
+    }
+
+    /**
+     * 列数
+     * @return int
+     */
+    public int columns() {
+        return types.length;
+    }
+
+    /**
+     * 第c列的类型
+     * @param c 列号，从0开始
+     * @return Type
+     */
+    public Type type(int c) {
+        return types[c];
+    }
+
+    /**
+     * INT列
+     * @param c 列号
+     * @return int[]，长度为rows()
+     * @throws IllegalArgumentException 如果第c列不是INT列
+     */
+    public int[] ints(int c) {
+        return (int[]) column(c, Type.INT);
+    }
+
+    /**
+     * LONG列
+     * @param c 列号
+     * @return long[]，长度为rows()
+     * @throws IllegalArgumentException 如果第c列不是LONG列
+     */
+    public long[] longs(int c) {
+        return (long[]) column(c, Type.LONG);
+    }
+
+    /**
+     * DOUBLE列
+     * @param c 列号
+     * @return double[]，长度为rows()
+     * @throws IllegalArgumentException 如果第c列不是DOUBLE列
+     */
+    public double[] doubles(int c) {
+        return (double[]) column(c, Type.DOUBLE);
+    }
+
+    /**
+     * STRING列中每个值在字典中的编号
+     * @param c 列号
+     * @return int[]，长度为rows()
+     * @throws IllegalArgumentException 如果第c列不是STRING列
+     */
+    public int[] ids(int c) {
+        return (int[]) column(c, Type.STRING);
+    }
+
+    /**
+     * STRING列的字典，按第一次出现的顺序排列
+     * @param c 列号
+     * @return String[]
+     * @throws IllegalArgumentException 如果第c列不是STRING列
+     */
+    public String[] dictionary(int c) {
+        column(c, Type.STRING);
+        return dictionaries[c];
+    }
+
+    /**
+     * STRING列中第row行的值
+     * @param c   列号
+     * @param row 行号
+     * @return String
+     * @throws IllegalArgumentException 如果第c列不是STRING列
+     */
+    public String string(int c, int row) {
+        return dictionary(c)[ids(c)[row]];
+    }
+
+    private Object column(int c, Type type) {
+        if (types[c] != type) throw new IllegalArgumentException("第" + c + "列是" + types[c] + "，不是" + type);
+        return columns[c];
+    }
+
+    // 检查列的类型，并复制一份
+    static Type[] schema(Type[] types) {
+        if (types == null || types.length == 0) throw new IllegalArgumentException("至少要有一列");
+        for (Type t : types)
+            if (t == null) throw new IllegalArgumentException("列的类型为null");
+        return types.clone();
+    }
+
+    /**
+     * 从字节引擎读取剩余的所有标记，每types.length个标记是一行
+     * @param length 输入的总字节数，不知道时为-1，用来估计行数
+     * @throws InputMismatchException 如果标记不能解析为列的类型，或最后一行不完整
+     */
+    static Table read(ByteScanner bytes, Type[] types, long length) {
+        int k = types.length;
+        Columns cols = new Columns(types, SAMPLE_ROWS);
+        ByteDictionary[] dicts = new ByteDictionary[k];
+        for (int c = 0; c < k; c++)
+            if (types[c] == Type.STRING) dicts[c] = new ByteDictionary();
+        long start = bytes.position();
+        int n = 0;
+        while (bytes.hasNext()) {
+            if (n == cols.capacity) {
+                int capacity = n == SAMPLE_ROWS && length > 0
+                    ? estimate(n, bytes.position() - start, length - start) : grow(n);
+                cols.resize(capacity);
+            }
+            for (int c = 0; c < k; c++) {
+                if (c > 0 && !bytes.hasNext()) throw incomplete(n, c);
+                try {
+                    switch (types[c]) {
+                        case INT:    cols.ints[c][n]    = bytes.nextIntToken(); break;
+                        case LONG:   cols.longs[c][n]   = bytes.nextLongToken(); break;
+                        case DOUBLE: cols.doubles[c][n] = bytes.nextDoubleToken(); break;
+                        default:     cols.ints[c][n]    = bytes.nextTokenId(dicts[c]); break;
+                    }
+                }
+                catch (NumberFormatException e) {
+                    throw mismatch(n, c, types[c]);
+                }
+            }
+            n++;
+        }
+        String[][] dictionaries = new String[k][];
+        for (int c = 0; c < k; c++)
+            if (dicts[c] != null) dictionaries[c] = dicts[c].strings();
+        return cols.toTable(n, dictionaries);
+    }
+
+    /**
+     * 从Scanner读取剩余的所有标记，数字按Scanner的语系解析
+     * @throws InputMismatchException 如果标记不能解析为列的类型，或最后一行不完整
+     */
+    static Table read(Scanner scanner, Type[] types) {
+        int k = types.length;
+        Columns cols = new Columns(types, SAMPLE_ROWS);
+        List<HashMap<String, Integer>> maps = new ArrayList<>(k);
+        String[][] dictionaries = new String[k][];
+        int[] sizes = new int[k];
+        for (int c = 0; c < k; c++) {
+            maps.add(types[c] == Type.STRING ? new HashMap<>() : null);
+            if (types[c] != Type.STRING) continue;
+            dictionaries[c] = new String[16];
+        }
+        int n = 0;
+        while (scanner.hasNext()) {
+            if (n == cols.capacity) cols.resize(grow(n));
+            for (int c = 0; c < k; c++) {
+                if (c > 0 && !scanner.hasNext()) throw incomplete(n, c);
+                try {
+                    switch (types[c]) {
+                        case INT:    cols.ints[c][n]    = scanner.nextInt(); break;
+                        case LONG:   cols.longs[c][n]   = scanner.nextLong(); break;
+                        case DOUBLE: cols.doubles[c][n] = scanner.nextDouble(); break;
+                        default:
+                            String s = scanner.next();
+                            Integer id = maps.get(c).get(s);
+                            if (id == null) {
+                                id = sizes[c];
+                                maps.get(c).put(s, id);
+                                if (id == dictionaries[c].length)
+                                    dictionaries[c] = Arrays.copyOf(dictionaries[c], 2 * id);
+                                dictionaries[c][sizes[c]++] = s;
+                            }
+                            cols.ints[c][n] = id;
+                            break;
+                    }
+                }
+                catch (InputMismatchException e) {
+                    throw mismatch(n, c, types[c]);
+                }
+            }
+            n++;
+        }
+        for (int c = 0; c < k; c++)
+            if (dictionaries[c] != null) dictionaries[c] = Arrays.copyOf(dictionaries[c], sizes[c]);
+        return cols.toTable(n, dictionaries);
+    }
+
+    // 按已读部分每行的平均字节数估计总行数，多留一成余量
+    private static int estimate(int rows, long used, long total) {
+        if (used <= 0) return grow(rows);
+        double perRow = (double) used / rows;
+        long estimate = (long) (total / perRow * 1.1) + 16;
+        return (int) Math.max(rows + 1, Math.min(estimate, Integer.MAX_VALUE - 8));
+    }
+
+    private static int grow(int rows) {
+        return (int) Math.min((long) rows + (rows >> 1) + 16, Integer.MAX_VALUE - 8);
+    }
+
+    private static InputMismatchException incomplete(int row, int c) {
+        return new InputMismatchException("第" + row + "行不完整，只有" + c + "列！");
+    }
+
+    private static InputMismatchException mismatch(int row, int c, Type type) {
+        return new InputMismatchException("第" + row + "行第" + c + "列不能解析为" + type + "！");
+    }
+
+    /**
+     * 读取过程中的各列数组，容量不够时一起扩大
+     */
+    private static final class Columns {
+
+        private final Type[] types;
+        private final int[][]    ints;
+        private final long[][]   longs;
+        private final double[][] doubles;
+        private int capacity;
+
+        Columns(Type[] types, int capacity) {
+            int k = types.length;
+            this.types   = types;
+            this.ints    = new int[k][];
+            this.longs   = new long[k][];
+            this.doubles = new double[k][];
+            this.capacity = 0;
+            resize(capacity);
+        }
+
+        void resize(int capacity) {
+            for (int c = 0; c < types.length; c++) {
+                switch (types[c]) {
+                    case LONG:   longs[c]   = longs[c] == null ? new long[capacity] : Arrays.copyOf(longs[c], capacity); break;
+                    case DOUBLE: doubles[c] = doubles[c] == null ? new double[capacity] : Arrays.copyOf(doubles[c], capacity); break;
+                    default:     ints[c]    = ints[c] == null ? new int[capacity] : Arrays.copyOf(ints[c], capacity); break;
+                }
+            }
+            this.capacity = capacity;
+        }
+
+        Table toTable(int rows, String[][] dictionaries) {
+            if (rows != capacity) resize(rows);
+            Object[] columns = new Object[types.length];
+            for (int c = 0; c < types.length; c++) {
+                switch (types[c]) {
+                    case LONG:   columns[c] = longs[c]; break;
+                    case DOUBLE: columns[c] = doubles[c]; break;
+                    default:     columns[c] = ints[c]; break;
+                }
+            }
+            return new Table(types, columns, dictionaries, rows);
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.fengjie.io;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ *  有容量上限的标记池，让重复的标记共用同一个String，见In.setTokenPool()
+ *
+ *  直接对缓冲区中的字节求哈希、比较，命中时返回池中的String，不创建任何对象；
+ *  未命中时才解码出String放进池中。池按4路组相联组织，每组满了之后用时钟算法
+ *  淘汰最近没有命中的标记，所以词汇量很大时内存也不会超过上限，只是命中率降低。
+ *  超过maxLength个字节的标记不放进池中。
+ *
+ *  这个类不是线程安全的，一个池只能由一个线程使用
+ *
+ *  @author fengjie2018@qq.com
+ *  @version 1.0 2018年2月16日
+ */
+public final class TokenPool {
+
+    // 默认容量和能放进池中的最长标记
+    private static final int DEFAULT_CAPACITY   = 4096;
+    private static final int DEFAULT_MAX_LENGTH = 64;
+
+    // 每组的标记数
+    private static final int WAYS = 4;
+
+    private final int mask;
+    private final int maxLength;
+
+    // 各个位置的哈希值、字节、字节数和String，values[i]为null表示空位
+    private final int[]    hashes;
+    private final byte[][] keys;
+    private final int[]    lengths;
+    private final String[] values;
+
+    // 时钟算法的访问位，和每组的指针
+    private final boolean[] referenced;
+    private final byte[]    hands;
+
+    private int size;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * 容量为4096，最长64个字节
+     */
+    public TokenPool() {
+        this(DEFAULT_CAPACITY, DEFAULT_MAX_LENGTH);
+    }
+
+    /**
+     * 最长64个字节
+     * @param capacity 最多容纳的标记数，会向上取为2的幂
+     */
+    public TokenPool(int capacity) {
+        this(capacity, DEFAULT_MAX_LENGTH);
+    }
+
+    /**
+     * @param capacity  最多容纳的标记数，会向上取为2的幂
+     * @param maxLength 能放进池中的最长标记的字节数
+     * @throws IllegalArgumentException 如果capacity或maxLength不是正数
+     */
+    public TokenPool(int capacity, int maxLength) {
+        if (capacity <= 0)  throw new IllegalArgumentException("容量必须是正数：" + capacity);
+        if (maxLength <= 0) throw new IllegalArgumentException("最大长度必须是正数：" + maxLength);
+        if (capacity > 1 << 30) capacity = 1 << 30;
+        int sets = Math.max(1, Integer.highestOneBit(Math.max(WAYS, capacity) * 2 - 1) / WAYS);
+        int n = sets * WAYS;
+        this.mask       = sets - 1;
+        this.maxLength  = maxLength;
+        this.hashes     = new int[n];
+        this.keys       = new byte[n][];
+        this.lengths    = new int[n];
+        this.values     = new String[n];
+        this.referenced = new boolean[n];
+        this.hands      = new byte[sets];
+    }
+
+    /**
+     * 返回和s内容相同的池中String，池中没有时放进s
+     * @param s 标记
+     * @return String
+     */
+    public String intern(String s) {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        if (b.length > maxLength) return s;
+        return intern(b, 0, b.length, s);
+    }
+
+    /**
+     * 返回内容为b[from, to)（UTF-8）的String，重复的标记返回同一个对象
+     */
+    String intern(byte[] b, int from, int to) {
+        if (to - from > maxLength) return new String(b, from, to - from, StandardCharsets.UTF_8);
+        return intern(b, from, to, null);
+    }
+
+    private String intern(byte[] b, int from, int to, String s) {
+        int h = ByteDictionary.hash(b, from, to);
+        int base = (h & mask) * WAYS;
+        int len = to - from;
+        for (int i = base; i < base + WAYS; i++) {
+            String v = values[i];
+            if (v != null && hashes[i] == h && lengths[i] == len
+                    && Arrays.equals(keys[i], 0, len, b, from, to)) {
+                referenced[i] = true;
+                hits++;
+                return v;
+            }
+        }
+        misses++;
+        if (s == null) s = new String(b, from, len, StandardCharsets.UTF_8);
+        int i = victim(base, h & mask);
+        if (values[i] == null) size++;
+        else evictions++;
+        byte[] key = keys[i];
+        if (key == null || key.length < len) key = keys[i] = new byte[Math.max(len, 16)];
+        System.arraycopy(b, from, key, 0, len);
+        hashes[i]     = h;
+        lengths[i]    = len;
+        values[i]     = s;
+        referenced[i] = false;
+        return s;
+    }
+
+    // 选出要替换的位置：优先用空位，否则转动时钟指针，跳过并清除访问位为true的位置
+    private int victim(int base, int set) {
+        for (int i = base; i < base + WAYS; i++)
+            if (values[i] == null) return i;
+        int hand = hands[set];
+        while (referenced[base + hand]) {
+            referenced[base + hand] = false;
+            hand = (hand + 1) & (WAYS - 1);
+        }
+        hands[set] = (byte) ((hand + 1) & (WAYS - 1));
+        return base + hand;
+    }
+
+    /**
+     * 池中的标记数
+     * @return int
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 最多容纳的标记数
+     * @return int
+     */
+    public int capacity() {
+        return values.length;
+    }
+
+    /**
+     * 命中次数
+     * @return long
+     */
+    public long hits() {
+        return hits;
+    }
+
+    /**
+     * 未命中次数，不包括超过最大长度的标记
+     * @return long
+     */
+    public long misses() {
+        return misses;
+    }
+
+    /**
+     * 被淘汰的标记数
+     * @return long
+     */
+    public long evictions() {
+        return evictions;
+    }
+
+    /**
+     * 清空池，统计数也归零
+     */
+    public void clear() {
+        Arrays.fill(values, null);
+        Arrays.fill(referenced, false);
+        size = 0;
+        hits = misses = evictions = 0;
+    }
+}
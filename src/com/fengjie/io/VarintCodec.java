@@ -0,0 +1,193 @@
+package com.fengjie.io;
+
+import java.util.InputMismatchException;
+
+/**
+ *  压缩整数数组的编码和解码，供Out.writeEncoded()和ByteScanner使用
+ *
+ *  一个数组写成一帧：
+ *  <pre>
+ *  标记字节  0xF0 | (long ? 0x08 : 0) | ArrayEncoding的序号
+ *  个数      无符号varint
+ *  最小值    zigzag varint，只有FRAME_OF_REFERENCE才有
+ *  各个值    无符号varint，见ArrayEncoding
+ *  </pre>
+ *  标记字节不是ASCII，所以帧可以和文本混在一起，读取时先跳过空白。
+ *  int数组的每个值最多5个字节，long数组最多10个字节。
+ *
+ *  解码按BLOCK个值分块：缓冲区中剩下的字节足够时，先在不检查边界的循环里取出一块原始值，
+ *  再用单独的循环做zigzag还原、加最小值或求前缀和，这些简单的循环JIT可以向量化。
+ *
+ *  @author fengjie2018@qq.com
+ *  @version 1.0 2018年2月16日
+ */
+final class VarintCodec {
+
+    // 标记字节
+    private static final int TAG       = 0xF0;
+    private static final int TAG_MASK  = 0xF4;
+    static final int LONG_FLAG = 0x08;
+
+    // 一个varint最多占用的字节数
+    static final int MAX_INT_BYTES  = 5;
+    static final int MAX_LONG_BYTES = 10;
+
+    // 解码时每块的值的个数
+    static final int BLOCK = 128;
+
+    private static final ArrayEncoding[] ENCODINGS = ArrayEncoding.values();
+
+    // 不能创建实例
+    private VarintCodec() {}
+
+    /**
+     * 帧的标记字节
+     */
+    static byte tag(boolean isLong, ArrayEncoding encoding) {
+        return (byte) (TAG | (isLong ? LONG_FLAG : 0) | encoding.ordinal());
+    }
+
+    /**
+     * 从标记字节中取出压缩方式
+     * @throws InputMismatchException 如果b不是标记字节
+     */
+    static ArrayEncoding encoding(int b) {
+        if ((b & TAG_MASK) != TAG || (b & 3) >= ENCODINGS.length)
+            throw new InputMismatchException("读取的内容不是压缩的整数数组！");
+        return ENCODINGS[b & 3];
+    }
+
+    static int zigzag(int v) {
+        return (v << 1) ^ (v >> 31);
+    }
+
+    static long zigzag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    static int unzigzag(int v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    static long unzigzag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    /**
+     * 写入一个无符号varint，调用者要保证至少有MAX_LONG_BYTES个字节的空间
+     * @return 写完后的位置
+     */
+    static int putVarint(byte[] b, int pos, long v) {
+        while ((v & ~0x7FL) != 0) {
+            b[pos++] = (byte) (v | 0x80);
+            v >>>= 7;
+        }
+        b[pos++] = (byte) v;
+        return pos;
+    }
+
+    /**
+     * 从b[pos]开始取出len个varint存入a[off, off + len)，不检查是否到了有效数据的末尾
+     * 调用者要保证至少有len * MAX_INT_BYTES个字节
+     * @return 取完后的位置
+     * @throws InputMismatchException 如果有varint超过5个字节
+     */
+    static int getInts(byte[] b, int pos, int[] a, int off, int len) {
+        for (int i = off, end = off + len; i < end; i++) {
+            int x = b[pos++];
+            if (x < 0) {
+                x &= 0x7F;
+                int shift = 7;
+                int c;
+                do {
+                    if (shift > 28) throw new InputMismatchException("varint太长！");
+                    c = b[pos++];
+                    x |= (c & 0x7F) << shift;
+                    shift += 7;
+                } while (c < 0);
+            }
+            a[i] = x;
+        }
+        return pos;
+    }
+
+    /**
+     * 从b[pos]开始取出len个varint存入a[off, off + len)
+     * 调用者要保证至少有len * MAX_LONG_BYTES个字节
+     * @return 取完后的位置
+     * @throws InputMismatchException 如果有varint超过10个字节
+     */
+    static int getLongs(byte[] b, int pos, long[] a, int off, int len) {
+        for (int i = off, end = off + len; i < end; i++) {
+            long x = b[pos++];
+            if (x < 0) {
+                x &= 0x7F;
+                int shift = 7;
+                long c;
+                do {
+                    if (shift > 63) throw new InputMismatchException("varint太长！");
+                    c = b[pos++];
+                    x |= (c & 0x7F) << shift;
+                    shift += 7;
+                } while (c < 0);
+            }
+            a[i] = x;
+        }
+        return pos;
+    }
+
+    /**
+     * 把一块原始值还原为数组元素
+     * @param prev DELTA的前一个值，或FRAME_OF_REFERENCE的最小值
+     * @return DELTA时返回这一块的最后一个值，其他方式返回prev
+     */
+    static int decodeBlock(int[] a, int off, int len, ArrayEncoding encoding, int prev) {
+        int end = off + len;
+        switch (encoding) {
+            case ZIGZAG:
+                for (int i = off; i < end; i++) a[i] = (a[i] >>> 1) ^ -(a[i] & 1);
+                return prev;
+            case DELTA:
+                for (int i = off; i < end; i++) a[i] = (a[i] >>> 1) ^ -(a[i] & 1);
+                for (int i = off; i < end; i++) a[i] = prev += a[i];
+                return prev;
+            default:
+                for (int i = off; i < end; i++) a[i] += prev;
+                return prev;
+        }
+    }
+
+    /**
+     * 把一块原始值还原为数组元素，见decodeBlock(int[], ...)
+     */
+    static long decodeBlock(long[] a, int off, int len, ArrayEncoding encoding, long prev) {
+        int end = off + len;
+        switch (encoding) {
+            case ZIGZAG:
+                for (int i = off; i < end; i++) a[i] = (a[i] >>> 1) ^ -(a[i] & 1);
+                return prev;
+            case DELTA:
+                for (int i = off; i < end; i++) a[i] = (a[i] >>> 1) ^ -(a[i] & 1);
+                for (int i = off; i < end; i++) a[i] = prev += a[i];
+                return prev;
+            default:
+                for (int i = off; i < end; i++) a[i] += prev;
+                return prev;
+        }
+    }
+
+    // 最小值，空数组返回0
+    static int min(int[] a) {
+        if (a.length == 0) return 0;
+        int m = a[0];
+        for (int x : a) m = Math.min(m, x);
+        return m;
+    }
+
+    static long min(long[] a) {
+        if (a.length == 0) return 0;
+        long m = a[0];
+        for (long x : a) m = Math.min(m, x);
+        return m;
+    }
+}
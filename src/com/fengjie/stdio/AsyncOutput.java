@@ -0,0 +1,273 @@
+package com.fengjie.stdio;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ *  多生产者、单消费者的无锁环形字节缓冲区，以及把它写到目的地的后台线程，供Stdout的异步模式使用
+ *
+ *  每条记录占 8字节头部 + 内容，按8字节对齐。生产者用CAS移动tail来占位，
+ *  复制内容后以release语义写入头部的记录长度，这一步就是发布；
+ *  占位时剩下的空间放不下记录，就先占一条填充记录绕回开头。
+ *  写线程以acquire语义读头部，长度为0表示还没发布，就在那里停下；
+ *  写出的区间清零后再移动head，把空间还给生产者。
+ *  写线程把连续的记录拼成一大块一次写出，缓冲区空了才刷新目的地。
+ *
+ *  @author fengjie2018@qq.com
+ *  @version 1.0 2018年2月15日
+ */
+final class AsyncOutput {
+
+    // 按本机字节序读写int，带内存语义
+    private static final VarHandle INT = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+    // 头部：记录总长度（含头部和对齐），内容长度（填充记录为-1）
+    private static final int HEADER = 8;
+    private static final int PADDING = -1;
+
+    // 写线程空闲和生产者等待时每次休眠的时间
+    private static final long PARK_NANOS = 100_000L;
+
+    private final byte[] buffer;
+    private final int capacity;
+    private final int mask;
+
+    // 一条记录的最大内容长度，更长的内容拆成几条
+    private final int maxPayload;
+
+    // 生产者占位的位置
+    private final AtomicLong tail = new AtomicLong();
+
+    // 写线程读到的位置，之前的空间都已清零
+    private volatile long head;
+
+    // 已写出并刷新到的位置
+    private volatile long flushed;
+
+    // 写线程是否在休眠，生产者据此决定是否唤醒它
+    private volatile boolean sleeping;
+
+    // 有人在等待刷新
+    private volatile boolean flushRequested;
+
+    private volatile boolean closed;
+
+    // 因缓冲区满而丢弃的记录数
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final Stdout.FullPolicy policy;
+    private final OutputStream sink;
+    private final Thread writer;
+
+    /**
+     * @param sink 目的地
+     * @param size 缓冲区大小，向上取整为2的幂，至少4KB
+     * @param policy 缓冲区满时的策略
+     */
+    AsyncOutput(OutputStream sink, int size, Stdout.FullPolicy policy) {
+        int capacity = Integer.highestOneBit(Math.max(size, 1 << 12) - 1) << 1;
+        this.buffer     = new byte[capacity];
+        this.capacity   = capacity;
+        this.mask       = capacity - 1;
+        this.maxPayload = capacity / 8 - HEADER;
+        this.sink       = sink;
+        this.policy     = policy;
+        this.writer = new Thread(this::run, "Stdout-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+        // JVM退出前把缓冲区写完
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flush, "Stdout-flush"));
+    }
+
+    /**
+     * 生产者使用的输出流，每次write()放入一条或几条记录，flush()什么都不做
+     */
+    OutputStream stream() {
+        return new OutputStream() {
+            @Override
+            public void write(int b) {
+                offer(new byte[] { (byte) b }, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                offer(b, off, len);
+            }
+        };
+    }
+
+    /**
+     * 放入b[off, off + len)，超过最大长度时拆成几条记录，这时可能和其他线程的输出交错
+     */
+    void offer(byte[] b, int off, int len) {
+        while (len > maxPayload) {
+            offerRecord(b, off, maxPayload);
+            off += maxPayload;
+            len -= maxPayload;
+        }
+        if (len > 0) offerRecord(b, off, len);
+    }
+
+    private void offerRecord(byte[] b, int off, int len) {
+        if (closed) return;
+        int required = (HEADER + len + 7) & ~7;
+        int index;
+        while ((index = claim(required)) < 0) {
+            switch (policy) {
+                case DROP:
+                    dropped.incrementAndGet();
+                    return;
+                case SPIN:
+                    Thread.onSpinWait();
+                    break;
+                default:
+                    LockSupport.unpark(writer);
+                    LockSupport.parkNanos(PARK_NANOS);
+                    break;
+            }
+        }
+        System.arraycopy(b, off, buffer, index + HEADER, len);
+        INT.set(buffer, index + 4, len);
+        INT.setRelease(buffer, index, required);
+        if (sleeping) LockSupport.unpark(writer);
+    }
+
+    // 占用required字节，返回记录的起点；空间不够时返回-1
+    private int claim(int required) {
+        long head = this.head;
+        for (;;) {
+            long tail = this.tail.get();
+            if (required > capacity - (int) (tail - head)) {
+                // 缓存的head可能过时了，再读一次
+                long latest = this.head;
+                if (latest == head) return -1;
+                head = latest;
+                continue;
+            }
+            int tailIndex = (int) tail & mask;
+            int toEnd = capacity - tailIndex;
+            int padding = 0;
+            if (required > toEnd) {
+                // 要绕回开头，开头必须已经空出来
+                if (required > ((int) head & mask)) {
+                    long latest = this.head;
+                    if (latest == head) return -1;
+                    head = latest;
+                    continue;
+                }
+                padding = toEnd;
+            }
+            if (this.tail.compareAndSet(tail, tail + padding + required)) {
+                if (padding == 0) return tailIndex;
+                INT.set(buffer, tailIndex + 4, PADDING);
+                INT.setRelease(buffer, tailIndex, padding);
+                return 0;
+            }
+        }
+    }
+
+    // 写线程
+    private void run() {
+        byte[] batch = new byte[Math.max(1 << 16, maxPayload)];
+        for (;;) {
+            long head = this.head;
+            int headIndex = (int) head & mask;
+            int consumed = 0;
+            int n = 0;
+            // 一次只读到缓冲区末尾，绕回的部分下一轮再读
+            while (consumed < capacity - headIndex) {
+                int index = headIndex + consumed;
+                int length = (int) INT.getAcquire(buffer, index);
+                if (length == 0) break;
+                int payload = (int) INT.get(buffer, index + 4);
+                if (payload != PADDING) {
+                    if (n + payload > batch.length) {
+                        write(batch, n);
+                        n = 0;
+                    }
+                    System.arraycopy(buffer, index + HEADER, batch, n, payload);
+                    n += payload;
+                }
+                consumed += length;
+            }
+            if (consumed > 0) {
+                Arrays.fill(buffer, headIndex, headIndex + consumed, (byte) 0);
+                this.head = head + consumed;
+                write(batch, n);
+                if (!flushRequested) continue;
+            }
+            // 缓冲区读空了，或者有人在等待
+            try {
+                sink.flush();
+            }
+            catch (IOException e) {
+                // 和PrintWriter一样忽略
+            }
+            flushed = this.head;
+            if (consumed > 0) continue;
+            if (closed && tail.get() == this.head) return;
+            sleeping = true;
+            if ((int) INT.getAcquire(buffer, (int) this.head & mask) == 0 && !closed)
+                LockSupport.parkNanos(PARK_NANOS * 10);
+            sleeping = false;
+        }
+    }
+
+    private void write(byte[] batch, int n) {
+        if (n == 0) return;
+        try {
+            sink.write(batch, 0, n);
+        }
+        catch (IOException e) {
+            // 和PrintWriter一样忽略
+        }
+    }
+
+    /**
+     * 等待调用之前放入的记录都写出并刷新
+     */
+    void flush() {
+        long target = tail.get();
+        if (flushed >= target) return;
+        flushRequested = true;
+        while (flushed < target && writer.isAlive()) {
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+        flushRequested = false;
+    }
+
+    /**
+     * 写完缓冲区，停止写线程，关闭目的地
+     */
+    void close() {
+        flush();
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            sink.close();
+        }
+        catch (IOException e) {
+            // 和PrintWriter一样忽略
+        }
+    }
+
+    /**
+     * 因缓冲区满而丢弃的记录数
+     */
+    long dropped() {
+        return dropped.get();
+    }
+}
@@ -0,0 +1,240 @@
+package com.fengjie.stdio;
+
+import java.nio.ByteOrder;
+import java.util.NoSuchElementException;
+
+import com.fengjie.io.BinaryIn;
+
+/**
+ *  这个类提供了从标准输入流读取二进制数据的方法，读取方法见BinaryIn
+ *
+ *  可以按位读取，也可以读取打包的基本类型和基本类型数组，多字节的值默认按大端解释。
+ *  它有自己的缓冲区，不要和Stdin同时读取标准输入。
+ *
+ *  @author fengjie2018@qq.com
+ *  @version 1.0 2018年2月16日
+ */
+public final class BinaryStdin {
+
+    private static final BinaryIn in = new BinaryIn();
+
+    // 不能创建实例
+    private BinaryStdin() {}
+
+    /**
+     * 字节序
+     * @return ByteOrder
+     */
+    public static ByteOrder order() {
+        return in.order();
+    }
+
+    /**
+     * 设置之后读取多字节值时使用的字节序
+     * @param order 字节序
+     * @throws IllegalArgumentException 如果order为null
+     */
+    public static void order(ByteOrder order) {
+        in.order(order);
+    }
+
+    /**
+     * 如果标准输入中没有可以读取的位就返回true
+     * @return boolean
+     */
+    public static boolean isEmpty() {
+        return in.isEmpty();
+    }
+
+    /**
+     * 关闭标准输入
+     */
+    public static void close() {
+        in.close();
+    }
+
+    /**
+     * 读取一位
+     * @return 这一位为1时返回true
+     * @throws NoSuchElementException 如果标准输入为空
+     */
+    public static boolean readBoolean() {
+        return in.readBoolean();
+    }
+
+    /**
+     * 读取一个字节
+     * @return byte
+     * @throws NoSuchElementException 如果标准输入为空
+     */
+    public static byte readByte() {
+        return in.readByte();
+    }
+
+    /**
+     * 读取一个16位的char
+     * @return char
+     * @throws NoSuchElementException 如果标准输入为空
+     */
+    public static char readChar() {
+        return in.readChar();
+    }
+
+    /**
+     * 读取r位并解释为char
+     * @param r 位数，1 ~ 16
+     * @return char
+     * @throws IllegalArgumentException 如果r不在范围内
+     * @throws NoSuchElementException 如果标准输入为空
+     */
+    public static char readChar(int r) {
+        return in.readChar(r);
+    }
+
+    /**
+     * 读取一个short
+     * @return short
+     * @throws NoSuchElementException 如果标准输入为空
+     */
+    public static short readShort() {
+        return in.readShort();
+    }
+
+    /**
+     * 读取一个int
+     * @return int
+     * @throws NoSuchElementException 如果标准输入为空
+     */
+    public static int readInt() {
+        return in.readInt();
+    }
+
+    /**
+     * 读取r位并解释为无符号int
+     * @param r 位数，1 ~ 32
+     * @return int
+     * @throws IllegalArgumentException 如果r不在范围内
+     * @throws NoSuchElementException 如果标准输入为空
+     */
+    public static int readInt(int r) {
+        return in.readInt(r);
+    }
+
+    /**
+     * 读取一个long
+     * @return long
+     * @throws NoSuchElementException 如果标准输入为空
+     */
+    public static long readLong() {
+        return in.readLong();
+    }
+
+    /**
+     * 读取r位并解释为无符号long
+     * @param r 位数，1 ~ 64
+     * @return long
+     * @throws IllegalArgumentException 如果r不在范围内
+     * @throws NoSuchElementException 如果标准输入为空
+     */
+    public static long readLong(int r) {
+        return in.readLong(r);
+    }
+
+    /**
+     * 读取一个float
+     * @return float
+     * @throws NoSuchElementException 如果标准输入为空
+     */
+    public static float readFloat() {
+        return in.readFloat();
+    }
+
+    /**
+     * 读取一个double
+     * @return double
+     * @throws NoSuchElementException 如果标准输入为空
+     */
+    public static double readDouble() {
+        return in.readDouble();
+    }
+
+    /**
+     * 读取n位，每位一个boolean
+     * @param n 个数
+     * @return boolean[]
+     * @throws NoSuchElementException 如果标准输入中不够n位
+     */
+    public static boolean[] readBooleans(int n) {
+        return in.readBooleans(n);
+    }
+
+    /**
+     * 读取n个字节
+     * @param n 个数
+     * @return byte[]
+     * @throws NoSuchElementException 如果标准输入中不够n个字节
+     */
+    public static byte[] readBytes(int n) {
+        return in.readBytes(n);
+    }
+
+    /**
+     * 读取n个char
+     * @param n 个数
+     * @return char[]
+     * @throws NoSuchElementException 如果标准输入中不够n个char
+     */
+    public static char[] readChars(int n) {
+        return in.readChars(n);
+    }
+
+    /**
+     * 读取n个short
+     * @param n 个数
+     * @return short[]
+     * @throws NoSuchElementException 如果标准输入中不够n个short
+     */
+    public static short[] readShorts(int n) {
+        return in.readShorts(n);
+    }
+
+    /**
+     * 读取n个int
+     * @param n 个数
+     * @return int[]
+     * @throws NoSuchElementException 如果标准输入中不够n个int
+     */
+    public static int[] readInts(int n) {
+        return in.readInts(n);
+    }
+
+    /**
+     * 读取n个long
+     * @param n 个数
+     * @return long[]
+     * @throws NoSuchElementException 如果标准输入中不够n个long
+     */
+    public static long[] readLongs(int n) {
+        return in.readLongs(n);
+    }
+
+    /**
+     * 读取n个float
+     * @param n 个数
+     * @return float[]
+     * @throws NoSuchElementException 如果标准输入中不够n个float
+     */
+    public static float[] readFloats(int n) {
+        return in.readFloats(n);
+    }
+
+    /**
+     * 读取n个double
+     * @param n 个数
+     * @return double[]
+     * @throws NoSuchElementException 如果标准输入中不够n个double
+     */
+    public static double[] readDoubles(int n) {
+        return in.readDoubles(n);
+    }
+}
@@ -0,0 +1,216 @@
+package com.fengjie.stdio;
+
+import java.nio.ByteOrder;
+
+import com.fengjie.io.BinaryOut;
+
+/**
+ *  这个类提供了把二进制数据写入标准输出流的方法，写出方法见BinaryOut
+ *
+ *  可以按位写出，也可以写出打包的基本类型和基本类型数组，多字节的值默认按大端写出。
+ *  输出先放入缓冲区，flush()或close()时才写到标准输出，并用0补齐最后一个字节；
+ *  JVM退出时也会刷新。不要和Stdout同时写标准输出。
+ *
+ *  @author fengjie2018@qq.com
+ *  @version 1.0 2018年2月16日
+ */
+public final class BinaryStdout {
+
+    private static final BinaryOut out = new BinaryOut();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(out::flush, "BinaryStdout-flush"));
+    }
+
+    // 不能创建实例
+    private BinaryStdout() {}
+
+    /**
+     * 字节序
+     * @return ByteOrder
+     */
+    public static ByteOrder order() {
+        return out.order();
+    }
+
+    /**
+     * 设置之后写出多字节值时使用的字节序
+     * @param order 字节序
+     * @throws IllegalArgumentException 如果order为null
+     */
+    public static void order(ByteOrder order) {
+        out.order(order);
+    }
+
+    /**
+     * 用0补齐最后一个字节，把缓冲区的内容写到标准输出
+     */
+    public static void flush() {
+        out.flush();
+    }
+
+    /**
+     * 刷新并关闭标准输出
+     */
+    public static void close() {
+        out.close();
+    }
+
+    /**
+     * 写出一位，为true时写1
+     * @param x boolean
+     */
+    public static void write(boolean x) {
+        out.write(x);
+    }
+
+    /**
+     * 写出一个字节
+     * @param x byte
+     */
+    public static void write(byte x) {
+        out.write(x);
+    }
+
+    /**
+     * 写出一个16位的char
+     * @param x char
+     */
+    public static void write(char x) {
+        out.write(x);
+    }
+
+    /**
+     * 写出x的低r位
+     * @param x char
+     * @param r 位数，1 ~ 16
+     * @throws IllegalArgumentException 如果r不在范围内，或x不能用r位表示
+     */
+    public static void write(char x, int r) {
+        out.write(x, r);
+    }
+
+    /**
+     * 写出一个short
+     * @param x short
+     */
+    public static void write(short x) {
+        out.write(x);
+    }
+
+    /**
+     * 写出一个int
+     * @param x int
+     */
+    public static void write(int x) {
+        out.write(x);
+    }
+
+    /**
+     * 写出x的低r位
+     * @param x int
+     * @param r 位数，1 ~ 32
+     * @throws IllegalArgumentException 如果r不在范围内，或x不能用r位表示
+     */
+    public static void write(int x, int r) {
+        out.write(x, r);
+    }
+
+    /**
+     * 写出一个long
+     * @param x long
+     */
+    public static void write(long x) {
+        out.write(x);
+    }
+
+    /**
+     * 写出x的低r位
+     * @param x long
+     * @param r 位数，1 ~ 64
+     * @throws IllegalArgumentException 如果r不在范围内，或x不能用r位表示
+     */
+    public static void write(long x, int r) {
+        out.write(x, r);
+    }
+
+    /**
+     * 写出一个float
+     * @param x float
+     */
+    public static void write(float x) {
+        out.write(x);
+    }
+
+    /**
+     * 写出一个double
+     * @param x double
+     */
+    public static void write(double x) {
+        out.write(x);
+    }
+
+    /**
+     * 写出整个数组，每个boolean一位
+     * @param a boolean[]
+     */
+    public static void write(boolean[] a) {
+        out.write(a);
+    }
+
+    /**
+     * 写出整个数组
+     * @param a byte[]
+     */
+    public static void write(byte[] a) {
+        out.write(a);
+    }
+
+    /**
+     * 写出整个数组
+     * @param a char[]
+     */
+    public static void write(char[] a) {
+        out.write(a);
+    }
+
+    /**
+     * 写出整个数组
+     * @param a short[]
+     */
+    public static void write(short[] a) {
+        out.write(a);
+    }
+
+    /**
+     * 写出整个数组
+     * @param a int[]
+     */
+    public static void write(int[] a) {
+        out.write(a);
+    }
+
+    /**
+     * 写出整个数组
+     * @param a long[]
+     */
+    public static void write(long[] a) {
+        out.write(a);
+    }
+
+    /**
+     * 写出整个数组
+     * @param a float[]
+     */
+    public static void write(float[] a) {
+        out.write(a);
+    }
+
+    /**
+     * 写出整个数组
+     * @param a double[]
+     */
+    public static void write(double[] a) {
+        out.write(a);
+    }
+}
@@ -1,11 +1,25 @@
 package com.fengjie.stdio;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.InputMismatchException;
+import java.util.Iterator;
 import java.util.Locale;
 import java.util.NoSuchElementException;
 import java.util.Scanner;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.DoubleConsumer;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
 import java.util.regex.Pattern;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.fengjie.io.In;
 
 /**
  *  这个类提供了从标准输入流读取字符串和数字的方法
@@ -20,6 +34,11 @@ import java.util.regex.Pattern;
  *  这就是说，读取方法绝不返回一个null。
  *  最好每次读取前都检验是否还有东西可读取。
  *  
+ *  快速模式：按大块读取System.in，从自己的字节缓冲区解析，不经过Scanner。
+ *  用系统属性com.fengjie.stdio.Stdin.fast=true在启动时开启，默认不开启。
+ *  不能根据System.console()自动判断：只重定向标准输出时它也是null，行为会随输出的去向改变。
+ *  快速模式只把ASCII空白符视为分隔符，数字不接受千位分隔符。
+ *  
  *  编码：UTF-8
  *  语言：简体中文-中国
  *
@@ -38,15 +57,27 @@ public final class Stdin {
     //空白符
     private static final Pattern WHITESPACE_PATTERN = Pattern.compile("\\p{javaWhitespace}+");
 
-    // 空字符
-    private static final Pattern EMPTY_PATTERN = Pattern.compile("");
+    // 任意一个字符，增补字符算作一个
+    private static final Pattern ANY_CHAR_PATTERN = Pattern.compile(".", Pattern.DOTALL);
+
+    // 向前看一个字符而不消耗它
+    private static final Pattern PEEK_PATTERN = Pattern.compile("(?=(.))", Pattern.DOTALL);
 
     // 用来读取所有输入
     private static final Pattern EVERYTHING_PATTERN = Pattern.compile("\\A");
     /*这就是正则表达式，果然简洁灵活*/
     
+    // 选择快速模式的系统属性
+    private static final String FAST_PROPERTY = "com.fengjie.stdio.Stdin.fast";
+
     //scanner
     private static Scanner scanner;
+
+    // 快速模式下使用的字节引擎，此时scanner为null
+    private static In in;
+
+    // Scanner读取到增补字符时，暂存的低位代理
+    private static char pendingLow;
  
     // 不能创建实例
     private Stdin() {}
@@ -56,6 +87,7 @@ public final class Stdin {
      * @return boolean
      */
     public static boolean isEmpty() {
+        if (in != null) return in.isEmpty();
         return !scanner.hasNext();
     }
 
@@ -64,6 +96,7 @@ public final class Stdin {
      * @return boolean
      */
     public static boolean hasNextLine() {
+        if (in != null) return in.hasNextLine();
         return scanner.hasNextLine();
     }
 
@@ -72,10 +105,8 @@ public final class Stdin {
      * @return boolean
      */
     public static boolean hasNextChar() {
-        scanner.useDelimiter(EMPTY_PATTERN);
-        boolean result = scanner.hasNext();
-        scanner.useDelimiter(WHITESPACE_PATTERN);
-        return result;
+        if (in != null) return in.hasNextChar();
+        return pendingLow != 0 || scanner.findWithinHorizon(PEEK_PATTERN, 1) != null;
     }
 
 
@@ -85,6 +116,7 @@ public final class Stdin {
      * @throws NoSuchElementException 如果标准输入没有下一行，则抛出此异常
      */
     public static String readLine() {
+        if (in != null) return in.readLine();
     	if(!scanner.hasNextLine())
     		throw new NoSuchElementException("没有下一行！");
         String line;
@@ -93,17 +125,73 @@ public final class Stdin {
     }
 
     /**
-     * 读取下一个字符
+     * 读取下一个字符，增补字符分两次返回高位代理和低位代理
+     * 读到高位代理后应当接着读取低位代理，或者用readCodePoint()读取完整的码点
      * @return char
      * @throws NoSuchElementException 如果标准输入为空，则抛出此异常
      */
     public static char readChar() {
-    	if(!hasNextChar())throw new NoSuchElementException("标准输入流为空！");
-        scanner.useDelimiter(EMPTY_PATTERN);
-        String ch = scanner.next();
-        scanner.useDelimiter(WHITESPACE_PATTERN);
+        if (in != null) return in.readChar();
+        if (pendingLow != 0) {
+            char low = pendingLow;
+            pendingLow = 0;
+            return low;
+        }
+        // 不切换分隔符，直接匹配一个字符；视界为2才能匹配完整的代理对
+        String ch = scanner.findWithinHorizon(ANY_CHAR_PATTERN, 2);
+        if (ch == null) throw new NoSuchElementException("标准输入流为空！");
+        if (ch.length() == 2) pendingLow = ch.charAt(1);
         return ch.charAt(0);
-    }  
+    }
+
+    /**
+     * 返回下一个字符但不消耗它
+     * @return char
+     * @throws NoSuchElementException 如果标准输入为空，则抛出此异常
+     */
+    public static char peekChar() {
+        if (in != null) return in.peekChar();
+        if (pendingLow != 0) return pendingLow;
+        if (scanner.findWithinHorizon(PEEK_PATTERN, 1) == null)
+            throw new NoSuchElementException("标准输入流为空！");
+        return scanner.match().group(1).charAt(0);
+    }
+
+    /**
+     * 读取下一个完整的码点
+     * @return int
+     * @throws NoSuchElementException 如果标准输入为空，则抛出此异常
+     */
+    public static int readCodePoint() {
+        if (in != null) return in.readCodePoint();
+        if (pendingLow != 0) {
+            char low = pendingLow;
+            pendingLow = 0;
+            return low;
+        }
+        String ch = scanner.findWithinHorizon(ANY_CHAR_PATTERN, 2);
+        if (ch == null) throw new NoSuchElementException("标准输入流为空！");
+        return ch.codePointAt(0);
+    }
+
+    /**
+     * 把最多len个字符读入数组
+     * @param cbuf 目标数组
+     * @param off 开始存放的位置
+     * @param len 最多读取的字符数
+     * @return 读取的字符数，标准输入已经结束时返回-1
+     * @throws IndexOutOfBoundsException 如果off和len超出数组范围
+     */
+    public static int read(char[] cbuf, int off, int len) {
+        if (off < 0 || len < 0 || len > cbuf.length - off)
+            throw new IndexOutOfBoundsException("off=" + off + ", len=" + len);
+        if (in != null) return in.read(cbuf, off, len);
+        if (len == 0) return 0;
+        int n = 0;
+        while (n < len && hasNextChar())
+            cbuf[off + n++] = readChar();
+        return n == 0 ? -1 : n;
+    }
 
    /**
      * 读取剩余的所有输入
@@ -111,6 +199,7 @@ public final class Stdin {
      * @throws NoSuchElementException 如果标准输入为空，则抛出此异常
      */
     public static String readAll() {
+        if (in != null) return in.readAll();
     	if(isEmpty())
     		throw new NoSuchElementException("标准输入流为空！");
         scanner.useDelimiter(EVERYTHING_PATTERN);
@@ -126,6 +215,7 @@ public final class Stdin {
      * @throws NoSuchElementException 如果标准输入为空，则抛出此异常
      */
     public static String readString() {
+        if (in != null) return in.readString();
     	if(!scanner.hasNext())
     		throw new NoSuchElementException("标准输入流为空！");
         return scanner.next();
@@ -137,6 +227,7 @@ public final class Stdin {
      * @throws NoSuchElementException 如果标准输入为空或读取的内容无法解析为int，则抛出此异常
      */
     public static int readInt() {
+        if (in != null) return in.readInt();
     	 if(!scanner.hasNextInt())
     	     throw new NoSuchElementException("标准输入为空或读取的内容无法解析为int！");
     	 return scanner.nextInt();
@@ -148,6 +239,7 @@ public final class Stdin {
      * @throws NoSuchElementException 如果标准输入为空或读取的内容无法解析为double，则抛出此异常
      */
     public static double readDouble() {
+        if (in != null) return in.readDouble();
     	if(!scanner.hasNextDouble())
     		throw new NoSuchElementException("标准输入为空或读取的内容无法解析为double！");
         return scanner.nextDouble();
@@ -159,6 +251,7 @@ public final class Stdin {
      * @throws NoSuchElementException 如果标准输入为空或读取的内容无法解析为float，则抛出此异常
      */
     public static float readFloat() {
+        if (in != null) return in.readFloat();
     	if(!scanner.hasNextFloat())
     		throw new NoSuchElementException("标准输入为空或读取的内容无法解析为float！");
         return scanner.nextFloat();
@@ -170,6 +263,7 @@ public final class Stdin {
      * @throws NoSuchElementException 如果标准输入为空或读取的内容无法解析为long，则抛出此异常
      */
     public static long readLong() {
+        if (in != null) return in.readLong();
     	if(!scanner.hasNextLong())
     		throw new NoSuchElementException("标准输入为空或读取的内容无法解析为long！");
         return scanner.nextLong();
@@ -181,6 +275,7 @@ public final class Stdin {
      * @throws NoSuchElementException 如果标准输入为空或读取的内容无法解析为short，则抛出此异常
      */
     public static short readShort() {
+        if (in != null) return in.readShort();
     	if(!scanner.hasNextShort())
     		throw new NoSuchElementException("标准输入为空或读取的内容无法解析为short！");
         return scanner.nextShort();
@@ -192,6 +287,7 @@ public final class Stdin {
      * @throws NoSuchElementException 如果标准输入为空或读取的内容无法解析为byte，则抛出此异常
      */
     public static byte readByte() {
+        if (in != null) return in.readByte();
     	if(!scanner.hasNextByte())
     		throw new NoSuchElementException("标准输入为空或读取的内容无法解析为byte！");
 	    return scanner.nextByte();
@@ -218,16 +314,52 @@ public final class Stdin {
      * @return String[]
      */
     public static String[] readAllStrings() {
-    	//如果原字符串全是空白符，结果字符串数组长度就是0，如果原字符串第0位不是空白符，
-    	//split()会在结果数组第0位生成空的“前导子串”
-        String[] tokens = WHITESPACE_PATTERN.split(readAll());
-        if (tokens.length == 0 || tokens[0].length() > 0)
-            return tokens;
-        // 应当忽略这个“前导子串”
-        String[] decapitokens = new String[tokens.length-1];
-        for (int i = 0; i < tokens.length - 1; i++)
-            decapitokens[i] = tokens[i+1];
-        return decapitokens;
+        if (in != null) return in.readAllStrings();
+        if(isEmpty())
+            throw new NoSuchElementException("标准输入流为空！");
+        // 逐个读取标记，不把全部输入读成一个字符串再分割
+        ArrayList<String> tokens = new ArrayList<>();
+        while (scanner.hasNext())
+            tokens.add(scanner.next());
+        return tokens.toArray(new String[tokens.size()]);
+    }
+
+    /**
+     * 返回标准输入剩余所有行的惰性Stream，每行都不包括换行符
+     * @return Stream
+     */
+    public static Stream<String> lines() {
+        if (in != null) return in.lines();
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(new Iterator<String>() {
+            @Override
+            public boolean hasNext() {
+                return hasNextLine();
+            }
+
+            @Override
+            public String next() {
+                return readLine();
+            }
+        }, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * 返回标准输入剩余所有标记的惰性Stream
+     * @return Stream
+     */
+    public static Stream<String> tokens() {
+        if (in != null) return in.tokens();
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(new Iterator<String>() {
+            @Override
+            public boolean hasNext() {
+                return !isEmpty();
+            }
+
+            @Override
+            public String next() {
+                return readString();
+            }
+        }, Spliterator.ORDERED | Spliterator.NONNULL), false);
     }
 
     /**
@@ -248,11 +380,17 @@ public final class Stdin {
      * @throws InputMismatchException 如果有任何一个标记不能解释为int，就抛出此异常
      */
     public static int[] readAllInts() {
-        String[] fields = readAllStrings();
-        int[] vals = new int[fields.length];
-        for (int i = 0; i < fields.length; i++)
-            vals[i] = Integer.parseInt(fields[i]);
-        return vals;
+        if (in != null) return in.readAllInts();
+        if(isEmpty())
+            throw new NoSuchElementException("标准输入流为空！");
+        // 逐个解析，占用的内存只和结果数组成正比
+        int[] vals = new int[16];
+        int n = 0;
+        while (scanner.hasNext()) {
+            if (n == vals.length) vals = Arrays.copyOf(vals, n << 1);
+            vals[n++] = Integer.parseInt(scanner.next());
+        }
+        return Arrays.copyOf(vals, n);
     }
 
     /**
@@ -261,11 +399,17 @@ public final class Stdin {
      * @throws InputMismatchException 如果有任何一个标记不能解释为long，就抛出此异常
      */
     public static long[] readAllLongs() {
-        String[] fields = readAllStrings();
-        long[] vals = new long[fields.length];
-        for (int i = 0; i < fields.length; i++)
-            vals[i] = Long.parseLong(fields[i]);
-        return vals;
+        if (in != null) return in.readAllLongs();
+        if(isEmpty())
+            throw new NoSuchElementException("标准输入流为空！");
+        // 逐个解析，占用的内存只和结果数组成正比
+        long[] vals = new long[16];
+        int n = 0;
+        while (scanner.hasNext()) {
+            if (n == vals.length) vals = Arrays.copyOf(vals, n << 1);
+            vals[n++] = Long.parseLong(scanner.next());
+        }
+        return Arrays.copyOf(vals, n);
     }
 
     /**
@@ -274,11 +418,71 @@ public final class Stdin {
      * @throws InputMismatchException 如果有任何一个标记不能解释为double，就抛出此异常
      */
     public static double[] readAllDoubles() {
-        String[] fields = readAllStrings();
-        double[] vals = new double[fields.length];
-        for (int i = 0; i < fields.length; i++)
-            vals[i] = Double.parseDouble(fields[i]);
-        return vals;
+        if (in != null) return in.readAllDoubles();
+        if(isEmpty())
+            throw new NoSuchElementException("标准输入流为空！");
+        // 逐个解析，占用的内存只和结果数组成正比
+        double[] vals = new double[16];
+        int n = 0;
+        while (scanner.hasNext()) {
+            if (n == vals.length) vals = Arrays.copyOf(vals, n << 1);
+            vals[n++] = Double.parseDouble(scanner.next());
+        }
+        return Arrays.copyOf(vals, n);
+    }
+
+    /**
+     * 把剩余的标记逐个解析为int，返回一个惰性的IntStream
+     * 和readAllInts()不同，它不会一次读取所有标准输入
+     * @return IntStream
+     * @throws NumberFormatException 遍历时遇到不能解释为int的标记
+     */
+    public static IntStream ints() {
+        if (in != null) return in.ints();
+        return StreamSupport.intStream(new Spliterators.AbstractIntSpliterator(Long.MAX_VALUE, Spliterator.ORDERED) {
+            @Override
+            public boolean tryAdvance(IntConsumer action) {
+                if (isEmpty()) return false;
+                action.accept(Integer.parseInt(scanner.next()));
+                return true;
+            }
+        }, false);
+    }
+
+    /**
+     * 把剩余的标记逐个解析为long，返回一个惰性的LongStream
+     * 和readAllLongs()不同，它不会一次读取所有标准输入
+     * @return LongStream
+     * @throws NumberFormatException 遍历时遇到不能解释为long的标记
+     */
+    public static LongStream longs() {
+        if (in != null) return in.longs();
+        return StreamSupport.longStream(new Spliterators.AbstractLongSpliterator(Long.MAX_VALUE, Spliterator.ORDERED) {
+            @Override
+            public boolean tryAdvance(LongConsumer action) {
+                if (isEmpty()) return false;
+                action.accept(Long.parseLong(scanner.next()));
+                return true;
+            }
+        }, false);
+    }
+
+    /**
+     * 把剩余的标记逐个解析为double，返回一个惰性的DoubleStream
+     * 和readAllDoubles()不同，它不会一次读取所有标准输入
+     * @return DoubleStream
+     * @throws NumberFormatException 遍历时遇到不能解释为double的标记
+     */
+    public static DoubleStream doubles() {
+        if (in != null) return in.doubles();
+        return StreamSupport.doubleStream(new Spliterators.AbstractDoubleSpliterator(Long.MAX_VALUE, Spliterator.ORDERED) {
+            @Override
+            public boolean tryAdvance(DoubleConsumer action) {
+                if (isEmpty()) return false;
+                action.accept(Double.parseDouble(scanner.next()));
+                return true;
+            }
+        }, false);
     }
     
     // 初始化scanner
@@ -287,13 +491,22 @@ public final class Stdin {
     }
 
     /**
-     * 重新初始化scanner
+     * 重新初始化scanner，或者在快速模式下初始化字节引擎
      */
     private static void resync() {
+        if (isFastMode()) {
+            in = new In(In.Engine.BYTES);
+            return;
+        }
         scanner=new Scanner(new java.io.BufferedInputStream(System.in), CHARSET);
         scanner.useLocale(LOCALE);
     }
 
+    // 只有设置了系统属性才使用快速模式
+    private static boolean isFastMode() {
+        return Boolean.getBoolean(FAST_PROPERTY);
+    }
+
     /**
      * 交互式测试
      *
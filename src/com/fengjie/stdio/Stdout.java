@@ -1,52 +1,119 @@
 package com.fengjie.stdio;
 
-import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
-import java.io.UnsupportedEncodingException;
 import java.util.Locale;
 
+import com.fengjie.io.CompiledFormat;
+import com.fengjie.io.Out;
+
 /**
  * 这个类提供打印数字和字符串到标准输出的方法。 编码：UTF-8 语系：zh-CN
  * 在学习《算法》第四版时，我决定仿照书中的代码编写自己的标准输出库，一则练手，二则自用。
+ * 
+ * 异步模式：用系统属性com.fengjie.stdio.Stdout.async=true在启动时开启。
+ * 各线程把编码好的输出放入无锁的环形缓冲区，由一个后台线程成批写到标准输出，
+ * 打印方法不再等待控制台。print(x)不再逐次刷新，print()和close()会等待之前的输出写完，
+ * JVM退出时也会先写完。缓冲区大小用com.fengjie.stdio.Stdout.bufferSize设置（默认1MB），
+ * 缓冲区满时的策略用com.fengjie.stdio.Stdout.full=block/drop/spin设置（默认block）。
+ * 每个线程编码时只用1KB的缓冲区，超过1KB的一次打印会分几次放入，可能和其他线程的输出交错。
  * @author fengjie2018@qq.com
  * @version 1.0 2018年2月15日
  * @since JDK1.8
  */
 public final class Stdout {
 
-	// 字符编码为UTF-8
-	private static final String CHARSET = "UTF-8";
-
 	// 中国大陆
 	private static final Locale LOCALE = Locale.SIMPLIFIED_CHINESE;
 
-	// 输出
-	private static PrintWriter out;
+	// 开启异步模式的系统属性
+	private static final String ASYNC_PROPERTY = "com.fengjie.stdio.Stdout.async";
+
+	// 异步模式缓冲区大小的系统属性
+	private static final String SIZE_PROPERTY = "com.fengjie.stdio.Stdout.bufferSize";
+
+	// 异步模式缓冲区满时的策略的系统属性
+	private static final String FULL_PROPERTY = "com.fengjie.stdio.Stdout.full";
+
+	// 异步模式默认的缓冲区大小：1MB
+	private static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+	// 异步模式下每个线程的编码缓冲区大小：1KB，每行都会复制到环形缓冲区，不需要更大
+	private static final int LOCAL_BUFFER_SIZE = 1 << 10;
+
+	/**
+	 * 异步模式下缓冲区满时的策略
+	 */
+	public enum FullPolicy {
+		/** 休眠等待后台线程腾出空间 */
+		BLOCK,
+		/** 丢弃这条输出 */
+		DROP,
+		/** 忙等待，延迟最低但占用CPU */
+		SPIN
+	}
+
+	// 输出，每次打印后都刷新；异步模式下为null
+	private static Out out;
+
+	// 异步模式的缓冲区和写线程
+	private static AsyncOutput async;
+
+	// 异步模式下每个线程自己的编码器，编码结果整条放入缓冲区
+	private static ThreadLocal<Out> local;
 
 	// 最先被执行
 	static {
-		try {
-			out = new PrintWriter(new OutputStreamWriter(System.out, CHARSET), true);
-		} catch (UnsupportedEncodingException e) {
-			System.out.println(e);
+		if (Boolean.getBoolean(ASYNC_PROPERTY)) {
+			FullPolicy policy = FullPolicy.valueOf(System.getProperty(FULL_PROPERTY, "block").toUpperCase(Locale.ROOT));
+			async = new AsyncOutput(System.out, Integer.getInteger(SIZE_PROPERTY, DEFAULT_BUFFER_SIZE), policy);
+			local = ThreadLocal.withInitial(() -> new Out(async.stream(), Out.FlushPolicy.line(), LOCAL_BUFFER_SIZE));
+		}
+		else {
+			out = new Out(System.out);
 		}
 	}
 
 	// 禁止创建实例
 	private Stdout() {}
 
+	// 当前使用的输出：异步模式下是当前线程自己的编码器
+	private static Out out() {
+		return async != null ? local.get() : out;
+	}
+
+	/**
+	 * 返回一个按编译好的格式向标准输出打印的Cursor，见CompiledFormat
+	 * 异步模式下Cursor属于调用它的线程，不能交给其他线程使用
+	 * @param format 编译好的格式串
+	 * @return CompiledFormat.Cursor
+	 */
+	public static CompiledFormat.Cursor bind(CompiledFormat format) {
+		return format.bind(out());
+	}
+
 	/**
 	 * 关闭输入
 	 */
 	public static void close() {
+		if (async != null) {
+			async.close();
+			return;
+		}
 		out.close();
 	}
 
+	/**
+	 * 异步模式下因缓冲区满而丢弃的输出条数
+	 * @return 丢弃的条数，不是异步模式时为0
+	 */
+	public static long dropped() {
+		return async == null ? 0 : async.dropped();
+	}
+
 	/**
 	 * 换行
 	 */
 	public static void println() {
-		out.println();
+		out().println();
 	}
 
 	/**
@@ -54,7 +121,7 @@ public final class Stdout {
 	 * @param x Object
 	 */
 	public static void println(Object x) {
-		out.println(x);
+		out().println(x);
 	}
 
 	/**
@@ -62,7 +129,7 @@ public final class Stdout {
 	 * @param x boolean
 	 */
 	public static void println(boolean x) {
-		out.println(x);
+		out().println(x);
 	}
 
 	/**
@@ -70,7 +137,7 @@ public final class Stdout {
 	 * @param x char
 	 */
 	public static void println(char x) {
-		out.println(x);
+		out().println(x);
 	}
 
 	/**
@@ -78,7 +145,7 @@ public final class Stdout {
 	 * @param x double
 	 */
 	public static void println(double x) {
-		out.println(x);
+		out().println(x);
 	}
 
 	/**
@@ -86,7 +153,7 @@ public final class Stdout {
 	 * @param x float
 	 */
 	public static void println(float x) {
-		out.println(x);
+		out().println(x);
 	}
 
 	/**
@@ -94,7 +161,7 @@ public final class Stdout {
 	 * @param x int
 	 */
 	public static void println(int x) {
-		out.println(x);
+		out().println(x);
 	}
 
 	/**
@@ -102,7 +169,7 @@ public final class Stdout {
 	 * @param x long
 	 */
 	public static void println(long x) {
-		out.println(x);
+		out().println(x);
 	}
 
 	/**
@@ -110,7 +177,7 @@ public final class Stdout {
 	 * @param x short
 	 */
 	public static void println(short x) {
-		out.println(x);
+		out().println(x);
 	}
 
 	/**
@@ -118,14 +185,18 @@ public final class Stdout {
 	 * @param x byte
 	 */
 	public static void println(byte x) {
-		out.println(x);
+		out().println(x);
 	}
 
 	/**
 	 * 刷新标准输出流
 	 */
 	public static void print() {
-		out.flush();
+		if (async != null) {
+			async.flush();
+			return;
+		}
+		out.print();
 	}
 
 	/**
@@ -133,8 +204,7 @@ public final class Stdout {
 	 * @param x Object
 	 */
 	public static void print(Object x) {
-		out.print(x);
-		out.flush();
+		out().print(x);
 	}
 
 	/**
@@ -142,8 +212,7 @@ public final class Stdout {
 	 * @param x boolean
 	 */
 	public static void print(boolean x) {
-		out.print(x);
-		out.flush();
+		out().print(x);
 	}
 
 	/**
@@ -151,8 +220,7 @@ public final class Stdout {
 	 * @param x char
 	 */
 	public static void print(char x) {
-		out.print(x);
-		out.flush();
+		out().print(x);
 	}
 
 	/**
@@ -160,8 +228,7 @@ public final class Stdout {
 	 * @param x double
 	 */
 	public static void print(double x) {
-		out.print(x);
-		out.flush();
+		out().print(x);
 	}
 
 	/**
@@ -169,8 +236,7 @@ public final class Stdout {
 	 * @param x float
 	 */
 	public static void print(float x) {
-		out.print(x);
-		out.flush();
+		out().print(x);
 	}
 
 	/**
@@ -178,8 +244,7 @@ public final class Stdout {
 	 * @param x int
 	 */
 	public static void print(int x) {
-		out.print(x);
-		out.flush();
+		out().print(x);
 	}
 
 	/**
@@ -187,8 +252,7 @@ public final class Stdout {
 	 * @param x long
 	 */
 	public static void print(long x) {
-		out.print(x);
-		out.flush();
+		out().print(x);
 	}
 
 	/**
@@ -196,8 +260,7 @@ public final class Stdout {
 	 * @param x short
 	 */
 	public static void print(short x) {
-		out.print(x);
-		out.flush();
+		out().print(x);
 	}
 
 	/**
@@ -205,8 +268,7 @@ public final class Stdout {
 	 * @param x byte
 	 */
 	public static void print(byte x) {
-		out.print(x);
-		out.flush();
+		out().print(x);
 	}
 
 	/**
@@ -215,7 +277,7 @@ public final class Stdout {
 	 * @param args 对应格式串的参数
 	 */
 	public static void printf(String format, Object... args) {
-		out.printf(LOCALE, format, args);
+		out().printf(LOCALE, format, args);
 	}
 
 	/**
@@ -225,7 +287,7 @@ public final class Stdout {
 	 * @param args 对应格式串的参数
 	 */
 	public static void printf(Locale locale, String format, Object... args) {
-		out.printf(locale, format, args);
+		out().printf(locale, format, args);
 	}
 
 	/**